@@ -2,12 +2,15 @@ package de.eisi05.npc.api;
 
 import de.eisi05.npc.api.listeners.*;
 import de.eisi05.npc.api.manager.NpcManager;
+import de.eisi05.npc.api.manager.NpcSaveService;
+import de.eisi05.npc.api.movement.MovementRecorder;
 import de.eisi05.npc.api.objects.NPC;
 import de.eisi05.npc.api.objects.NameDisplayOptions;
 import de.eisi05.npc.api.objects.NpcConfig;
-import de.eisi05.npc.api.objects.NpcHolder;
 import de.eisi05.npc.api.pathfinding.Path;
+import de.eisi05.npc.api.pathfinding.PathfindingService;
 import de.eisi05.npc.api.scheduler.Tasks;
+import de.eisi05.npc.api.scheduler.TimeSlicedPathScheduler;
 import de.eisi05.npc.api.utils.Metrics;
 import de.eisi05.npc.api.utils.PacketReader;
 import de.eisi05.npc.api.wrapper.objects.WrappedPlayerTeam;
@@ -22,7 +25,6 @@ import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
@@ -34,7 +36,7 @@ import java.util.function.Function;
 public final class NpcApi
 {
     private static final List<Listener> listeners = new ArrayList<>(List.of(new ChangeWorldListener(), new ConnectionListener(), new NpcInteractListener(),
-            new WorldLoadListener(), new ServerReadyListener(), new ProjectileHitListener()));
+            new WorldLoadListener(), new ServerReadyListener(), new ProjectileHitListener(), new BlockChangeListener()));
 
     /**
      * A static reference to the Bukkit plugin instance that is using this API. This is set during the API's initialization.
@@ -72,8 +74,10 @@ public final class NpcApi
         ConfigurationSerialization.registerClass(Path.class);
 
         NpcManager.loadNPCs();
+        NpcSaveService.start();
 
         Tasks.start();
+        PathfindingService.start();
         PacketReader.injectAll();
 
         NameDisplayOptions.NameDisplayDefaults.reload();
@@ -115,24 +119,15 @@ public final class NpcApi
      */
     public static void disable()
     {
-        List<NpcHolder> npcsToSave = new ArrayList<>(NpcManager.getList());
-        npcsToSave.stream().filter(NpcHolder::hasUnsavedChanges).parallel().forEach(npc ->
-        {
-            if(npc instanceof NPC npc1 && !npc1.isSaved())
-                return;
-
-            try
-            {
-                npc.save();
-            }
-            catch(IOException e)
-            {
-            }
-        });
+        NpcSaveService.stop();
+        NpcManager.closeStore();
         NpcManager.getList().forEach(NPC::hideNpcFromAllPlayers);
         NpcManager.clear();
         PacketReader.uninjectAll();
         Tasks.stop();
+        PathfindingService.stop();
+        TimeSlicedPathScheduler.stop();
+        MovementRecorder.stopAll();
         WrappedPlayerTeam.clear();
         ConfigurationSerialization.unregisterClass(Path.class);
 
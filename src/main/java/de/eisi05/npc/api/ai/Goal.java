@@ -3,7 +3,9 @@ package de.eisi05.npc.api.ai;
 import com.google.gson.*;
 import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
+import de.eisi05.npc.api.ai.goals.WalkToLocationGoal;
 import de.eisi05.npc.api.objects.NPC;
+import de.eisi05.npc.api.pathfinding.SearchStatistics;
 import de.eisi05.npc.api.utils.RegistryPredicate;
 import de.eisi05.npc.api.utils.SerializableBiPredicate;
 import de.eisi05.npc.api.utils.SerializablePredicate;
@@ -131,6 +133,28 @@ public abstract class Goal implements Serializable
      */
     protected abstract void stop(@NotNull NPC npc);
 
+    /**
+     * Gets the tag under which the path searches of this goal are recorded in the {@link SearchStatistics}.
+     *
+     * @return the caller tag, by default the name of this class
+     */
+    protected @NotNull String getCaller()
+    {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Creates a builder for a {@link WalkToLocationGoal} whose path searches are recorded under the caller tag of this goal. Goals that walk by delegating to
+     * a WalkToLocationGoal use this instead of creating the builder themselves.
+     *
+     * @param target the location to walk to
+     * @return a new builder with the caller tag of this goal
+     */
+    protected @NotNull WalkToLocationGoal.Builder walkTo(@NotNull Location target)
+    {
+        return new WalkToLocationGoal.Builder(target).caller(getCaller());
+    }
+
     /**
      * Gets the location associated with this goal.
      *
@@ -6,6 +6,7 @@ import de.eisi05.npc.api.NpcApi;
 import de.eisi05.npc.api.ai.Goal;
 import de.eisi05.npc.api.objects.NPC;
 import de.eisi05.npc.api.objects.NpcOption;
+import de.eisi05.npc.api.pathfinding.IncrementalPathfinder;
 import de.eisi05.npc.api.utils.LocationUtils;
 import de.eisi05.npc.api.utils.Reflections;
 import de.eisi05.npc.api.utils.RegistryPredicate;
@@ -76,6 +77,7 @@ public class AttackEntityGoal extends Goal
     private transient int lineOfSightCheckCooldown;
     private transient int pathRecalculationCooldown;
     private transient boolean isKiting;
+    private transient IncrementalPathfinder planner;
 
     /**
      * Creates an AttackEntityGoal with a filter for valid targets.
@@ -227,6 +229,7 @@ public class AttackEntityGoal extends Goal
         lineOfSightCheckCooldown = 0;
         pathRecalculationCooldown = 0;
         isKiting = false;
+        planner = npc.incrementalPathfinder(WalkToLocationGoal.DEFAULT_MAX_ITERATIONS, true);
         setUsingItemState(npc, false);
         updateCachedViewers(npc);
     }
@@ -837,7 +840,7 @@ public class AttackEntityGoal extends Goal
         OptionalInt safeY = LocationUtils.findSafeY(targetLoc);
         if(safeY.isPresent())
             targetLoc = new Location(targetLoc.getWorld(), targetLoc.getX(), safeY.getAsInt(), targetLoc.getZ());
-        movementGoal = new WalkToLocationGoal.Builder(targetLoc).speed(speed).build();
+        movementGoal = walkTo(targetLoc).speed(speed).planner(planner).build();
         movementGoal.start(npc);
     }
 
@@ -868,7 +871,7 @@ public class AttackEntityGoal extends Goal
         stopMovement(npc);
 
 
-        WalkToLocationGoal newGoal = new WalkToLocationGoal.Builder(retreatLoc).speed(speed + 0.5).maxIterations(5000).allowDiagonal(true)
+        WalkToLocationGoal newGoal = walkTo(retreatLoc).speed(speed + 0.5).maxIterations(5000).allowDiagonal(true)
                 .completionCallback(walkingResult ->
                 {
                     isKiting = false;
@@ -0,0 +1,483 @@
+package de.eisi05.npc.api.ai.goals;
+
+import de.eisi05.npc.api.NpcApi;
+import de.eisi05.npc.api.ai.Goal;
+import de.eisi05.npc.api.enums.WalkingResult;
+import de.eisi05.npc.api.objects.NPC;
+import de.eisi05.npc.api.objects.NpcOption;
+import de.eisi05.npc.api.pathfinding.FlowField;
+import de.eisi05.npc.api.pathfinding.Path;
+import de.eisi05.npc.api.pathfinding.PathfindingUtils;
+import de.eisi05.npc.api.scheduler.Tasks;
+import de.eisi05.npc.api.utils.SerializableConsumer;
+import de.eisi05.npc.api.wrapper.objects.WrappedEntity;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A goal that makes the NPC walk to a location by following a shared {@link FlowField}.
+ * <p>
+ * All NPCs with the same destination, region and size share a single field, so sending a crowd to the same place only costs one search over the region
+ * instead of one search per NPC. If a block inside the region changes, the field becomes stale and the NPC requests a fresh field and continues from where
+ * it is.
+ */
+public class FlowFieldGoal extends Goal
+{
+    public static final int DEFAULT_RADIUS = 64;
+    public static final int DEFAULT_HEIGHT = 16;
+    private static final int MAX_STALE_FIELDS = 3;
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private Path.SerializablePath.SerializableLocation serializableLocation;
+    private int radius;
+    private int height;
+    private double speed;
+    private boolean allowDiagonal;
+    private SerializableConsumer<WalkingResult> completionCallback;
+    private boolean withRotation;
+
+    private transient Location targetLocation;
+    private transient CompletableFuture<FlowField> fieldFuture;
+    private transient FlowField field;
+    private transient int walkId;
+    private transient int staleFields;
+    private transient double entityHeight;
+    private transient double entityWidth;
+    private transient boolean isWalking;
+
+    /**
+     * Creates a FlowFieldGoal with full configuration options.
+     *
+     * @param builder the builder containing the configuration options
+     */
+    public FlowFieldGoal(@NotNull Builder builder)
+    {
+        super(Priority.MEDIUM);
+        this.targetLocation = builder.targetLocation.clone();
+        this.serializableLocation = new Path.SerializablePath.SerializableLocation(targetLocation);
+        this.radius = builder.radius;
+        this.height = builder.height;
+        this.speed = builder.speed;
+        this.allowDiagonal = builder.allowDiagonal;
+        this.completionCallback = builder.completionCallback;
+        this.withRotation = builder.withRotation;
+    }
+
+    /**
+     * Creates a copy of this goal.
+     *
+     * @param goal the goal to copy
+     */
+    private FlowFieldGoal(@NotNull FlowFieldGoal goal)
+    {
+        super(goal.getPriority());
+        this.serializableLocation = goal.serializableLocation;
+        this.targetLocation = goal.targetLocation;
+        this.radius = goal.radius;
+        this.height = goal.height;
+        this.speed = goal.speed;
+        this.allowDiagonal = goal.allowDiagonal;
+        this.completionCallback = goal.completionCallback;
+        this.withRotation = goal.withRotation;
+    }
+
+    /**
+     * Gets the speed for this goal.
+     *
+     * @return the speed
+     */
+    public double getSpeed()
+    {
+        return speed;
+    }
+
+    /**
+     * Sets the speed for this goal.
+     *
+     * @param speed the new speed
+     */
+    public void setSpeed(double speed)
+    {
+        this.speed = Math.clamp(speed, 0.1, 1.0);
+    }
+
+    /**
+     * Gets the horizontal distance from the destination the flow field covers.
+     *
+     * @return the radius in blocks
+     */
+    public int getRadius()
+    {
+        return radius;
+    }
+
+    /**
+     * Gets the vertical distance from the destination the flow field covers.
+     *
+     * @return the height in blocks
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Gets the completion callback for this goal.
+     *
+     * @return the completion callback
+     */
+    public @Nullable SerializableConsumer<WalkingResult> getCompletionCallback()
+    {
+        return completionCallback;
+    }
+
+    /**
+     * Sets the completion callback for this goal.
+     *
+     * @param completionCallback the new completion callback
+     */
+    public void setCompletionCallback(@Nullable SerializableConsumer<WalkingResult> completionCallback)
+    {
+        this.completionCallback = completionCallback;
+    }
+
+    @Override
+    protected @Nullable Location getLocation()
+    {
+        return targetLocation;
+    }
+
+    /**
+     * Checks if this goal can be used by the NPC.
+     *
+     * @param npc the NPC to check
+     * @return true if the NPC is inside the region of the flow field and not yet at the destination
+     */
+    @Override
+    public boolean canUse(@NotNull NPC npc)
+    {
+        if(isWalking)
+            return true;
+
+        if(!super.canUse(npc))
+            return false;
+
+        Location npcLoc = npc.getLocation();
+        if(targetLocation == null || !targetLocation.getWorld().equals(npcLoc.getWorld()))
+            return false;
+
+        if(Math.abs(npcLoc.getBlockX() - targetLocation.getBlockX()) > radius || Math.abs(npcLoc.getBlockZ() - targetLocation.getBlockZ()) > radius ||
+                Math.abs(npcLoc.getBlockY() - targetLocation.getBlockY()) > height)
+            return false;
+
+        return npcLoc.distance(targetLocation) > 1.0;
+    }
+
+    /**
+     * Starts the goal by requesting the shared flow field and walking along it once it is available.
+     *
+     * @param npc the NPC starting this goal
+     */
+    @Override
+    public void start(@NotNull NPC npc)
+    {
+        WrappedEntity.BoundingBox boundingBox = npc.entity.getBoundingBox();
+        double scale = npc.getOption(NpcOption.SCALE);
+        entityHeight = boundingBox.getYSize() * scale;
+        entityWidth = boundingBox.getXSize() * scale;
+
+        isWalking = true;
+        staleFields = 0;
+        requestField(npc);
+    }
+
+    /**
+     * Requests the shared flow field and walks along it once it is available. A field that already became stale is requested again.
+     *
+     * @param npc the NPC to walk
+     */
+    private void requestField(@NotNull NPC npc)
+    {
+        CompletableFuture<FlowField> future = FlowField.get(targetLocation, radius, height, allowDiagonal, entityHeight, entityWidth);
+        fieldFuture = future;
+        Tasks.trackFuture(future);
+        future.whenComplete((field, error) -> Bukkit.getScheduler().runTask(NpcApi.plugin, () ->
+        {
+            if(fieldFuture != future)
+                return;
+
+            fieldFuture = null;
+            if(field != null && field.isStale() && ++staleFields < MAX_STALE_FIELDS)
+            {
+                requestField(npc);
+                return;
+            }
+
+            List<Location> nodes = field == null ? null : field.pathFrom(npc.getLocation());
+            if(nodes == null)
+            {
+                finish(WalkingResult.CANCELLED);
+                return;
+            }
+
+            if(NpcApi.config.smoothPaths())
+                nodes = PathfindingUtils.smoothPath(nodes, entityHeight, entityWidth);
+
+            startWalking(npc, field, new Path(nodes, List.of(npc.getLocation(), targetLocation)));
+        }));
+    }
+
+    /**
+     * Walks the path that was read from the flow field.
+     *
+     * @param npc   the NPC to walk
+     * @param field the field the path was read from
+     * @param path  the path to walk
+     */
+    private void startWalking(@NotNull NPC npc, @NotNull FlowField field, @NotNull Path path)
+    {
+        List<Player> viewers = npc.getViewers().stream()
+                .map(Bukkit::getPlayer)
+                .filter(Objects::nonNull)
+                .toList();
+
+        this.field = field;
+        staleFields = 0;
+        int id = ++walkId;
+        npc.walkTo(path, speed, true, result ->
+        {
+            // A walk that was replaced by a walk along a fresh field does not end the goal
+            if(id != walkId)
+                return;
+
+            this.field = null;
+            isWalking = false;
+            if(completionCallback != null)
+                completionCallback.accept(result);
+            if(result == WalkingResult.SUCCESS)
+                npc.changeRealLocation(targetLocation);
+        }, withRotation, viewers);
+    }
+
+    /**
+     * Ends the goal without walking and notifies the completion callback.
+     *
+     * @param result the result passed to the completion callback
+     */
+    private void finish(@NotNull WalkingResult result)
+    {
+        isWalking = false;
+        if(completionCallback != null)
+            completionCallback.accept(result);
+    }
+
+    /**
+     * Replaces the walk with a walk along a fresh field once the field the NPC follows became stale.
+     *
+     * @param npc the NPC ticking this goal
+     */
+    @Override
+    public void tick(@NotNull NPC npc)
+    {
+        if(field == null || fieldFuture != null || !field.isStale())
+            return;
+
+        field = null;
+        walkId++;
+        cancelWalking(npc);
+        requestField(npc);
+    }
+
+    /**
+     * Stops the goal and cancels current walking.
+     *
+     * @param npc the NPC stopping this goal
+     */
+    @Override
+    public void stop(@NotNull NPC npc)
+    {
+        if(fieldFuture != null)
+        {
+            fieldFuture = null;
+            isWalking = false;
+            return;
+        }
+
+        if(!isWalking)
+            return;
+
+        cancelWalking(npc);
+        field = null;
+        isWalking = false;
+    }
+
+    private void cancelWalking(@NotNull NPC npc)
+    {
+        List<Player> viewers = npc.getViewers().stream()
+                .map(Bukkit::getPlayer)
+                .filter(Objects::nonNull)
+                .toList();
+
+        for(Player viewer : viewers)
+        {
+            if(npc.isWalking(viewer))
+                npc.cancelWalking(viewer);
+        }
+    }
+
+    /**
+     * Checks if this goal should continue running.
+     *
+     * @param npc the NPC to check
+     * @return true if the NPC is still waiting for the flow field or walking along it
+     */
+    @Override
+    public boolean canContinue(@NotNull NPC npc)
+    {
+        return isWalking && super.canContinue(npc);
+    }
+
+    @Override
+    protected boolean canBeRemovedNow(@NotNull NPC npc)
+    {
+        if(super.canBeRemovedNow(npc))
+            return true;
+
+        if(isWalking)
+        {
+            Location npcLoc = npc.getLocation();
+            Location below = npcLoc.clone().subtract(0, 0.1, 0);
+
+            if(below.getBlock().getType().isAir())
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public @NotNull Goal copy()
+    {
+        return new FlowFieldGoal(this);
+    }
+
+    /**
+     * Custom deserialization to restore the transient target location.
+     *
+     * @param in the input stream
+     * @throws IOException            if deserialization fails
+     * @throws ClassNotFoundException if class is not found
+     */
+    @Serial
+    private void readObject(@NotNull ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        this.targetLocation = serializableLocation.toLocation();
+    }
+
+    /**
+     * Builder class for creating FlowFieldGoal instances with a fluent API.
+     */
+    public static class Builder
+    {
+        private final Location targetLocation;
+        private int radius = DEFAULT_RADIUS;
+        private int height = DEFAULT_HEIGHT;
+        private double speed = WalkToLocationGoal.DEFAULT_SPEED;
+        private boolean allowDiagonal = true;
+        private SerializableConsumer<WalkingResult> completionCallback;
+        private boolean withRotation = true;
+
+        /**
+         * Creates a new Builder with the required target location.
+         *
+         * @param targetLocation The location to walk to
+         */
+        public Builder(@NotNull Location targetLocation)
+        {
+            this.targetLocation = targetLocation;
+        }
+
+        /**
+         * Sets the size of the region the flow field covers. NPCs outside of this region can not use the goal.
+         *
+         * @param radius The horizontal distance from the target location in blocks
+         * @param height The vertical distance from the target location in blocks
+         * @return this builder for chaining
+         */
+        public Builder region(int radius, int height)
+        {
+            this.radius = Math.max(1, radius);
+            this.height = Math.max(1, height);
+            return this;
+        }
+
+        /**
+         * Sets the walking speed.
+         *
+         * @param speed The walking speed (0.1 to 1.0)
+         * @return this builder for chaining
+         */
+        public Builder speed(double speed)
+        {
+            this.speed = Math.clamp(speed, 0.1, 1.0);
+            return this;
+        }
+
+        /**
+         * Sets whether diagonal movement is allowed.
+         *
+         * @param allowDiagonal Whether diagonal movement is allowed
+         * @return this builder for chaining
+         */
+        public Builder allowDiagonal(boolean allowDiagonal)
+        {
+            this.allowDiagonal = allowDiagonal;
+            return this;
+        }
+
+        /**
+         * Sets the completion callback.
+         *
+         * @param completionCallback Callback called when walking completes
+         * @return this builder for chaining
+         */
+        public Builder completionCallback(@NotNull SerializableConsumer<WalkingResult> completionCallback)
+        {
+            this.completionCallback = completionCallback;
+            return this;
+        }
+
+        /**
+         * Sets whether rotation packets should be sent.
+         *
+         * @param withRotation If true, includes rotation packets in the movement; otherwise only position packets are sent.
+         * @return this builder for chaining
+         */
+        public Builder withRotation(boolean withRotation)
+        {
+            this.withRotation = withRotation;
+            return this;
+        }
+
+        /**
+         * Builds the FlowFieldGoal instance.
+         *
+         * @return A new FlowFieldGoal instance
+         */
+        public FlowFieldGoal build()
+        {
+            return new FlowFieldGoal(this);
+        }
+    }
+}
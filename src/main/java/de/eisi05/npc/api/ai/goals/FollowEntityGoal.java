@@ -2,6 +2,7 @@ package de.eisi05.npc.api.ai.goals;
 
 import de.eisi05.npc.api.ai.Goal;
 import de.eisi05.npc.api.objects.NPC;
+import de.eisi05.npc.api.pathfinding.IncrementalPathfinder;
 import de.eisi05.npc.api.utils.LocationUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -38,6 +39,7 @@ public class FollowEntityGoal extends Goal
     private transient int pathRecalculationCooldown;
     private transient Location lastTargetLocation;
     private transient List<Player> cachedViewers;
+    private transient IncrementalPathfinder planner;
 
     /**
      * Creates a FollowEntityGoal with a fixed target entity ID and default distances.
@@ -213,9 +215,10 @@ public class FollowEntityGoal extends Goal
         this.target = le;
         this.pathRecalculationCooldown = 0;
         this.lastTargetLocation = target.getLocation().clone();
+        this.planner = npc.incrementalPathfinder(WalkToLocationGoal.DEFAULT_MAX_ITERATIONS, true);
         if(target != null && target.isValid())
         {
-            currentWalkGoal = new WalkToLocationGoal.Builder(target.getLocation()).speed(speed).withRotation(false).build();
+            currentWalkGoal = walkTo(target.getLocation()).speed(speed).withRotation(false).planner(planner).build();
             currentWalkGoal.start(npc);
         }
 
@@ -268,7 +271,7 @@ public class FollowEntityGoal extends Goal
 
         if(currentWalkGoal == null)
         {
-            currentWalkGoal = new WalkToLocationGoal.Builder(targetLoc).speed(speed).withRotation(false).build();
+            currentWalkGoal = walkTo(targetLoc).speed(speed).withRotation(false).planner(planner).build();
             currentWalkGoal.start(npc);
             pathRecalculationCooldown = 10;
             lastTargetLocation = targetLoc.clone();
@@ -294,7 +297,7 @@ public class FollowEntityGoal extends Goal
             if(shouldRecalculate)
             {
                 currentWalkGoal.stop(npc);
-                currentWalkGoal = new WalkToLocationGoal.Builder(targetLoc).speed(speed).withRotation(false).build();
+                currentWalkGoal = walkTo(targetLoc).speed(speed).withRotation(false).planner(planner).build();
                 currentWalkGoal.start(npc);
                 pathRecalculationCooldown = 10;
                 lastTargetLocation = targetLoc.clone();
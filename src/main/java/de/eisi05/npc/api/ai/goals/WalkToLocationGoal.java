@@ -6,7 +6,10 @@ import de.eisi05.npc.api.enums.WalkingResult;
 import de.eisi05.npc.api.objects.NPC;
 import de.eisi05.npc.api.objects.NpcOption;
 import de.eisi05.npc.api.pathfinding.AStarPathfinder;
+import de.eisi05.npc.api.pathfinding.IncrementalPathfinder;
 import de.eisi05.npc.api.pathfinding.Path;
+import de.eisi05.npc.api.pathfinding.PathfindingService;
+import de.eisi05.npc.api.pathfinding.SearchStatistics;
 import de.eisi05.npc.api.scheduler.Tasks;
 import de.eisi05.npc.api.utils.SerializableConsumer;
 import de.eisi05.npc.api.wrapper.objects.WrappedEntity;
@@ -51,6 +54,8 @@ public class WalkToLocationGoal extends Goal
     private transient int pathRecalculationCooldown = 0;
     private transient boolean pathable = true;
     private transient long lastPathabilityCheckTime = 0;
+    private transient IncrementalPathfinder planner;
+    private transient String caller;
 
     /**
      * Creates a WalkToLocationGoal with full configuration options.
@@ -67,6 +72,8 @@ public class WalkToLocationGoal extends Goal
         this.allowDiagonal = builder.allowDiagonal;
         this.completionCallback = builder.completionCallback;
         this.withRotation = builder.withRotation;
+        this.planner = builder.planner;
+        this.caller = builder.caller;
     }
 
     /**
@@ -83,6 +90,8 @@ public class WalkToLocationGoal extends Goal
         this.allowDiagonal = goal.allowDiagonal;
         this.completionCallback = goal.completionCallback;
         this.withRotation = goal.withRotation;
+        this.planner = goal.planner;
+        this.caller = goal.caller;
     }
 
     /**
@@ -350,7 +359,11 @@ public class WalkToLocationGoal extends Goal
             return;
         }
 
-        CompletableFuture<Path> future = npc.findPathAsync(List.of(start, end), maxIterations, allowDiagonal, null);
+        CompletableFuture<Path> future = PathfindingService.submit(npc.pathRequest(List.of(start, end))
+                .maxIterations(maxIterations)
+                .allowDiagonal(allowDiagonal)
+                .caller(getCaller())
+                .build());
         Tasks.trackFuture(future);
         future.thenAcceptAsync(path -> pathable = path != null, task -> Bukkit.getScheduler().runTask(NpcApi.plugin, task))
                 .exceptionally(e ->
@@ -360,6 +373,17 @@ public class WalkToLocationGoal extends Goal
                 });
     }
 
+    /**
+     * Gets the tag under which the path searches of this goal are recorded in the {@link SearchStatistics}.
+     *
+     * @return the caller tag set in the builder, or the name of this class
+     */
+    @Override
+    protected @NotNull String getCaller()
+    {
+        return caller != null ? caller : super.getCaller();
+    }
+
     /**
      * Calculates the path to the target location asynchronously.
      *
@@ -380,10 +404,20 @@ public class WalkToLocationGoal extends Goal
 
         isWalking = true;
 
-        pathfindingFuture = npc.findPathAsync(List.of(start, end), maxIterations, allowDiagonal, null);
-        Tasks.trackFuture(pathfindingFuture);
-        pathfindingFuture.thenAcceptAsync(path ->
+        CompletableFuture<Path> future = PathfindingService.submit(npc.pathRequest(List.of(start, end))
+                .maxIterations(maxIterations)
+                .allowDiagonal(allowDiagonal)
+                .owner(npc.getUUID())
+                .planner(planner)
+                .caller(getCaller())
+                .build());
+        pathfindingFuture = future;
+        Tasks.trackFuture(future);
+        future.thenAcceptAsync(path ->
                 {
+                    if(isSuperseded(future))
+                        return;
+
                     isWalking = false;
                     if(path != null)
                     {
@@ -402,6 +436,9 @@ public class WalkToLocationGoal extends Goal
                 {
                     Bukkit.getScheduler().runTask(NpcApi.plugin, () ->
                     {
+                        if(isSuperseded(future))
+                            return;
+
                         if(completionCallback != null)
                             completionCallback.accept(WalkingResult.CANCELLED);
                         cancelWalking(npc);
@@ -410,6 +447,18 @@ public class WalkToLocationGoal extends Goal
                 });
     }
 
+    /**
+     * Checks whether a newer path calculation has replaced the given one. Superseded calculations are cancelled by the
+     * {@link PathfindingService} and must not touch the walking state anymore.
+     *
+     * @param future the future of the path calculation
+     * @return true if another calculation is pending for this goal
+     */
+    private boolean isSuperseded(@NotNull CompletableFuture<Path> future)
+    {
+        return pathfindingFuture != null && pathfindingFuture != future;
+    }
+
     /**
      * Starts the actual walking animation along the calculated path.
      *
@@ -526,6 +575,8 @@ public class WalkToLocationGoal extends Goal
         private boolean allowDiagonal = true;
         private SerializableConsumer<WalkingResult> completionCallback;
         private boolean withRotation = true;
+        private IncrementalPathfinder planner;
+        private String caller;
 
         /**
          * Creates a new Builder with the required target location.
@@ -597,6 +648,32 @@ public class WalkToLocationGoal extends Goal
             return this;
         }
 
+        /**
+         * Sets an incremental pathfinder that is reused for every path calculation of this goal. Sharing one pathfinder between goals that chase the same
+         * moving target lets each recalculation repair the previous search instead of starting from scratch. The pathfinder is not serialized.
+         *
+         * @param planner the incremental pathfinder, or {@code null} to run a fresh A* search each time
+         * @return this builder for chaining
+         */
+        public Builder planner(@Nullable IncrementalPathfinder planner)
+        {
+            this.planner = planner;
+            return this;
+        }
+
+        /**
+         * Sets the tag under which the path searches of this goal are recorded in the {@link SearchStatistics}. Goals that walk by delegating to a
+         * WalkToLocationGoal get their own tag set by {@link Goal#walkTo(Location)}. The tag is not serialized.
+         *
+         * @param caller the caller tag, or {@code null} to use the name of this class
+         * @return this builder for chaining
+         */
+        public Builder caller(@Nullable String caller)
+        {
+            this.caller = caller;
+            return this;
+        }
+
         /**
          * Builds the WalkToLocationGoal instance.
          *
@@ -288,7 +288,7 @@ public class WanderGoal extends Goal
             {
                 targetLocation = new Location(world, x, y.getAsInt(), z, 0, 0);
                 targetLocation.setYaw(calculateYaw(currentLoc, targetLocation));
-                currentWalkGoal = new WalkToLocationGoal.Builder(targetLocation).speed(speed).build();
+                currentWalkGoal = walkTo(targetLocation).speed(speed).build();
                 currentWalkGoal.start(npc);
                 return;
             }
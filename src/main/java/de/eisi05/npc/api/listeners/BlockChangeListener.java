@@ -0,0 +1,117 @@
+package de.eisi05.npc.api.listeners;
+
+import de.eisi05.npc.api.pathfinding.FlowField;
+import de.eisi05.npc.api.pathfinding.IncrementalPathfinder;
+import de.eisi05.npc.api.scheduler.PathProfile;
+import de.eisi05.npc.api.scheduler.PathRouteIndex;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.*;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+
+import java.util.List;
+
+public class BlockChangeListener implements Listener
+{
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event)
+    {
+        blockChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event)
+    {
+        blockChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event)
+    {
+        pistonMoved(event.getBlock(), event.getBlocks(), event.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event)
+    {
+        pistonMoved(event.getBlock(), event.getBlocks(), event.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event)
+    {
+        blockChanged(event.getBlock());
+        event.blockList().forEach(this::blockChanged);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event)
+    {
+        event.blockList().forEach(this::blockChanged);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event)
+    {
+        blockChanged(event.getToBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event)
+    {
+        blockChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFade(BlockFadeEvent event)
+    {
+        blockChanged(event.getBlock());
+    }
+
+    // Also covers BlockSpreadEvent and EntityBlockFormEvent
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockForm(BlockFormEvent event)
+    {
+        blockChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockGrow(BlockGrowEvent event)
+    {
+        blockChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onLeavesDecay(LeavesDecayEvent event)
+    {
+        blockChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event)
+    {
+        blockChanged(event.getBlock());
+    }
+
+    private void pistonMoved(Block piston, List<Block> blocks, BlockFace direction)
+    {
+        blockChanged(piston.getRelative(direction));
+        for(Block block : blocks)
+        {
+            blockChanged(block);
+            blockChanged(block.getRelative(direction));
+        }
+    }
+
+    private void blockChanged(Block block)
+    {
+        IncrementalPathfinder.blockChanged(block.getWorld(), block.getX(), block.getY(), block.getZ());
+        FlowField.blockChanged(block.getWorld(), block.getX(), block.getY(), block.getZ());
+        PathProfile.blockChanged(block.getWorld(), block.getX(), block.getY(), block.getZ());
+        PathRouteIndex.blockChanged(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+}
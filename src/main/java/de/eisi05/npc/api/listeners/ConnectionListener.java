@@ -2,6 +2,7 @@ package de.eisi05.npc.api.listeners;
 
 import de.eisi05.npc.api.NpcApi;
 import de.eisi05.npc.api.manager.NpcManager;
+import de.eisi05.npc.api.movement.MovementRecorder;
 import de.eisi05.npc.api.objects.NPC;
 import de.eisi05.npc.api.objects.NpcOption;
 import de.eisi05.npc.api.objects.NpcSkin;
@@ -55,6 +56,7 @@ public class ConnectionListener implements Listener
     public void onLeave(PlayerQuitEvent event)
     {
         PacketReader.uninject(event.getPlayer());
+        MovementRecorder.playerLeft(event.getPlayer());
 
         Tasks.placeholderCache.remove(event.getPlayer().getUniqueId());
 
@@ -3,7 +3,7 @@ package de.eisi05.npc.api.manager;
 import com.mojang.datafixers.util.Either;
 import de.eisi05.npc.api.NpcApi;
 import de.eisi05.npc.api.objects.NPC;
-import de.eisi05.npc.api.utils.serialize.ObjectSaver;
+import de.eisi05.npc.api.utils.serialize.NpcStore;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -12,10 +12,15 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Manages the collection and lifecycle of NPC instances.
@@ -30,11 +35,62 @@ public class NpcManager
 
     private static final Map<Integer, NPC> npcById = new HashMap<>();
 
+    /**
+     * The maximum number of read NPCs the main thread spawns before it checks for newly read ones.
+     */
+    private static final int LOAD_BATCH_SIZE = 256;
+    private static final long LOAD_PROGRESS_INTERVAL_MILLIS = 2000;
+
     /**
      * Map storing the file name and the exception that occurred during loading.
      */
     public static Map<String, Exception> loadExceptions = new HashMap<>();
 
+    private static NpcStore store;
+
+    /**
+     * Gets the store the NPCs are saved to, opening it on first use.
+     *
+     * @return the NPC store
+     * @throws UncheckedIOException if the store cannot be opened
+     */
+    public static synchronized @NotNull NpcStore getStore()
+    {
+        if(store == null)
+        {
+            try
+            {
+                store = new NpcStore(new File(NpcApi.plugin.getDataFolder(), "NPC"));
+            }
+            catch(IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Closes the NPC store, compacting it if needed. Called when the API is disabled.
+     */
+    public static synchronized void closeStore()
+    {
+        if(store == null)
+            return;
+
+        try
+        {
+            store.close();
+        }
+        catch(IOException e)
+        {
+            NpcApi.plugin.getLogger().warning("Failed to close the NPC store: " + e.getMessage());
+            if(NpcApi.config.debug())
+                e.printStackTrace();
+        }
+        store = null;
+    }
+
     /**
      * Adds an NPC to the manager's list.
      *
@@ -114,81 +170,136 @@ public class NpcManager
     }
 
     /**
-     * Loads NPCs from disk files in the plugin data folder. Logs the count of successfully and unsuccessfully loaded NPCs.
+     * Loads NPCs from the NPC store in the plugin data folder. NPC files of the previous layout with one file per NPC are imported into the store first.
+     * Logs the count of successfully and unsuccessfully loaded NPCs.
+     * <p>
+     * The NPCs are read and parsed on virtual threads. Meanwhile, the main thread creates and shows the parsed NPCs in batches as they become available,
+     * since that needs the server. All NPCs are loaded when this method returns.
      */
     public static void loadNPCs()
     {
         File file = new File(NpcApi.plugin.getDataFolder(), "NPC");
 
-        File[] files = file.listFiles();
-        if(files == null)
-            return;
-
         long failCounter = 0;
         long successCounter = 0;
         long migrations = 0;
 
         Exception exception = null;
-        for(File file1 : files)
+        NpcStore npcStore;
+        try
         {
-            if(!file1.getName().endsWith(".npc") && !file1.getName().endsWith(".npc.json"))
-                continue;
-
+            npcStore = getStore();
+            Map<String, Exception> importExceptions = new HashMap<>();
+            migrations = npcStore.importLegacy(file, importExceptions);
+
+            failCounter += importExceptions.size();
+            loadExceptions.putAll(importExceptions);
+            if(!importExceptions.isEmpty())
+                exception = importExceptions.values().iterator().next();
+        }
+        catch(IOException | UncheckedIOException e)
+        {
+            NpcApi.plugin.getLogger().severe("Failed to open the NPC store: " + e.getMessage());
             if(NpcApi.config.debug())
-                NpcApi.plugin.getLogger().info("Loading NPC: " + file1.getName());
-            try
-            {
-                ObjectSaver saver = new ObjectSaver(file1);
+                e.printStackTrace();
+            return;
+        }
+
+        List<UUID> uuids = npcStore.keys();
+        long startTime = System.currentTimeMillis();
+        long lastProgress = startTime;
+        BlockingQueue<ReadNPC> readNPCs = new LinkedBlockingQueue<>();
 
-                NPC.SerializedNPC serializedNPC;
-                if(!saver.isJson())
+        try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for(UUID uuid : uuids)
+            {
+                executor.execute(() ->
                 {
-                    File backupFolder = new File(file, "backup");
-                    if (!backupFolder.exists())
-                        backupFolder.mkdirs();
+                    try
+                    {
+                        readNPCs.add(new ReadNPC(uuid, npcStore.get(uuid), null));
+                    }
+                    catch(Throwable e)
+                    {
+                        // Every NPC must be reported back, otherwise the main thread would wait for it forever
+                        readNPCs.add(new ReadNPC(uuid, null, e instanceof Exception readException ? readException : new RuntimeException(e)));
+                    }
+                });
+            }
 
-                    File backupFile = new File(backupFolder, file1.getName());
-                    Files.copy(file1.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            List<ReadNPC> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+            int processed = 0;
+            while(processed < uuids.size())
+            {
+                ReadNPC first = readNPCs.poll(1, TimeUnit.SECONDS);
+                if(first == null)
+                    continue;
 
-                    serializedNPC = saver.read();
-                    file1.delete();
+                batch.add(first);
+                readNPCs.drainTo(batch, LOAD_BATCH_SIZE - 1);
 
-                    File jsonFile = new File(file, file1.getName() + ".json");
-                    new ObjectSaver(jsonFile).write(serializedNPC, false);
-                    migrations++;
+                for(ReadNPC readNPC : batch)
+                {
+                    if(NpcApi.config.debug())
+                        NpcApi.plugin.getLogger().info("Loading NPC: " + readNPC.uuid());
+                    try
+                    {
+                        if(readNPC.exception() != null)
+                            throw readNPC.exception();
+
+                        NPC.SerializedNPC serializedNPC = readNPC.serializedNPC();
+                        if(serializedNPC == null)
+                            continue;
+
+                        Either<NPC, UUID> npcEither = serializedNPC.deserializedNPC();
+
+                        if(npcEither.right().isPresent())
+                        {
+                            toLoadNPCs.computeIfAbsent(npcEither.right().get(), k -> new ArrayList<>()).add(serializedNPC);
+                            continue;
+                        }
+
+                        if(npcEither.left().isEmpty())
+                            continue;
+
+                        loadNpc(npcEither.left().get());
+                        successCounter++;
+                    }
+                    catch(Exception e)
+                    {
+                        failCounter++;
+                        exception = e;
+                        loadExceptions.put(readNPC.uuid().toString(), e);
+                    }
                 }
-                else
-                    serializedNPC = saver.read(NPC.SerializedNPC.class);
 
-                Either<NPC, UUID> npcEither = serializedNPC.deserializedNPC();
+                processed += batch.size();
+                batch.clear();
 
-                if(npcEither.right().isPresent())
+                long now = System.currentTimeMillis();
+                if(now - lastProgress >= LOAD_PROGRESS_INTERVAL_MILLIS && processed < uuids.size())
                 {
-                    toLoadNPCs.computeIfAbsent(npcEither.right().get(), k -> new ArrayList<>()).add(serializedNPC);
-                    continue;
+                    lastProgress = now;
+                    NpcApi.plugin.getLogger().info("Loading NPC's... " + processed + "/" + uuids.size());
                 }
-
-                if(npcEither.left().isEmpty())
-                    continue;
-
-                loadNpc(npcEither.left().get());
-                successCounter++;
-            }
-            catch(Exception e)
-            {
-                failCounter++;
-                exception = e;
-                loadExceptions.put(file1.getName(), e);
             }
         }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            NpcApi.plugin.getLogger().warning("Loading NPC's was interrupted");
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
 
         if(migrations > 0)
             NpcApi.plugin.getLogger().info("Successfully migrated " + migrations + " NPC's");
 
         if(successCounter == 1)
-            NpcApi.plugin.getLogger().info("Successfully loaded " + successCounter + " NPC");
+            NpcApi.plugin.getLogger().info("Successfully loaded " + successCounter + " NPC in " + duration + "ms");
         else if(successCounter > 1)
-            NpcApi.plugin.getLogger().info("Successfully loaded " + successCounter + " NPC's");
+            NpcApi.plugin.getLogger().info("Successfully loaded " + successCounter + " NPC's in " + duration + "ms");
 
         if(failCounter == 1)
             NpcApi.plugin.getLogger().warning("Failed to load " + failCounter + " NPC");
@@ -304,4 +415,9 @@ public class NpcManager
                 npc.showNPCToPlayer(player);
             });
     }
+
+    /**
+     * An NPC read from the store by a loader thread, or the exception that occurred while reading it.
+     */
+    private record ReadNPC(@NotNull UUID uuid, @Nullable NPC.SerializedNPC serializedNPC, @Nullable Exception exception) {}
 }
@@ -0,0 +1,287 @@
+package de.eisi05.npc.api.manager;
+
+import de.eisi05.npc.api.NpcApi;
+import de.eisi05.npc.api.objects.NPC;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+
+/**
+ * Saves changed NPCs in the background.
+ * <p>
+ * {@link NPC#markChange()} schedules an NPC that is already stored. Once it has not changed for {@link de.eisi05.npc.api.objects.NpcConfig#autoSaveDelay()}
+ * ticks, a snapshot of the NPC that shares no mutable state with it is taken on the main thread, and the snapshot is serialized and written to the
+ * {@link NpcManager#getStore() NPC store} by a small pool of threads. Only one save per NPC runs at a time and only a limited number of saves are in
+ * flight, the rest wait for the next run. A failed save is logged, kept in {@link #saveExceptions} and retried with the next change. When the API is
+ * disabled, all changed NPCs are saved and the service waits up to 30 seconds for the writes to finish.
+ */
+public class NpcSaveService
+{
+    /**
+     * Map storing the UUID of each NPC whose last save failed and the exception that occurred.
+     */
+    public static final Map<UUID, Exception> saveExceptions = new ConcurrentHashMap<>();
+
+    private static final Map<NPC, Pending> pending = new ConcurrentHashMap<>();
+    private static final Map<UUID, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private static final long RUN_INTERVAL_TICKS = 10;
+    private static final int MAX_DELAY_FACTOR = 4;
+    private static final int MAX_IN_FLIGHT_PER_THREAD = 32;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private static ExecutorService executor;
+    private static BukkitTask task;
+
+    /**
+     * Starts the service. Called when the API is enabled.
+     */
+    public static void start()
+    {
+        if(task != null)
+            return;
+
+        executor();
+        task = Bukkit.getScheduler().runTaskTimer(NpcApi.plugin, NpcSaveService::run, RUN_INTERVAL_TICKS, RUN_INTERVAL_TICKS);
+    }
+
+    /**
+     * Saves all changed NPCs and waits until they are written, then stops the service. Called when the API is disabled.
+     */
+    public static void stop()
+    {
+        if(task != null)
+        {
+            task.cancel();
+            task = null;
+        }
+
+        pending.clear();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+        for(NPC npc : NpcManager.getList())
+        {
+            // A save still in flight could overwrite the final one, so an NPC whose previous save does not finish in time is not saved again
+            if(waitFor(npc, deadline))
+                submit(npc);
+            else
+                NpcApi.plugin.getLogger().severe("Could not save NPC " + npc.getUUID() + ", its previous save did not finish in time");
+        }
+
+        try
+        {
+            CompletableFuture.allOf(inFlight.values().toArray(CompletableFuture[]::new)).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        catch(TimeoutException e)
+        {
+            NpcApi.plugin.getLogger().severe("Timed out waiting for " + inFlight.size() + " NPC's to be saved");
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch(ExecutionException ignored)
+        {
+            // Already reported by the failed save
+        }
+
+        if(executor != null)
+        {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Schedules an NPC to be saved once it stopped changing. Does nothing if saving in the background is disabled.
+     *
+     * @param npc the changed NPC
+     */
+    public static void schedule(@NotNull NPC npc)
+    {
+        if(NpcApi.config == null || NpcApi.config.autoSaveDelay() <= 0)
+            return;
+
+        long now = System.currentTimeMillis();
+        pending.merge(npc, new Pending(now, now), (previous, current) -> new Pending(previous.firstChange(), now));
+    }
+
+    /**
+     * Saves all scheduled NPCs now instead of waiting for their delay. Must be called on the main thread.
+     *
+     * @return a {@link CompletableFuture} completing once every save in flight is written
+     */
+    public static @NotNull CompletableFuture<Void> flush()
+    {
+        for(Iterator<NPC> iterator = pending.keySet().iterator(); iterator.hasNext(); )
+        {
+            NPC npc = iterator.next();
+            iterator.remove();
+            waitFor(npc);
+            submit(npc);
+        }
+
+        return CompletableFuture.allOf(inFlight.values().toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Waits until the save of an NPC that is in flight is written, so a later write of the NPC cannot be overtaken by it.
+     *
+     * @param npc the NPC
+     */
+    public static void waitFor(@NotNull NPC npc)
+    {
+        UUID uuid = npc.getUUID();
+        CompletableFuture<Void> future = uuid == null ? null : inFlight.get(uuid);
+        if(future == null)
+            return;
+
+        try
+        {
+            future.join();
+        }
+        catch(CompletionException | CancellationException ignored)
+        {
+            // Already reported by the failed save
+        }
+    }
+
+    /**
+     * Waits until the save of an NPC that is in flight is written or the deadline passed.
+     *
+     * @return {@code false} if the save is still in flight
+     */
+    private static boolean waitFor(@NotNull NPC npc, long deadlineNanos)
+    {
+        UUID uuid = npc.getUUID();
+        CompletableFuture<Void> future = uuid == null ? null : inFlight.get(uuid);
+        if(future == null)
+            return true;
+
+        try
+        {
+            future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        catch(TimeoutException e)
+        {
+            return false;
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch(ExecutionException | CancellationException ignored)
+        {
+            // Already reported by the failed save
+        }
+        return true;
+    }
+
+    /**
+     * Saves the scheduled NPCs whose delay has passed, as long as the number of saves in flight allows it.
+     */
+    private static void run()
+    {
+        long now = System.currentTimeMillis();
+        long delay = NpcApi.config.autoSaveDelay() * 50L;
+        int maxInFlight = NpcApi.config.saveThreads() * MAX_IN_FLIGHT_PER_THREAD;
+
+        for(Map.Entry<NPC, Pending> entry : pending.entrySet())
+        {
+            if(inFlight.size() >= maxInFlight)
+                return;
+
+            Pending changes = entry.getValue();
+            if(now - changes.lastChange() < delay && now - changes.firstChange() < delay * MAX_DELAY_FACTOR)
+                continue;
+
+            NPC npc = entry.getKey();
+            UUID uuid = npc.getUUID();
+            if(uuid != null && inFlight.containsKey(uuid))
+                continue;
+
+            if(pending.remove(npc, changes))
+                submit(npc);
+        }
+    }
+
+    /**
+     * Takes a snapshot of an NPC on the main thread and writes it in the background. Does nothing if the NPC was deleted, has no changes or was never saved.
+     */
+    private static void submit(@NotNull NPC npc)
+    {
+        UUID uuid = npc.getUUID();
+        if(uuid == null || !npc.hasUnsavedChanges() || !npc.isSaved())
+            return;
+
+        NPC.SerializedNPC snapshot;
+        try
+        {
+            snapshot = NPC.SerializedNPC.snapshot(npc);
+        }
+        catch(RuntimeException e)
+        {
+            saveExceptions.put(uuid, e);
+            NpcApi.plugin.getLogger().log(Level.WARNING, "Failed to save NPC " + uuid, e);
+            return;
+        }
+        npc.markSaved();
+
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() ->
+        {
+            try
+            {
+                NpcManager.getStore().put(snapshot);
+            }
+            catch(IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }, executor());
+        inFlight.put(uuid, future);
+
+        future.whenComplete((result, throwable) ->
+        {
+            inFlight.remove(uuid, future);
+            if(throwable == null)
+            {
+                saveExceptions.remove(uuid);
+                return;
+            }
+
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            saveExceptions.put(uuid, cause instanceof Exception exception ? exception : new RuntimeException(cause));
+            NpcApi.plugin.getLogger().log(Level.WARNING, "Failed to save NPC " + uuid, cause);
+
+            // Keep the changes so the next save writes them again
+            if(task != null)
+                Bukkit.getScheduler().runTask(NpcApi.plugin, npc::markChange);
+        });
+    }
+
+    private static synchronized @NotNull ExecutorService executor()
+    {
+        if(executor == null)
+        {
+            executor = Executors.newFixedThreadPool(NpcApi.config.saveThreads(), runnable ->
+            {
+                Thread thread = new Thread(runnable, "NpcApi-Save");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * The time of the first and the last change of a scheduled NPC in milliseconds.
+     */
+    private record Pending(long firstChange, long lastChange) {}
+}
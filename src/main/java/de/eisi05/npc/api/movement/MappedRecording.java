@@ -0,0 +1,345 @@
+package de.eisi05.npc.api.movement;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A binary recording file mapped into memory, which replays read their samples from instead of loading the whole recording into the heap.
+ * <p>
+ * Each {@link Cursor} only keeps the state of the sample it decoded last, so the memory used per replay does not depend on the length of the recording.
+ * The mapped pages are managed by the operating system and shared by all cursors. Opening the same file again returns the already mapped instance until
+ * every opener has closed it.
+ */
+public final class MappedRecording implements Closeable
+{
+    private static final Map<String, MappedRecording> openRecordings = new HashMap<>();
+
+    private final String key;
+    private final ByteBuffer buffer;
+    private final MovementRecordingReader.Header header;
+    private final int samplesStart;
+    private final boolean complete;
+
+    // The keyframe index in the layout of the file footer, either a view of the mapping or built by scanning a partial recording
+    private final ByteBuffer keyframes;
+    private final int keyframeCount;
+    private final int sampleCount;
+    private final long endTime;
+    private int references = 1;
+
+    private MappedRecording(@NotNull String key, @NotNull ByteBuffer buffer) throws IOException
+    {
+        this.key = key;
+        this.buffer = buffer;
+
+        DataInputStream in = new DataInputStream(new BufferInputStream(buffer.duplicate()));
+        this.header = MovementRecordingReader.readHeader(in);
+        this.samplesStart = buffer.capacity() - in.available();
+
+        int limit = buffer.limit();
+        long footer = limit >= RecordingFormat.TRAILER_SIZE ? buffer.getLong(limit - RecordingFormat.TRAILER_SIZE) : -1;
+        if(footer > samplesStart && footer < limit && buffer.getInt(limit - Integer.BYTES) == RecordingFormat.TRAILER)
+        {
+            int position = (int) footer;
+            this.complete = true;
+            this.endTime = buffer.getLong(position);
+            this.sampleCount = buffer.getInt(position + Long.BYTES);
+            this.keyframeCount = buffer.getInt(position + Long.BYTES + Integer.BYTES);
+            this.keyframes = buffer.duplicate().position(position + Long.BYTES + Integer.BYTES * 2).slice();
+        }
+        else
+        {
+            // A partial recording has no index, so it is built once by decoding all samples
+            this.complete = false;
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            DataOutputStream indexOut = new DataOutputStream(index);
+            ByteBuffer scan = buffer.duplicate().position(samplesStart);
+            MovementRecordingReader reader = new MovementRecordingReader(new BufferInputStream(scan), header);
+
+            int samples = 0;
+            int keyframes = 0;
+            long lastTimestamp = 0;
+            while(true)
+            {
+                int offset = scan.position();
+                boolean keyframe = scan.hasRemaining() && (scan.get(offset) & 0xFF) == RecordingFormat.TAG_KEYFRAME;
+                MovementData movement = reader.next();
+                if(movement == null)
+                    break;
+
+                if(keyframe)
+                {
+                    indexOut.writeInt(samples);
+                    indexOut.writeLong(movement.getTimestamp());
+                    indexOut.writeLong(offset);
+                    keyframes++;
+                }
+                lastTimestamp = movement.getTimestamp();
+                samples++;
+            }
+
+            this.sampleCount = samples;
+            this.keyframeCount = keyframes;
+            this.keyframes = ByteBuffer.wrap(index.toByteArray());
+            this.endTime = header.startTime() + lastTimestamp;
+        }
+    }
+
+    /**
+     * Opens a binary recording file, or returns the instance that already maps it. Every call must be matched by a call to {@link #close()}.
+     *
+     * @param file The recording file
+     * @return The mapped recording
+     * @throws IOException If an I/O error occurs or the file is not a binary recording
+     */
+    public static @NotNull MappedRecording open(@NotNull File file) throws IOException
+    {
+        String key = file.getCanonicalPath();
+        synchronized(openRecordings)
+        {
+            MappedRecording recording = openRecordings.get(key);
+            if(recording != null)
+            {
+                recording.references++;
+                return recording;
+            }
+
+            MappedByteBuffer buffer;
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+            {
+                if(channel.size() > Integer.MAX_VALUE)
+                    throw new IOException("Movement recording is too large: " + file);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            recording = new MappedRecording(key, buffer);
+            openRecordings.put(key, recording);
+            return recording;
+        }
+    }
+
+    /**
+     * Gets the header of the recording.
+     *
+     * @return The header
+     */
+    public @NotNull MovementRecordingReader.Header getHeader()
+    {
+        return header;
+    }
+
+    /**
+     * Gets the number of samples in the recording.
+     *
+     * @return The sample count
+     */
+    public int getSampleCount()
+    {
+        return sampleCount;
+    }
+
+    /**
+     * Gets the end time of the recording. For a partial recording, this is the time of the last sample.
+     *
+     * @return The end time in milliseconds
+     */
+    public long getEndTime()
+    {
+        return endTime;
+    }
+
+    /**
+     * Gets the total duration of the recording.
+     *
+     * @return The duration in milliseconds
+     */
+    public long getDuration()
+    {
+        return endTime - header.startTime();
+    }
+
+    /**
+     * Checks whether the recording has a footer. Partial recordings, for example of a server that crashed while recording, have none.
+     *
+     * @return true if the recording is complete, false otherwise
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * Creates a new cursor positioned at the first sample. Cursors are not thread safe, but several cursors can be used at the same time.
+     *
+     * @return The cursor
+     */
+    public @NotNull Cursor cursor()
+    {
+        return new Cursor();
+    }
+
+    /**
+     * Releases this instance. Once every opener has closed it, the file is opened and mapped again by the next call to {@link #open(File)}.
+     */
+    @Override
+    public void close()
+    {
+        synchronized(openRecordings)
+        {
+            if(references > 0 && --references == 0)
+                openRecordings.remove(key, this);
+        }
+    }
+
+    /**
+     * Decodes the samples of a {@link MappedRecording} one at a time.
+     */
+    public final class Cursor
+    {
+        private final ByteBuffer position = buffer.duplicate();
+        private MovementRecordingReader reader;
+        private MovementData pending;
+        private int index;
+
+        private Cursor()
+        {
+            seekToOffset(samplesStart, 0);
+        }
+
+        /**
+         * Reads the next sample.
+         *
+         * @return The sample, or null once the end of the recording was reached
+         * @throws IOException If the recording is corrupted
+         */
+        public @Nullable MovementData next() throws IOException
+        {
+            MovementData movement = pending != null ? pending : reader.next();
+            pending = null;
+            if(movement != null)
+                index++;
+            return movement;
+        }
+
+        /**
+         * Moves the cursor to the first sample at or after the given time. Decoding starts at the closest keyframe before it, so only a few samples are
+         * decoded regardless of the position.
+         *
+         * @param timestamp The time in milliseconds since the start of the recording
+         * @throws IOException If the recording is corrupted
+         */
+        public void seek(long timestamp) throws IOException
+        {
+            int low = 0;
+            int high = keyframeCount - 1;
+            int found = -1;
+            while(low <= high)
+            {
+                int middle = (low + high) >>> 1;
+                if(keyframeTimestamp(middle) <= timestamp)
+                {
+                    found = middle;
+                    low = middle + 1;
+                }
+                else
+                    high = middle - 1;
+            }
+
+            if(found < 0)
+                seekToOffset(samplesStart, 0);
+            else
+            {
+                int entry = found * RecordingFormat.KEYFRAME_ENTRY_SIZE;
+                seekToOffset((int) keyframes.getLong(entry + Integer.BYTES + Long.BYTES), keyframes.getInt(entry));
+            }
+
+            MovementData movement;
+            while((movement = reader.next()) != null)
+            {
+                if(movement.getTimestamp() >= timestamp)
+                {
+                    pending = movement;
+                    return;
+                }
+                index++;
+            }
+        }
+
+        /**
+         * Gets the index of the sample the next call to {@link #next()} returns.
+         *
+         * @return The sample index
+         */
+        public int getIndex()
+        {
+            return index;
+        }
+
+        /**
+         * Gets the recording this cursor reads from.
+         *
+         * @return The recording
+         */
+        public @NotNull MappedRecording getRecording()
+        {
+            return MappedRecording.this;
+        }
+
+        private long keyframeTimestamp(int keyframe)
+        {
+            return keyframes.getLong(keyframe * RecordingFormat.KEYFRAME_ENTRY_SIZE + Integer.BYTES);
+        }
+
+        private void seekToOffset(int offset, int sampleIndex)
+        {
+            position.position(offset);
+            reader = new MovementRecordingReader(new BufferInputStream(position), header);
+            pending = null;
+            index = sampleIndex;
+        }
+    }
+
+    /**
+     * An input stream reading from a byte buffer without copying it.
+     */
+    private static final class BufferInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(@NotNull ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte @NotNull [] bytes, int offset, int length)
+        {
+            if(!buffer.hasRemaining())
+                return -1;
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+    }
+}
@@ -39,6 +39,28 @@ public class MovementData implements Serializable
         this.worldUUID = location.getWorld().getUID();
     }
 
+    /**
+     * Creates a new MovementData instance from raw values.
+     *
+     * @param timestamp The timestamp in milliseconds when this movement occurred
+     * @param worldUUID The uuid of the world where this movement occurred
+     * @param x         The X coordinate
+     * @param y         The Y coordinate
+     * @param z         The Z coordinate
+     * @param yaw       The yaw in degrees
+     * @param pitch     The pitch in degrees
+     */
+    public MovementData(long timestamp, @NotNull UUID worldUUID, double x, double y, double z, float yaw, float pitch)
+    {
+        this.timestamp = timestamp;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.worldUUID = worldUUID;
+    }
+
     /**
      * Gets the timestamp when this movement occurred.
      *
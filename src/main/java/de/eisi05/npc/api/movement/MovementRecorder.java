@@ -1,26 +1,51 @@
 package de.eisi05.npc.api.movement;
 
+import de.eisi05.npc.api.NpcApi;
+import de.eisi05.npc.api.utils.PacketReader;
+import de.eisi05.npc.api.wrapper.packets.MovePlayerPacket;
+import de.eisi05.npc.api.wrapper.packets.PacketWrapper;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
-import de.eisi05.npc.api.NpcApi;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 
 /**
  * Records player movements at a specified interval using a scheduler-based approach.
  * This provides more precise and consistent tracking compared to PlayerMoveEvent.
+ * <p>
+ * Samples are collected in a fixed-size buffer and written to a binary recording file in the {@code recordings} folder of the plugin by a background
+ * thread, so a recording takes constant memory however long it runs. Recordings stop on their own once they reach the limits configured in
+ * {@link de.eisi05.npc.api.objects.NpcConfig}. Because the file is written incrementally, a recording interrupted by a crash remains readable up to the
+ * last flush. A recording that stopped on its own, because its player left or a limit was reached, is no longer active, but its file is kept until it is
+ * collected with one of the stop methods.
+ * <p>
+ * With {@link CaptureMode#PACKETS}, the movement packets sent by the client are recorded as they arrive on the network thread instead of polling the
+ * location. Only actual changes of position or rotation are recorded, with the time they were received, and no task runs on the main thread.
  */
 public class MovementRecorder
 {
     private static final ConcurrentHashMap<UUID, RecordingSession> activeRecordings = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<UUID, FinishedRecording> finishedRecordings = new ConcurrentHashMap<>();
     private static final AtomicLong sessionIdCounter = new AtomicLong(0);
+    private static final long FLUSH_INTERVAL_MILLIS = 250;
+    private static final AtomicBoolean captureFailureLogged = new AtomicBoolean();
+    private static ScheduledExecutorService writer;
+    private static boolean captureRegistered;
 
     /**
      * Starts recording a player's movements.
@@ -28,37 +53,72 @@ public class MovementRecorder
      * @param player The player to record
      * @param intervalTicks The recording interval in ticks (1 tick = 50ms)
      * @return The recording session ID
+     * @throws UncheckedIOException If the recording file cannot be created
      */
     public static long startRecording(@NotNull Player player, int intervalTicks)
     {
+        return startRecording(player, intervalTicks, CaptureMode.POLLING);
+    }
+
+    /**
+     * Starts recording a player's movements with the given capture mode.
+     *
+     * @param player        The player to record
+     * @param intervalTicks The recording interval in ticks (1 tick = 50ms), only used by {@link CaptureMode#POLLING}
+     * @param mode          How the movements are captured
+     * @return The recording session ID
+     * @throws UncheckedIOException If the recording file cannot be created
+     */
+    public static long startRecording(@NotNull Player player, int intervalTicks, @NotNull CaptureMode mode)
+    {
+        if(mode == CaptureMode.PACKETS)
+            registerCapture();
+
         long sessionId = sessionIdCounter.incrementAndGet();
-        RecordingSession session = new RecordingSession(player, sessionId, intervalTicks);
-        activeRecordings.put(player.getUniqueId(), session);
+        RecordingSession session;
+        try
+        {
+            session = new RecordingSession(player, sessionId, intervalTicks, mode);
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        RecordingSession previous = activeRecordings.put(player.getUniqueId(), session);
+        if(previous != null)
+            previous.halt();
+        finishedRecordings.remove(player.getUniqueId());
+
         session.start();
+        startWriter();
         return sessionId;
     }
 
     /**
-     * Stops recording a player's movements and returns the recorded data.
+     * Stops recording a player's movements and reads the recorded data on a background thread. The recording file is deleted afterward.
      *
      * @param player The player to stop recording
-     * @return The recorded movement data, or null if no active recording
+     * @return A future completing on a background thread with the recorded movement data, or null if the player has neither an active recording nor one
+     * that stopped on its own
      */
-    public static @Nullable MovementRecording stopRecording(@NotNull Player player)
+    public static @Nullable CompletableFuture<MovementRecording> stopRecording(@NotNull Player player)
     {
         RecordingSession session = activeRecordings.remove(player.getUniqueId());
         if (session != null)
             return session.stop();
-        return null;
+
+        FinishedRecording finished = finishedRecordings.remove(player.getUniqueId());
+        return finished == null ? null : CompletableFuture.supplyAsync(finished::load, writer());
     }
 
     /**
-     * Stops recording by session ID and returns the recorded data.
+     * Stops recording by session ID and reads the recorded data on a background thread. The recording file is deleted afterward.
      *
      * @param sessionId The session ID to stop
-     * @return The recorded movement data, or null if session not found
+     * @return A future completing on a background thread with the recorded movement data, or null if session not found
      */
-    public static @Nullable MovementRecording stopRecording(long sessionId)
+    public static @Nullable CompletableFuture<MovementRecording> stopRecording(long sessionId)
     {
         RecordingSession session = activeRecordings.values().stream()
                 .filter(s -> s.getSessionId() == sessionId)
@@ -70,9 +130,57 @@ public class MovementRecorder
             activeRecordings.remove(session.getPlayer().getUniqueId());
             return session.stop();
         }
+
+        FinishedRecording finished = finishedRecordings.values().stream()
+                .filter(f -> f.sessionId() == sessionId)
+                .findFirst()
+                .orElse(null);
+
+        if(finished != null && finishedRecordings.remove(finished.playerId(), finished))
+            return CompletableFuture.supplyAsync(finished::load, writer());
         return null;
     }
 
+    /**
+     * Stops recording a player's movements and keeps the recording file, which can be replayed with
+     * {@link MovementReplayer#startReplay(de.eisi05.npc.api.objects.NPC, File, double, boolean, java.util.function.Consumer, Player...)} without loading it
+     * into memory.
+     *
+     * @param player The player to stop recording
+     * @return The finished recording file, or null if no active recording
+     */
+    public static @Nullable File stopRecordingToFile(@NotNull Player player)
+    {
+        RecordingSession session = activeRecordings.remove(player.getUniqueId());
+        if(session == null)
+        {
+            FinishedRecording finished = finishedRecordings.remove(player.getUniqueId());
+            return finished == null ? null : finished.file();
+        }
+
+        session.halt();
+        return session.getFile();
+    }
+
+    /**
+     * Stops all recordings and the background writer, finishing their files. Used when the API is disabled.
+     */
+    public static void stopAll()
+    {
+        activeRecordings.values().forEach(RecordingSession::halt);
+        activeRecordings.clear();
+        finishedRecordings.clear();
+
+        synchronized(MovementRecorder.class)
+        {
+            if(writer != null)
+            {
+                writer.shutdown();
+                writer = null;
+            }
+        }
+    }
+
     /**
      * Checks if a player is currently being recorded.
      *
@@ -81,7 +189,8 @@ public class MovementRecorder
      */
     public static boolean isRecording(@NotNull Player player)
     {
-        return activeRecordings.containsKey(player.getUniqueId());
+        RecordingSession session = activeRecordings.get(player.getUniqueId());
+        return session != null && !session.isHalted();
     }
 
     /**
@@ -95,6 +204,87 @@ public class MovementRecorder
         return activeRecordings.get(player.getUniqueId());
     }
 
+    /**
+     * Updates the world of a player recorded with {@link CaptureMode#PACKETS}, as the network thread must not look it up itself. Called on the main thread
+     * when the player changed the world.
+     *
+     * @param player The player
+     */
+    public static void worldChanged(@NotNull Player player)
+    {
+        RecordingSession session = activeRecordings.get(player.getUniqueId());
+        if(session != null)
+            session.world = player.getWorld().getUID();
+    }
+
+    /**
+     * Ends the recording of a player that left. The recording is finished by the background writer. Called on the main thread when the player quit.
+     *
+     * @param player The player
+     */
+    public static void playerLeft(@NotNull Player player)
+    {
+        RecordingSession session = activeRecordings.get(player.getUniqueId());
+        if(session != null)
+            session.end();
+    }
+
+    private static synchronized void registerCapture()
+    {
+        if(captureRegistered)
+            return;
+
+        PacketReader.addReader(MovementRecorder::capture);
+        captureRegistered = true;
+    }
+
+    /**
+     * Records a movement packet of a player if the player is recorded with {@link CaptureMode#PACKETS}. Called on the network thread of the player.
+     */
+    private static void capture(@NotNull Player player, @NotNull Object packet)
+    {
+        if(activeRecordings.isEmpty() || !PacketWrapper.PacketHolder.is(packet, MovePlayerPacket.class))
+            return;
+
+        RecordingSession session = activeRecordings.get(player.getUniqueId());
+        if(session == null || !session.capturing)
+            return;
+
+        // The packet is only passed on to the server after the readers ran, so nothing may escape from here
+        try
+        {
+            session.capture(PacketWrapper.PacketHolder.wrap(packet, MovePlayerPacket.class));
+        }
+        catch(Throwable throwable)
+        {
+            session.failed = true;
+            session.capturing = false;
+            if(captureFailureLogged.compareAndSet(false, true))
+                NpcApi.plugin.getLogger().log(Level.WARNING, "Could not capture movement packets, stopping the packet recordings", throwable);
+        }
+    }
+
+    private static synchronized @NotNull ScheduledExecutorService writer()
+    {
+        startWriter();
+        return writer;
+    }
+
+    private static synchronized void startWriter()
+    {
+        if(writer != null)
+            return;
+
+        writer = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "NpcApi-MovementRecorder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(() -> activeRecordings.values().forEach(RecordingSession::write), FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Represents an active recording session for a player.
      */
@@ -103,22 +293,58 @@ public class MovementRecorder
         private final Player player;
         private final long sessionId;
         private final int intervalTicks;
-        private final ArrayList<MovementData> movements;
+        private final CaptureMode mode;
         private final long startTime;
+        private final File file;
+        private final RecordingBuffer buffer;
+        private final MovementRecordingWriter writer;
+        private final Location location = new Location(null, 0, 0, 0);
         private BukkitTask recordingTask;
 
-        private RecordingSession(@NotNull Player player, long sessionId, int intervalTicks)
+        // The last recorded sample, used to record packets that only contain the position or the rotation and to skip unchanged ones
+        private UUID lastWorld;
+        private double lastX;
+        private double lastY;
+        private double lastZ;
+        private float lastYaw;
+        private float lastPitch;
+
+        private volatile UUID world;
+        private volatile boolean capturing;
+        private volatile boolean failed;
+        private volatile boolean ended;
+        private volatile boolean halted;
+        private volatile long bytesWritten;
+        private long endTime;
+        private long recordedTicks;
+        private int movementCount;
+        private int droppedCount;
+
+        private RecordingSession(@NotNull Player player, long sessionId, int intervalTicks, @NotNull CaptureMode mode) throws IOException
         {
             this.player = player;
             this.sessionId = sessionId;
-            this.intervalTicks = Math.max(1, intervalTicks);
-            this.movements = new ArrayList<>();
+            this.intervalTicks = mode == CaptureMode.PACKETS ? 0 : Math.max(1, intervalTicks);
+            this.mode = mode;
             this.startTime = System.currentTimeMillis();
+            this.file = new File(NpcApi.plugin.getDataFolder(), "recordings/" + player.getUniqueId() + "-" + startTime + "-" + sessionId + ".rec");
+            this.buffer = new RecordingBuffer(NpcApi.config.recordingBufferSize());
+
+            file.getParentFile().mkdirs();
+            this.writer = new MovementRecordingWriter(new FileOutputStream(file), sessionId, startTime, player.getUniqueId(), this.intervalTicks);
         }
 
         private void start()
         {
-            movements.add(new MovementData(player.getLocation(), 0));
+            world = player.getWorld().getUID();
+            record(0);
+
+            // From here on the network thread is the only producer of samples
+            if(mode == CaptureMode.PACKETS)
+            {
+                capturing = true;
+                return;
+            }
 
             recordingTask = new BukkitRunnable()
             {
@@ -127,17 +353,135 @@ public class MovementRecorder
                 {
                     if (!player.isOnline())
                     {
-                        stop();
+                        end();
                         return;
                     }
 
-                    long timestamp = System.currentTimeMillis() - startTime;
-                    movements.add(new MovementData(player.getLocation(), timestamp));
+                    recordedTicks += intervalTicks;
+                    record(System.currentTimeMillis() - startTime);
+
+                    if(limitReached())
+                        end();
                 }
             }.runTaskTimer(NpcApi.plugin, intervalTicks, intervalTicks);
         }
 
-        private @NotNull MovementRecording stop()
+        private void record(long timestamp)
+        {
+            player.getLocation(location);
+            if(location.getWorld() == null)
+                return;
+
+            offer(timestamp, location.getWorld().getUID(), location.getX(), location.getY(), location.getZ(), location.getYaw(), location.getPitch());
+        }
+
+        private void capture(@NotNull MovePlayerPacket packet)
+        {
+            long timestamp = System.currentTimeMillis() - startTime;
+            double x = lastX;
+            double y = lastY;
+            double z = lastZ;
+            float yaw = lastYaw;
+            float pitch = lastPitch;
+
+            if(packet.hasPosition())
+            {
+                x = packet.getX();
+                y = packet.getY();
+                z = packet.getZ();
+            }
+            if(packet.hasRotation())
+            {
+                yaw = packet.getYaw();
+                pitch = packet.getPitch();
+            }
+
+            UUID world = this.world;
+            if(x == lastX && y == lastY && z == lastZ && yaw == lastYaw && pitch == lastPitch && world.equals(lastWorld))
+                return;
+
+            offer(timestamp, world, x, y, z, yaw, pitch);
+        }
+
+        private void offer(long timestamp, @NotNull UUID world, double x, double y, double z, float yaw, float pitch)
+        {
+            lastWorld = world;
+            lastX = x;
+            lastY = y;
+            lastZ = z;
+            lastYaw = yaw;
+            lastPitch = pitch;
+
+            if(buffer.offer(timestamp, world, x, y, z, yaw, pitch))
+                movementCount++;
+            else
+                droppedCount++;
+        }
+
+        private boolean limitReached()
+        {
+            long maxDuration = NpcApi.config.maxRecordingDuration();
+            long maxSize = NpcApi.config.maxRecordingSize();
+            long ticks = mode == CaptureMode.PACKETS ? (System.currentTimeMillis() - startTime) / 50 : recordedTicks;
+            return (maxDuration > 0 && ticks >= maxDuration) || (maxSize > 0 && bytesWritten >= maxSize);
+        }
+
+        /**
+         * Writes the buffered samples to the file and flushes it. Called by the background writer and once more when the recording stops.
+         */
+        private synchronized void drain()
+        {
+            if(halted)
+                return;
+
+            try
+            {
+                if(buffer.drainTo(writer) > 0)
+                    writer.flush();
+                bytesWritten = writer.getBytesWritten();
+            }
+            catch(IOException e)
+            {
+                NpcApi.plugin.getLogger().log(Level.WARNING, "Could not write movement recording " + file.getName(), e);
+            }
+        }
+
+        /**
+         * Writes the buffered samples like {@link #drain()} and finishes the recording once it ended, a packet capture reached a limit or the packets could
+         * not be read, since packet captures have no task of their own. A recording finished this way is moved from the active to the finished
+         * recordings. Called by the background writer.
+         */
+        private void write()
+        {
+            drain();
+
+            if(halted || !(ended || failed || (mode == CaptureMode.PACKETS && limitReached())))
+                return;
+
+            halt();
+            if(activeRecordings.remove(player.getUniqueId(), this))
+                finishedRecordings.put(player.getUniqueId(), finished());
+        }
+
+        /**
+         * Stops sampling and leaves finishing the file to the background writer. Called on the main thread.
+         */
+        private void end()
+        {
+            if (recordingTask != null)
+            {
+                recordingTask.cancel();
+                recordingTask = null;
+            }
+
+            capturing = false;
+            ended = true;
+        }
+
+        /**
+         * Stops sampling and finishes the recording file. Does nothing if the recording was already halted.
+         */
+        private void halt()
         {
             if (recordingTask != null)
             {
@@ -145,8 +489,43 @@ public class MovementRecorder
                 recordingTask = null;
             }
 
-            long endTime = System.currentTimeMillis();
-            return new MovementRecording(movements, sessionId, startTime, endTime, player.getUniqueId(), intervalTicks);
+            capturing = false;
+            synchronized(this)
+            {
+                if(halted)
+                    return;
+
+                drain();
+                halted = true;
+                endTime = System.currentTimeMillis();
+                try
+                {
+                    writer.finish(endTime);
+                    writer.close();
+                }
+                catch(IOException e)
+                {
+                    NpcApi.plugin.getLogger().log(Level.WARNING, "Could not finish movement recording " + file.getName(), e);
+                }
+            }
+        }
+
+        /**
+         * Stops sampling, then finishes the file and reads it back on the background writer.
+         */
+        private @NotNull CompletableFuture<MovementRecording> stop()
+        {
+            end();
+            return CompletableFuture.supplyAsync(() ->
+            {
+                halt();
+                return finished().load();
+            }, writer());
+        }
+
+        private @NotNull FinishedRecording finished()
+        {
+            return new FinishedRecording(file, sessionId, startTime, endTime, player.getUniqueId(), intervalTicks);
         }
 
         public @NotNull Player getPlayer()
@@ -159,14 +538,42 @@ public class MovementRecorder
             return sessionId;
         }
 
+        /**
+         * Gets the recording interval.
+         *
+         * @return The interval in ticks, or 0 if the movement packets are captured
+         */
         public int getIntervalTicks()
         {
             return intervalTicks;
         }
 
+        public @NotNull CaptureMode getCaptureMode()
+        {
+            return mode;
+        }
+
+        /**
+         * Reads the movements recorded so far back from the recording file. This reads the whole file, so it should not be called frequently.
+         *
+         * @return The recorded movements
+         */
         public @NotNull List<MovementData> getMovements()
         {
-            return new ArrayList<>(movements);
+            drain();
+
+            List<MovementData> movements = new ArrayList<>();
+            try(MovementRecordingReader reader = new MovementRecordingReader(new FileInputStream(file)))
+            {
+                MovementData movement;
+                while((movement = reader.next()) != null)
+                    movements.add(movement);
+            }
+            catch(IOException e)
+            {
+                NpcApi.plugin.getLogger().log(Level.WARNING, "Could not read movement recording " + file.getName(), e);
+            }
+            return movements;
         }
 
         public long getStartTime()
@@ -176,12 +583,84 @@ public class MovementRecorder
 
         public long getDuration()
         {
-            return System.currentTimeMillis() - startTime;
+            return (halted ? endTime : System.currentTimeMillis()) - startTime;
         }
 
         public int getMovementCount()
         {
-            return movements.size();
+            return movementCount;
+        }
+
+        /**
+         * Gets the number of samples that were dropped because the background writer fell behind.
+         *
+         * @return The number of dropped samples
+         */
+        public int getDroppedCount()
+        {
+            return droppedCount;
+        }
+
+        /**
+         * Gets the file this session records to.
+         *
+         * @return The recording file
+         */
+        public @NotNull File getFile()
+        {
+            return file;
         }
+
+        /**
+         * Checks whether this session stopped sampling, either because it was stopped, the player went offline or a limit was reached.
+         *
+         * @return true if the session no longer records, false otherwise
+         */
+        public boolean isHalted()
+        {
+            return halted;
+        }
+    }
+
+    /**
+     * A recording whose file is finished but was not collected yet. Unlike the session, it does not keep the player.
+     */
+    private record FinishedRecording(@NotNull File file, long sessionId, long startTime, long endTime, @NotNull UUID playerId, int intervalTicks)
+    {
+        /**
+         * Reads the recording file and deletes it afterward.
+         */
+        private @NotNull MovementRecording load()
+        {
+            try
+            {
+                return MovementRecording.loadFromFile(file);
+            }
+            catch(IOException | RuntimeException e)
+            {
+                NpcApi.plugin.getLogger().log(Level.WARNING, "Could not read movement recording " + file.getName(), e);
+                return new MovementRecording(new ArrayList<>(), sessionId, startTime, endTime, playerId, intervalTicks);
+            }
+            finally
+            {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * How a {@link RecordingSession} captures the movements of a player.
+     */
+    public enum CaptureMode
+    {
+        /**
+         * Samples the location of the player on the main thread at a fixed interval.
+         */
+        POLLING,
+
+        /**
+         * Records the movement packets of the player on the network thread as they arrive, skipping packets that change nothing.
+         */
+        PACKETS
     }
 }
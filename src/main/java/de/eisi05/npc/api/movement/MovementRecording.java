@@ -7,10 +7,7 @@ import org.bukkit.util.Vector;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.Serial;
-import java.io.Serializable;
+import java.io.*;
 import java.util.ArrayList;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
@@ -77,7 +74,7 @@ public record MovementRecording(@NotNull ArrayList<MovementData> movements, long
     }
 
     /**
-     * Loads a MovementRecording from a file.
+     * Loads a MovementRecording from a file. Both the binary format and JSON exports are supported.
      *
      * @param file The file to load the recording from
      * @return The loaded MovementRecording
@@ -86,9 +83,20 @@ public record MovementRecording(@NotNull ArrayList<MovementData> movements, long
      */
     public static @NotNull MovementRecording loadFromFile(@NotNull File file) throws IOException
     {
+        if(MovementRecordingReader.isRecording(file))
+        {
+            try(InputStream in = new FileInputStream(file))
+            {
+                return MovementRecordingReader.read(in);
+            }
+        }
+
         try
         {
-            return new ObjectSaver(file).read();
+            MovementRecording recording = new ObjectSaver(file).read(MovementRecording.class);
+            if(recording == null)
+                throw new IOException("Empty movement recording: " + file);
+            return recording;
         }
         catch(RuntimeException e)
         {
@@ -99,12 +107,30 @@ public record MovementRecording(@NotNull ArrayList<MovementData> movements, long
     }
 
     /**
-     * Saves this MovementRecording to a file.
+     * Saves this MovementRecording to a file in the compact binary format.
      *
      * @param file The file to save the recording to
      * @throws IOException If an I/O error occurs while writing the file
+     * @see MovementRecordingWriter
      */
     public void saveToFile(@NotNull File file) throws IOException
+    {
+        if(file.getParentFile() != null)
+            file.getParentFile().mkdirs();
+
+        try(OutputStream out = new FileOutputStream(file))
+        {
+            MovementRecordingWriter.write(this, out);
+        }
+    }
+
+    /**
+     * Exports this MovementRecording to a file as JSON, which is readable by other tools but much larger than the binary format.
+     *
+     * @param file The file to export the recording to
+     * @throws IOException If an I/O error occurs while writing the file
+     */
+    public void exportJson(@NotNull File file) throws IOException
     {
         new ObjectSaver(file).write(this, false);
     }
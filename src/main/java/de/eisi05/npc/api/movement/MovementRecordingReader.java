@@ -0,0 +1,271 @@
+package de.eisi05.npc.api.movement;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reads movement samples from a stream in the compact binary recording format written by {@link MovementRecordingWriter}, one sample at a time.
+ * <p>
+ * Partial recordings, for example of a server that crashed while recording, are read up to the last complete sample. The end time and the keyframe index
+ * are only known once the footer was read, which happens when {@link #next()} reaches the end of the samples.
+ */
+public class MovementRecordingReader implements Closeable
+{
+    private final DataInputStream in;
+    private final Header header;
+
+    private List<Keyframe> keyframes;
+    private long endTime = -1;
+    private boolean ended;
+    private boolean complete;
+
+    private UUID world;
+    private long timestamp;
+    private long x;
+    private long y;
+    private long z;
+    private int yaw;
+    private int pitch;
+
+    /**
+     * Creates a new reader and reads the header of the recording.
+     *
+     * @param in The stream to read from
+     * @throws IOException If an I/O error occurs or the stream does not contain a recording of a supported version
+     */
+    public MovementRecordingReader(@NotNull InputStream in) throws IOException
+    {
+        this.in = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+        this.header = readHeader(this.in);
+    }
+
+    /**
+     * Creates a reader positioned at a keyframe of a recording whose header was already read.
+     *
+     * @param in     The stream, positioned at the tag of a keyframe
+     * @param header The header of the recording
+     */
+    MovementRecordingReader(@NotNull InputStream in, @NotNull Header header)
+    {
+        this.in = new DataInputStream(in);
+        this.header = header;
+    }
+
+    /**
+     * Checks whether a file starts with the header of a binary recording.
+     *
+     * @param file The file to check
+     * @return true if the file is a binary recording, false otherwise
+     */
+    public static boolean isRecording(@NotNull File file)
+    {
+        try(DataInputStream in = new DataInputStream(new FileInputStream(file)))
+        {
+            return in.readInt() == RecordingFormat.MAGIC;
+        }
+        catch(IOException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a complete recording from a stream.
+     *
+     * @param in The stream to read from, which is not closed
+     * @return The recording
+     * @throws IOException If an I/O error occurs or the stream does not contain a recording
+     */
+    public static @NotNull MovementRecording read(@NotNull InputStream in) throws IOException
+    {
+        MovementRecordingReader reader = new MovementRecordingReader(in);
+        ArrayList<MovementData> movements = new ArrayList<>();
+        MovementData movement;
+        while((movement = reader.next()) != null)
+            movements.add(movement);
+
+        Header header = reader.getHeader();
+        return new MovementRecording(movements, header.sessionId(), header.startTime(), reader.getEndTime(), header.playerUUID(), header.intervalTicks());
+    }
+
+    static @NotNull Header readHeader(@NotNull DataInput in) throws IOException
+    {
+        if(in.readInt() != RecordingFormat.MAGIC)
+            throw new IOException("Not a movement recording");
+
+        byte version = in.readByte();
+        if(version > RecordingFormat.VERSION)
+            throw new IOException("Unsupported movement recording version " + version);
+
+        long sessionId = in.readLong();
+        long startTime = in.readLong();
+        UUID playerUUID = new UUID(in.readLong(), in.readLong());
+        int intervalTicks = in.readInt();
+        return new Header(version, sessionId, startTime, playerUUID, intervalTicks);
+    }
+
+    /**
+     * Gets the header of the recording.
+     *
+     * @return The header
+     */
+    public @NotNull Header getHeader()
+    {
+        return header;
+    }
+
+    /**
+     * Reads the next sample.
+     *
+     * @return The sample, or null once the end of the recording was reached
+     * @throws IOException If an I/O error occurs or the recording is corrupted
+     */
+    public @Nullable MovementData next() throws IOException
+    {
+        if(ended)
+            return null;
+
+        try
+        {
+            int tag = in.read();
+            switch(tag)
+            {
+                case RecordingFormat.TAG_KEYFRAME ->
+                {
+                    UUID world = new UUID(in.readLong(), in.readLong());
+                    long timestamp = RecordingFormat.readVarLong(in);
+                    long x = RecordingFormat.readVarLong(in);
+                    long y = RecordingFormat.readVarLong(in);
+                    long z = RecordingFormat.readVarLong(in);
+                    int yaw = (int) RecordingFormat.readVarLong(in);
+                    int pitch = (int) RecordingFormat.readVarLong(in);
+                    set(world, timestamp, x, y, z, yaw, pitch);
+                }
+                case RecordingFormat.TAG_DELTA ->
+                {
+                    if(world == null)
+                        throw new IOException("Recording does not start with a keyframe");
+
+                    long timestamp = this.timestamp + RecordingFormat.readVarLong(in);
+                    long x = this.x + RecordingFormat.readVarLong(in);
+                    long y = this.y + RecordingFormat.readVarLong(in);
+                    long z = this.z + RecordingFormat.readVarLong(in);
+                    int yaw = (this.yaw + (int) RecordingFormat.readVarLong(in)) & 0xFFFF;
+                    int pitch = (this.pitch + (int) RecordingFormat.readVarLong(in)) & 0xFFFF;
+                    set(world, timestamp, x, y, z, yaw, pitch);
+                }
+                case RecordingFormat.TAG_END, -1 ->
+                {
+                    end(tag == RecordingFormat.TAG_END);
+                    return null;
+                }
+                default -> throw new IOException("Unknown sample tag " + tag);
+            }
+        }
+        catch(EOFException e)
+        {
+            // A partial recording ends with an incomplete sample, which is dropped
+            end(false);
+            return null;
+        }
+
+        return new MovementData(timestamp, world, RecordingFormat.position(x), RecordingFormat.position(y), RecordingFormat.position(z),
+                RecordingFormat.angle(yaw), RecordingFormat.angle(pitch));
+    }
+
+    /**
+     * Checks whether the end of the recording was reached and its footer was read. A partial recording has no footer.
+     *
+     * @return true if the recording is complete, false otherwise
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * Gets the end time of the recording. For a partial recording, this is the time of the last sample read.
+     *
+     * @return The end time in milliseconds
+     */
+    public long getEndTime()
+    {
+        return endTime >= 0 ? endTime : header.startTime() + timestamp;
+    }
+
+    /**
+     * Gets the keyframe index of the recording.
+     *
+     * @return The keyframes, or null if the footer was not read yet
+     */
+    public @Nullable List<Keyframe> getKeyframes()
+    {
+        return keyframes;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    private void set(@NotNull UUID world, long timestamp, long x, long y, long z, int yaw, int pitch)
+    {
+        this.world = world;
+        this.timestamp = timestamp;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.yaw = yaw;
+        this.pitch = pitch;
+    }
+
+    private void end(boolean footer) throws IOException
+    {
+        ended = true;
+        if(!footer)
+            return;
+
+        try
+        {
+            endTime = in.readLong();
+            in.readInt();
+            int count = in.readInt();
+            List<Keyframe> keyframes = new ArrayList<>(count);
+            for(int i = 0; i < count; i++)
+                keyframes.add(new Keyframe(in.readInt(), in.readLong(), in.readLong()));
+            in.readLong();
+            complete = in.readInt() == RecordingFormat.TRAILER;
+            this.keyframes = List.copyOf(keyframes);
+        }
+        catch(EOFException e)
+        {
+            endTime = -1;
+        }
+    }
+
+    /**
+     * The header of a recording.
+     *
+     * @param version       The format version
+     * @param sessionId     The recording session ID
+     * @param startTime     The recording start time in milliseconds
+     * @param playerUUID    The UUID of the recorded player
+     * @param intervalTicks The recording interval in ticks
+     */
+    public record Header(byte version, long sessionId, long startTime, @NotNull UUID playerUUID, int intervalTicks) {}
+
+    /**
+     * An entry of the keyframe index.
+     *
+     * @param sampleIndex The index of the keyframe sample
+     * @param timestamp   The time of the keyframe in milliseconds since the start of the recording
+     * @param offset      The byte offset of the keyframe from the start of the file
+     */
+    public record Keyframe(int sampleIndex, long timestamp, long offset) {}
+}
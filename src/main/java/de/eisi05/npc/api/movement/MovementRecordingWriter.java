@@ -0,0 +1,250 @@
+package de.eisi05.npc.api.movement;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes movement samples to a stream in the compact binary recording format, one sample at a time.
+ * <p>
+ * Positions are quantized to 1/4096 of a block and rotations to 1/65536 of a turn. Most samples are stored as small differences to the sample before them,
+ * which usually takes a few bytes per sample instead of a full set of coordinates. A keyframe with absolute values is written every
+ * {@value RecordingFormat#KEYFRAME_INTERVAL} samples and whenever the world changes, so a reader can start at any keyframe. Everything written before
+ * {@link #close()} can be read back even if the footer is never written.
+ */
+public class MovementRecordingWriter implements Closeable, Flushable
+{
+    private final OutputStream out;
+    private final long startTime;
+    private final byte[] buffer = new byte[Long.BYTES * 2];
+    private final List<long[]> keyframes = new ArrayList<>();
+
+    private long offset;
+    private int samples;
+    private UUID world;
+    private long timestamp;
+    private long x;
+    private long y;
+    private long z;
+    private int yaw;
+    private int pitch;
+    private boolean finished;
+
+    /**
+     * Creates a new writer and writes the header of the recording.
+     *
+     * @param out           The stream to write to
+     * @param sessionId     The recording session ID
+     * @param startTime     The recording start time in milliseconds
+     * @param playerUUID    The UUID of the recorded player
+     * @param intervalTicks The recording interval in ticks
+     * @throws IOException If an I/O error occurs while writing the header
+     */
+    public MovementRecordingWriter(@NotNull OutputStream out, long sessionId, long startTime, @NotNull UUID playerUUID, int intervalTicks)
+            throws IOException
+    {
+        this.out = out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out);
+        this.startTime = startTime;
+
+        writeInt(RecordingFormat.MAGIC);
+        writeByte(RecordingFormat.VERSION);
+        writeLong(sessionId);
+        writeLong(startTime);
+        writeLong(playerUUID.getMostSignificantBits());
+        writeLong(playerUUID.getLeastSignificantBits());
+        writeInt(intervalTicks);
+    }
+
+    /**
+     * Writes a complete recording to a stream.
+     *
+     * @param recording The recording to write
+     * @param out       The stream to write to, which is not closed
+     * @throws IOException If an I/O error occurs while writing
+     */
+    public static void write(@NotNull MovementRecording recording, @NotNull OutputStream out) throws IOException
+    {
+        MovementRecordingWriter writer = new MovementRecordingWriter(out, recording.sessionId(), recording.startTime(), recording.playerUUID(),
+                recording.intervalTicks());
+        for(MovementData movement : recording.movements())
+            writer.write(movement);
+        writer.finish(recording.endTime());
+    }
+
+    /**
+     * Appends a sample to the recording. Timestamps must not decrease.
+     *
+     * @param movement The sample to write
+     * @throws IOException If an I/O error occurs while writing
+     */
+    public void write(@NotNull MovementData movement) throws IOException
+    {
+        write(movement.getTimestamp(), movement.getWorldUUID(), movement.getX(), movement.getY(), movement.getZ(), movement.getYaw(), movement.getPitch());
+    }
+
+    /**
+     * Appends a sample to the recording. Timestamps must not decrease.
+     *
+     * @param timestamp The time of the sample in milliseconds since the start of the recording
+     * @param worldUUID The world of the sample
+     * @param x         The X coordinate
+     * @param y         The Y coordinate
+     * @param z         The Z coordinate
+     * @param yaw       The yaw in degrees
+     * @param pitch     The pitch in degrees
+     * @throws IOException If an I/O error occurs while writing
+     */
+    public void write(long timestamp, @NotNull UUID worldUUID, double x, double y, double z, float yaw, float pitch) throws IOException
+    {
+        if(finished)
+            throw new IllegalStateException("Recording is already finished");
+
+        long qx = RecordingFormat.quantizePosition(x);
+        long qy = RecordingFormat.quantizePosition(y);
+        long qz = RecordingFormat.quantizePosition(z);
+        int qYaw = RecordingFormat.quantizeAngle(yaw);
+        int qPitch = RecordingFormat.quantizeAngle(pitch);
+
+        if(samples % RecordingFormat.KEYFRAME_INTERVAL == 0 || !worldUUID.equals(world))
+        {
+            keyframes.add(new long[]{samples, timestamp, offset});
+            writeByte(RecordingFormat.TAG_KEYFRAME);
+            writeLong(worldUUID.getMostSignificantBits());
+            writeLong(worldUUID.getLeastSignificantBits());
+            writeVarLong(timestamp);
+            writeVarLong(qx);
+            writeVarLong(qy);
+            writeVarLong(qz);
+            writeVarLong(qYaw);
+            writeVarLong(qPitch);
+        }
+        else
+        {
+            writeByte(RecordingFormat.TAG_DELTA);
+            writeVarLong(timestamp - this.timestamp);
+            writeVarLong(qx - this.x);
+            writeVarLong(qy - this.y);
+            writeVarLong(qz - this.z);
+            writeVarLong(RecordingFormat.angleDelta(this.yaw, qYaw));
+            writeVarLong(RecordingFormat.angleDelta(this.pitch, qPitch));
+        }
+
+        this.world = worldUUID;
+        this.timestamp = timestamp;
+        this.x = qx;
+        this.y = qy;
+        this.z = qz;
+        this.yaw = qYaw;
+        this.pitch = qPitch;
+        samples++;
+    }
+
+    /**
+     * Gets the number of samples written so far.
+     *
+     * @return The sample count
+     */
+    public int getSampleCount()
+    {
+        return samples;
+    }
+
+    /**
+     * Gets the number of bytes written so far.
+     *
+     * @return The number of bytes
+     */
+    public long getBytesWritten()
+    {
+        return offset;
+    }
+
+    /**
+     * Writes the buffered samples to the underlying stream.
+     *
+     * @throws IOException If an I/O error occurs while writing
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        out.flush();
+    }
+
+    /**
+     * Writes the footer with the end time and the keyframe index, and flushes the stream. No samples can be written afterward.
+     *
+     * @param endTime The recording end time in milliseconds
+     * @throws IOException If an I/O error occurs while writing
+     */
+    public void finish(long endTime) throws IOException
+    {
+        if(finished)
+            return;
+        finished = true;
+
+        writeByte(RecordingFormat.TAG_END);
+        long footer = offset;
+        writeLong(endTime);
+        writeInt(samples);
+        writeInt(keyframes.size());
+        for(long[] keyframe : keyframes)
+        {
+            writeInt((int) keyframe[0]);
+            writeLong(keyframe[1]);
+            writeLong(keyframe[2]);
+        }
+        writeLong(footer);
+        writeInt(RecordingFormat.TRAILER);
+        out.flush();
+    }
+
+    /**
+     * Finishes the recording if it was not finished yet, using the time of the last sample as end time, and closes the stream.
+     *
+     * @throws IOException If an I/O error occurs while writing or closing
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            finish(startTime + timestamp);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private void writeByte(int value) throws IOException
+    {
+        out.write(value);
+        offset++;
+    }
+
+    private void writeInt(int value) throws IOException
+    {
+        for(int i = 0; i < Integer.BYTES; i++)
+            buffer[i] = (byte) (value >>> (24 - i * 8));
+        out.write(buffer, 0, Integer.BYTES);
+        offset += Integer.BYTES;
+    }
+
+    private void writeLong(long value) throws IOException
+    {
+        for(int i = 0; i < Long.BYTES; i++)
+            buffer[i] = (byte) (value >>> (56 - i * 8));
+        out.write(buffer, 0, Long.BYTES);
+        offset += Long.BYTES;
+    }
+
+    private void writeVarLong(long value) throws IOException
+    {
+        int length = RecordingFormat.encodeVarLong(value, buffer);
+        out.write(buffer, 0, length);
+        offset += length;
+    }
+}
@@ -2,34 +2,41 @@ package de.eisi05.npc.api.movement;
 
 import de.eisi05.npc.api.NpcApi;
 import de.eisi05.npc.api.objects.NPC;
+import de.eisi05.npc.api.wrapper.objects.WrappedServerPlayer;
+import de.eisi05.npc.api.wrapper.packets.MoveEntityPacket;
 import de.eisi05.npc.api.wrapper.packets.RotateHeadPacket;
 import de.eisi05.npc.api.wrapper.packets.TeleportEntityPacket;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.util.Vector;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Set;
-import java.util.UUID;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
  * Replays recorded movements on NPCs with precise timing and smooth transitions. Supports different replay modes and provides callbacks for completion.
+ * <p>
+ * All replays are advanced by a single task on a logical clock, which moves every replay forward by one tick worth of its speed each server tick. A lag
+ * spike therefore delays the replays instead of making them catch up with a burst of teleports. Replays can be paused, resumed, sped up and moved to
+ * any point of the recording.
  */
 public class MovementReplayer
 {
     private static final ConcurrentHashMap<UUID, ReplaySession> activeReplays = new ConcurrentHashMap<>();
+    private static BukkitTask driverTask;
     private static final AtomicLong replayIdCounter = new AtomicLong(0);
 
     /**
-     * Starts replaying recorded movements on an NPC.
+     * Starts replaying recorded movements on an NPC. A recording replayed by many NPCs should be compiled into a {@link ReplayTimeline} once instead.
      *
      * @param npc                The NPC to control
      * @param recording          The movement recording
@@ -48,8 +55,86 @@ public class MovementReplayer
             return -1;
         }
 
+        return startReplay(npc, new ListSource(recording.movements()), speedMultiplier, changeRealLocation, onComplete, viewers);
+    }
+
+    /**
+     * Starts replaying a binary recording file on an NPC. The samples are streamed from a memory mapping of the file, which is shared by all replays of the
+     * same file, so the memory used by the replay does not depend on the length of the recording.
+     *
+     * @param npc                The NPC to control
+     * @param file               The binary recording file
+     * @param speedMultiplier    Speed multiplier (speed up or slows down the replay), normal speed = 1
+     * @param changeRealLocation Whether to change the real location of the NPC
+     * @param onComplete         Callback when replay completes
+     * @return The replay session ID
+     * @throws IOException If an I/O error occurs while opening the file or the file is not a binary recording
+     */
+    public static long startReplay(@NotNull NPC npc, @NotNull File file, double speedMultiplier, boolean changeRealLocation,
+                                   @Nullable Consumer<ReplayResult> onComplete, @NotNull Player... viewers) throws IOException
+    {
+        MappedRecording recording = MappedRecording.open(file);
+        if(recording.getSampleCount() == 0)
+        {
+            recording.close();
+            if(onComplete != null)
+                onComplete.accept(ReplayResult.COMPLETED);
+            return -1;
+        }
+
+        return startReplay(npc, new CursorSource(recording.cursor(), true), speedMultiplier, changeRealLocation, onComplete, viewers);
+    }
+
+    /**
+     * Starts replaying a mapped recording on an NPC. The recording stays open after the replay.
+     *
+     * @param npc                The NPC to control
+     * @param recording          The mapped recording
+     * @param speedMultiplier    Speed multiplier (speed up or slows down the replay), normal speed = 1
+     * @param changeRealLocation Whether to change the real location of the NPC
+     * @param onComplete         Callback when replay completes
+     * @return The replay session ID
+     */
+    public static long startReplay(@NotNull NPC npc, @NotNull MappedRecording recording, double speedMultiplier, boolean changeRealLocation,
+                                   @Nullable Consumer<ReplayResult> onComplete, @NotNull Player... viewers)
+    {
+        if(recording.getSampleCount() == 0)
+        {
+            if(onComplete != null)
+                onComplete.accept(ReplayResult.COMPLETED);
+            return -1;
+        }
+
+        return startReplay(npc, new CursorSource(recording.cursor(), false), speedMultiplier, changeRealLocation, onComplete, viewers);
+    }
+
+    /**
+     * Starts replaying a compiled timeline on an NPC. The same timeline can be replayed by any number of NPCs at once, each replay only sends the
+     * precomputed relative moves of its frames.
+     *
+     * @param npc                The NPC to control
+     * @param timeline           The compiled timeline
+     * @param speedMultiplier    Speed multiplier (speed up or slows down the replay), normal speed = 1
+     * @param changeRealLocation Whether to change the real location of the NPC
+     * @param onComplete         Callback when replay completes
+     * @return The replay session ID
+     * @see ReplayTimeline#compile(MovementRecording)
+     */
+    public static long startReplay(@NotNull NPC npc, @NotNull ReplayTimeline timeline, double speedMultiplier, boolean changeRealLocation,
+                                   @Nullable Consumer<ReplayResult> onComplete, @NotNull Player... viewers)
+    {
+        long replayId = replayIdCounter.incrementAndGet();
+        TimelineSession session = new TimelineSession(npc, timeline, speedMultiplier, changeRealLocation, onComplete, replayId, viewers);
+
+        session.start();
+        return replayId;
+    }
+
+    private static long startReplay(@NotNull NPC npc, @NotNull SampleSource source, double speedMultiplier, boolean changeRealLocation,
+                                    @Nullable Consumer<ReplayResult> onComplete, @NotNull Player... viewers)
+    {
         long replayId = replayIdCounter.incrementAndGet();
-        ReplaySession session = new ReplaySession(npc, recording, speedMultiplier, changeRealLocation, onComplete, replayId, viewers);
+        StreamSession session = new StreamSession(npc, source, speedMultiplier, changeRealLocation, onComplete, replayId, viewers);
 
         session.start();
         return replayId;
@@ -95,6 +180,97 @@ public class MovementReplayer
         return false;
     }
 
+    /**
+     * Pauses the replay of an NPC. The NPC stays where it is until the replay is resumed.
+     *
+     * @param npc The NPC whose replay to pause
+     * @return true if a replay was paused, false if the NPC is not replaying
+     */
+    public static boolean pauseReplay(@NotNull NPC npc)
+    {
+        ReplaySession session = activeReplays.get(npc.getUUID());
+        if(session == null)
+            return false;
+
+        session.paused = true;
+        return true;
+    }
+
+    /**
+     * Resumes a paused replay of an NPC.
+     *
+     * @param npc The NPC whose replay to resume
+     * @return true if a replay was resumed, false if the NPC is not replaying
+     */
+    public static boolean resumeReplay(@NotNull NPC npc)
+    {
+        ReplaySession session = activeReplays.get(npc.getUUID());
+        if(session == null)
+            return false;
+
+        session.paused = false;
+        return true;
+    }
+
+    /**
+     * Checks if the replay of an NPC is paused.
+     *
+     * @param npc The NPC to check
+     * @return true if the NPC is replaying and the replay is paused, false otherwise
+     */
+    public static boolean isPaused(@NotNull NPC npc)
+    {
+        ReplaySession session = activeReplays.get(npc.getUUID());
+        return session != null && session.paused;
+    }
+
+    /**
+     * Changes the speed of the replay of an NPC. The new speed applies from the next tick on.
+     *
+     * @param npc             The NPC whose replay to change
+     * @param speedMultiplier Speed multiplier (speed up or slows down the replay), normal speed = 1
+     * @return true if the speed was changed, false if the NPC is not replaying
+     */
+    public static boolean setReplaySpeed(@NotNull NPC npc, double speedMultiplier)
+    {
+        ReplaySession session = activeReplays.get(npc.getUUID());
+        if(session == null)
+            return false;
+
+        session.setSpeed(speedMultiplier);
+        return true;
+    }
+
+    /**
+     * Moves the replay of an NPC to a point of the recording. The NPC is teleported there on the next tick. Recording files are positioned through
+     * their keyframes, so seeking costs the same anywhere in the recording.
+     *
+     * @param npc       The NPC whose replay to move
+     * @param timestamp The time in milliseconds since the start of the recording
+     * @return true if the replay was moved, false if the NPC is not replaying
+     */
+    public static boolean seekReplay(@NotNull NPC npc, long timestamp)
+    {
+        ReplaySession session = activeReplays.get(npc.getUUID());
+        if(session == null)
+            return false;
+
+        session.seek(Math.max(0, timestamp));
+        return true;
+    }
+
+    /**
+     * Gets the current time of the replay of an NPC.
+     *
+     * @param npc The NPC to check
+     * @return The time in milliseconds since the start of the recording, or -1 if the NPC is not replaying
+     */
+    public static long getReplayTime(@NotNull NPC npc)
+    {
+        ReplaySession session = activeReplays.get(npc.getUUID());
+        return session == null ? -1 : (long) session.time;
+    }
+
     /**
      * Checks if an NPC is currently replaying movements.
      *
@@ -106,6 +282,42 @@ public class MovementReplayer
         return activeReplays.containsKey(npc.getUUID());
     }
 
+    private static synchronized void startDriver()
+    {
+        if(driverTask != null)
+            return;
+
+        driverTask = Bukkit.getScheduler().runTaskTimer(NpcApi.plugin, MovementReplayer::tickReplays, 1L, 1L);
+    }
+
+    /**
+     * Advances every active replay by one tick. The task stops itself once no replay is left and is started again by the next replay.
+     */
+    private static void tickReplays()
+    {
+        if(activeReplays.isEmpty())
+        {
+            synchronized(MovementReplayer.class)
+            {
+                if(activeReplays.isEmpty() && driverTask != null)
+                {
+                    driverTask.cancel();
+                    driverTask = null;
+                }
+            }
+            return;
+        }
+
+        for(ReplaySession session : activeReplays.values())
+        {
+            if(session.paused || session.isCompleted())
+                continue;
+
+            session.tick();
+            session.time += ReplayTimeline.FRAME_MILLIS * session.speedMultiplier;
+        }
+    }
+
     /**
      * Represents the result of a replay session.
      */
@@ -116,43 +328,279 @@ public class MovementReplayer
         ERROR
     }
 
+    /**
+     * The samples a replay reads one at a time.
+     */
+    private interface SampleSource
+    {
+        @Nullable MovementData next() throws IOException;
+
+        /**
+         * Moves to the first sample at or after the given time.
+         */
+        void seek(long timestamp) throws IOException;
+
+        int index();
+
+        int size();
+
+        void close();
+    }
+
+    /**
+     * Reads the samples of a recording that is held in memory.
+     */
+    private static final class ListSource implements SampleSource
+    {
+        private final List<MovementData> movements;
+        private int index;
+
+        private ListSource(@NotNull List<MovementData> movements)
+        {
+            this.movements = movements;
+        }
+
+        @Override
+        public @Nullable MovementData next()
+        {
+            return index < movements.size() ? movements.get(index++) : null;
+        }
+
+        @Override
+        public void seek(long timestamp)
+        {
+            int low = 0;
+            int high = movements.size();
+            while(low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if(movements.get(middle).getTimestamp() < timestamp)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            index = low;
+        }
+
+        @Override
+        public int index()
+        {
+            return index;
+        }
+
+        @Override
+        public int size()
+        {
+            return movements.size();
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    /**
+     * Streams the samples of a {@link MappedRecording}.
+     */
+    private record CursorSource(@NotNull MappedRecording.Cursor cursor, boolean closeRecording) implements SampleSource
+    {
+        @Override
+        public @Nullable MovementData next() throws IOException
+        {
+            return cursor.next();
+        }
+
+        @Override
+        public void seek(long timestamp) throws IOException
+        {
+            cursor.seek(timestamp);
+        }
+
+        @Override
+        public int index()
+        {
+            return cursor.getIndex();
+        }
+
+        @Override
+        public int size()
+        {
+            return cursor.getRecording().getSampleCount();
+        }
+
+        @Override
+        public void close()
+        {
+            if(closeRecording)
+                cursor.getRecording().close();
+        }
+    }
+
     /**
      * Represents an active replay session for an NPC.
      */
-    private static class ReplaySession
+    private static abstract class ReplaySession
     {
-        private final NPC npc;
-        private final MovementRecording recording;
-        private final double speedMultiplier;
-        private final boolean changeRealLocation;
+        protected final NPC npc;
+        protected final boolean changeRealLocation;
+        protected final Player[] viewers;
         private final Consumer<ReplayResult> onComplete;
         private final long replayId;
-        private final long startTime;
-        private final Player[] viewers;
 
-        private BukkitTask replayTask;
-        private int currentIndex;
-        private long lastTimestamp;
+        // The logical clock of the replay in milliseconds since the start of the recording, only advanced by the driver
+        protected double time;
+        protected double speedMultiplier;
+        private boolean paused;
+        private boolean completed;
 
-        private ReplaySession(@NotNull NPC npc, @NotNull MovementRecording recording, double speedMultiplier, boolean changeRealLocation,
-                              @Nullable Consumer<ReplayResult> onComplete, long replayId, @Nullable Player... viewers)
+        private ReplaySession(@NotNull NPC npc, double speedMultiplier, boolean changeRealLocation, @Nullable Consumer<ReplayResult> onComplete,
+                              long replayId, @Nullable Player... viewers)
         {
             this.npc = npc;
-            this.recording = recording;
-            this.speedMultiplier = Math.max(0.1, speedMultiplier); // Minimum 0.1x speed
+            setSpeed(speedMultiplier);
             this.changeRealLocation = changeRealLocation;
             this.onComplete = onComplete;
             this.replayId = replayId;
-            this.startTime = System.currentTimeMillis();
-            this.currentIndex = 0;
-            this.lastTimestamp = 0;
             this.viewers = viewers != null && viewers.length > 0 ? viewers : null;
         }
 
+        /**
+         * Shows the NPC, moves it to the start of the replay and hands the replay to the driver.
+         *
+         * @param startLocation The first position of the replay
+         */
+        protected void start(@NotNull Location startLocation)
+        {
+            if(viewers != null)
+            {
+                for(Player p : viewers)
+                    npc.showNPCToPlayer(p);
+            }
+            else if(npc.getVisibilityManager().shouldShowToAllPlayers())
+                npc.showNpcToAllPlayers();
+            else
+            {
+                for(UUID uuid : npc.getVisibilityManager().getSpecificPlayers())
+                {
+                    Player player = Bukkit.getPlayer(uuid);
+                    if(player == null)
+                        continue;
+                    npc.showNPCToPlayer(player);
+                }
+            }
+
+            Location currentLocation = npc.getLocation();
+            npc.changeRealLocation(startLocation);
+            if(!changeRealLocation)
+                npc.setLocation(currentLocation);
+
+            ReplaySession previous = activeReplays.put(npc.getUUID(), this);
+            if(previous != null)
+                previous.stop();
+
+            startDriver();
+        }
+
+        /**
+         * Sends the state of the replay at the current {@link #time}. Called by the driver once per tick.
+         */
+        protected abstract void tick();
+
+        /**
+         * Moves the replay to a point of the recording. The next call to {@link #tick()} teleports the NPC there.
+         *
+         * @param timestamp The time in milliseconds since the start of the recording
+         */
+        protected abstract void seek(long timestamp);
+
+        private void setSpeed(double speedMultiplier)
+        {
+            this.speedMultiplier = Math.max(0.1, speedMultiplier); // Minimum 0.1x speed
+        }
+
+        /**
+         * Releases the resources of the replay once it completed.
+         */
+        protected void close() {}
+
+        private void stop()
+        {
+            complete(ReplayResult.CANCELLED);
+        }
+
+        protected void complete(@NotNull ReplayResult result)
+        {
+            if(completed)
+                return;
+            completed = true;
+            close();
+
+            if(npc != null)
+                activeReplays.remove(npc.getUUID(), this);
+
+            if(onComplete != null)
+                onComplete.accept(result);
+        }
+
+        protected boolean isCompleted()
+        {
+            return completed;
+        }
+
+        /**
+         * Sends a teleport to an absolute position, used for the first position and for moves that cannot be sent as a relative move.
+         */
+        protected void sendTeleport(@NotNull Location location)
+        {
+            sendTeleport(location, viewers);
+        }
+
+        /**
+         * Sends a teleport to an absolute position to the given players, or to all viewers of the NPC if {@code players} is {@code null}.
+         */
+        protected void sendTeleport(@NotNull Location location, @Nullable Player[] players)
+        {
+            RotateHeadPacket head = new RotateHeadPacket(npc.entity, (byte) (location.getYaw() * 256 / 360));
+            TeleportEntityPacket teleport = new TeleportEntityPacket(npc.entity,
+                    new TeleportEntityPacket.PositionMoveRotation(location.toVector(), new Vector(0, 0, 0), location.getYaw(), location.getPitch()),
+                    Set.of(), true);
+            npc.sendNpcMovePackets(teleport, head, players);
+        }
+
+        public @Nullable NPC getNpc()
+        {
+            return npc;
+        }
+
+        public long getReplayId()
+        {
+            return replayId;
+        }
+    }
+
+    /**
+     * Replays samples read one at a time, interpolating between them on the logical clock advanced by the replay driver each tick.
+     */
+    private static class StreamSession extends ReplaySession
+    {
+        private final SampleSource source;
+
+        private int currentIndex;
+        private MovementData previousMovement;
+        private MovementData sentMovement;
+        private MovementData nextMovement;
+
+        private StreamSession(@NotNull NPC npc, @NotNull SampleSource source, double speedMultiplier, boolean changeRealLocation,
+                              @Nullable Consumer<ReplayResult> onComplete, long replayId, @Nullable Player... viewers)
+        {
+            super(npc, speedMultiplier, changeRealLocation, onComplete, replayId, viewers);
+            this.source = source;
+            this.currentIndex = 0;
+        }
+
         private void start()
         {
             // Teleport NPC to starting position
-            MovementData firstMovement = recording.getFirstMovement();
+            MovementData firstMovement = readNext();
 
             if(firstMovement == null)
             {
@@ -167,72 +615,107 @@ public class MovementReplayer
                 return;
             }
 
-            Location startLocation = firstMovement.toLocation(world);
+            nextMovement = firstMovement;
+            start(firstMovement.toLocation(world));
+        }
 
-            if(viewers != null)
+        @Override
+        protected void tick()
+        {
+            if(nextMovement == null)
             {
-                for(Player p : viewers)
-                    npc.showNPCToPlayer(p);
+                if(previousMovement != null)
+                    executeMovement(previousMovement);
+
+                complete(ReplayResult.COMPLETED);
+                return;
             }
-            else if(npc.getVisibilityManager().shouldShowToAllPlayers())
-                npc.showNpcToAllPlayers();
+
+            // Move past every sample that is due, then interpolate between the last one and the next one
+            long replayTime = (long) time;
+
+            while(nextMovement != null && nextMovement.getTimestamp() <= replayTime)
+            {
+                previousMovement = nextMovement;
+                nextMovement = readNext();
+                currentIndex++;
+            }
+
+            if(previousMovement == null)
+                return;
+
+            if(nextMovement == null || !nextMovement.getWorldUUID().equals(previousMovement.getWorldUUID()))
+                executeMovement(previousMovement);
             else
+                executeMovement(interpolate(previousMovement, nextMovement, replayTime));
+        }
+
+        @Override
+        protected void seek(long timestamp)
+        {
+            try
             {
-                for(UUID uuid : npc.getVisibilityManager().getSpecificPlayers())
-                {
-                    Player player = Bukkit.getPlayer(uuid);
-                    if(player == null)
-                        continue;
-                    npc.showNPCToPlayer(player);
-                }
+                source.seek(timestamp);
+            }
+            catch(IOException e)
+            {
+                complete(ReplayResult.ERROR);
+                return;
             }
 
-            Location currentLocation = npc.getLocation();
-            npc.changeRealLocation(startLocation);
-            if(!changeRealLocation)
-                npc.setLocation(currentLocation);
+            // Start at the first sample at or after the time, which is teleported to since nothing was sent from there yet
+            previousMovement = null;
+            sentMovement = null;
+            currentIndex = source.index();
+            nextMovement = readNext();
+            time = nextMovement == null ? timestamp : Math.max(timestamp, nextMovement.getTimestamp());
+        }
 
-            activeReplays.put(npc.getUUID(), this);
+        @Override
+        protected void close()
+        {
+            nextMovement = null;
+            source.close();
+        }
 
-            // Start replay task
-            replayTask = new BukkitRunnable()
+        /**
+         * Reads the next sample from the source. A corrupted recording ends the replay with {@link ReplayResult#ERROR}.
+         */
+        private @Nullable MovementData readNext()
+        {
+            try
             {
-                @Override
-                public void run()
-                {
-                    if(currentIndex >= recording.getMovementCount())
-                    {
-                        if(!recording.movements().isEmpty())
-                            executeMovement(recording.getLastMovement());
-
-                        complete(ReplayResult.COMPLETED);
-                        return;
-                    }
-
-                    // Calculate timing based on mode - process multiple movements per tick for high speed multipliers
-                    long elapsedTime = System.currentTimeMillis() - startTime;
-                    int movementsProcessed = 0;
-
-                    while(currentIndex < recording.movements().size() && movementsProcessed < speedMultiplier)
-                    {
-                        MovementData currentMovement = recording.movements().get(currentIndex);
-                        long scaledTime = (long) (currentMovement.getTimestamp() / speedMultiplier);
-
-                        if(elapsedTime >= scaledTime)
-                        {
-                            executeMovement(currentMovement);
-                            currentIndex++;
-                            movementsProcessed++;
-                        }
-                        else
-                            break;
-                    }
-                }
-            }.runTaskTimer(NpcApi.plugin, 1L, 1L);
+                return source.next();
+            }
+            catch(IOException e)
+            {
+                complete(ReplayResult.ERROR);
+                return null;
+            }
         }
 
+        /**
+         * Interpolates the position and rotation between two samples of the same world.
+         */
+        private @NotNull MovementData interpolate(@NotNull MovementData from, @NotNull MovementData to, long timestamp)
+        {
+            double t = RecordingSimplifier.interpolationFactor(from, to, timestamp);
+            return new MovementData(timestamp, from.getWorldUUID(), from.getX() + (to.getX() - from.getX()) * t, from.getY() + (to.getY() - from.getY()) * t,
+                    from.getZ() + (to.getZ() - from.getZ()) * t, RecordingSimplifier.interpolateAngle(from.getYaw(), to.getYaw(), t),
+                    (float) (from.getPitch() + (to.getPitch() - from.getPitch()) * t));
+        }
+
+        /**
+         * Sends the NPC to a position. Nothing is sent if neither the position nor the rotation changed since the last position sent, so idle phases cost
+         * no packets.
+         */
         private void executeMovement(@NotNull MovementData movement)
         {
+            if(sentMovement != null && sentMovement.getWorldUUID().equals(movement.getWorldUUID()) && sentMovement.getX() == movement.getX() &&
+                    sentMovement.getY() == movement.getY() && sentMovement.getZ() == movement.getZ() && sentMovement.getYaw() == movement.getYaw() &&
+                    sentMovement.getPitch() == movement.getPitch())
+                return;
+
             World world = Bukkit.getWorld(movement.getWorldUUID());
             if(world == null)
             {
@@ -243,25 +726,20 @@ public class MovementReplayer
             Location targetLocation = movement.toLocation(world);
 
             // Check if this is a teleport (large distance) or smooth movement
-            RotateHeadPacket head = new RotateHeadPacket(npc.entity, (byte) (targetLocation.getYaw() * 256 / 360));
-            if(lastTimestamp > 0)
+            if(sentMovement != null && sentMovement.getWorldUUID().equals(movement.getWorldUUID()))
             {
-                MovementData previousMovement = recording.movements().get(Math.max(0, currentIndex - 1));
-                double distance = previousMovement.toLocation(world).distance(targetLocation);
+                Location previousLocation = sentMovement.toLocation(world);
+                double distance = previousLocation.distance(targetLocation);
 
                 if(distance > 10) // Teleport threshold
-                {
-
-                    TeleportEntityPacket teleport1 = new TeleportEntityPacket(npc.entity,
-                            new TeleportEntityPacket.PositionMoveRotation(targetLocation.toVector(), new Vector(0, 0, 0), targetLocation.getYaw(),
-                                    targetLocation.getPitch()), Set.of(), true);
-                    npc.sendNpcMovePackets(teleport1, head, viewers);
-                }
+                    sendTeleport(targetLocation);
                 else
                 {
+                    RotateHeadPacket head = new RotateHeadPacket(npc.entity, (byte) (targetLocation.getYaw() * 256 / 360));
                     TeleportEntityPacket teleport = new TeleportEntityPacket(npc.entity,
-                            new TeleportEntityPacket.PositionMoveRotation(previousMovement.toLocation(world).toVector(),
-                                    movement.toLocation(world).toVector(), targetLocation.getYaw(), targetLocation.getPitch()), Set.of(), true);
+                            new TeleportEntityPacket.PositionMoveRotation(targetLocation.toVector(),
+                                    targetLocation.toVector().subtract(previousLocation.toVector()), targetLocation.getYaw(), targetLocation.getPitch()),
+                            Set.of(), true);
 
                     npc.sendNpcMovePackets(teleport, head, viewers);
                 }
@@ -269,66 +747,197 @@ public class MovementReplayer
             else
             {
                 // First movement - teleport to position
-                TeleportEntityPacket teleport1 = new TeleportEntityPacket(npc.entity,
-                        new TeleportEntityPacket.PositionMoveRotation(targetLocation.toVector(), new Vector(0, 0, 0), targetLocation.getYaw(),
-                                targetLocation.getPitch()), Set.of(), true);
-                npc.sendNpcMovePackets(teleport1, head, viewers);
+                sendTeleport(targetLocation);
             }
 
             if(changeRealLocation)
                 npc.setLocation(targetLocation);
 
-            lastTimestamp = movement.getTimestamp();
+            sentMovement = movement;
         }
 
-        private void stop()
+        public int getCurrentIndex()
+        {
+            return currentIndex;
+        }
+
+        public int getTotalMovements()
+        {
+            return source.size();
+        }
+
+        public double getProgress()
+        {
+            return source.size() == 0 ? 1.0 : (double) currentIndex / source.size();
+        }
+    }
+
+    /**
+     * Replays a {@link ReplayTimeline}, advancing by the speed multiplier in frames every tick.
+     */
+    private static class TimelineSession extends ReplaySession
+    {
+        private static final int VIEWER_REFRESH_TICKS = 20;
+        private static final int RESYNC_TICKS = 100;
+
+        private final ReplayTimeline timeline;
+        private int frame = -1;
+        private Player[] recipients;
+        private Player[] synced;
+        private int recipientsAge;
+        private int resyncAge;
+
+        private TimelineSession(@NotNull NPC npc, @NotNull ReplayTimeline timeline, double speedMultiplier, boolean changeRealLocation,
+                                @Nullable Consumer<ReplayResult> onComplete, long replayId, @Nullable Player... viewers)
+        {
+            super(npc, speedMultiplier, changeRealLocation, onComplete, replayId, viewers);
+            this.timeline = timeline;
+        }
+
+        private void start()
         {
-            if(replayTask != null)
+            Location startLocation = location(0);
+            if(startLocation == null)
             {
-                replayTask.cancel();
-                replayTask = null;
+                complete(ReplayResult.ERROR);
+                return;
             }
-            complete(ReplayResult.CANCELLED);
+
+            start(startLocation);
         }
 
-        private void complete(@NotNull ReplayResult result)
+        @Override
+        protected void tick()
         {
-            if(replayTask != null)
+            int last = timeline.getFrameCount() - 1;
+            int target = (int) Math.min(last, (long) time / ReplayTimeline.FRAME_MILLIS);
+            recipientsAge++;
+            boolean teleported = false;
+            if(target != frame)
             {
-                replayTask.cancel();
-                replayTask = null;
+                teleported = sendFrame(frame, target);
+                frame = target;
             }
 
-            if(npc != null)
-                activeReplays.remove(npc.getUUID());
+            if(!isCompleted())
+                resync(teleported);
 
-            if(onComplete != null)
-                onComplete.accept(result);
+            if(frame >= last && !isCompleted())
+                complete(ReplayResult.COMPLETED);
         }
 
-        public @Nullable NPC getNpc()
+        @Override
+        protected void seek(long timestamp)
         {
-            return npc;
+            // A frame of -1 makes the next frame a teleport
+            frame = -1;
+            time = Math.min(timestamp, timeline.getDuration());
         }
 
-        public long getReplayId()
+        /**
+         * Sends the move from one frame to another. A relative move only needs the entity id of the NPC and is skipped entirely if neither the position
+         * nor the rotation changed.
+         *
+         * @return {@code true} if the frame was sent as a teleport
+         */
+        private boolean sendFrame(int from, int to)
         {
-            return replayId;
+            if(from < 0 || !timeline.isContinuous(from, to))
+            {
+                Location location = location(to);
+                if(location == null)
+                {
+                    complete(ReplayResult.ERROR);
+                    return false;
+                }
+
+                sendTeleport(location);
+                if(changeRealLocation)
+                    npc.setLocation(location);
+                return true;
+            }
+
+            short dx = timeline.deltaX(from, to);
+            short dy = timeline.deltaY(from, to);
+            short dz = timeline.deltaZ(from, to);
+            byte yaw = timeline.yawByte(to);
+            boolean rotated = yaw != timeline.yawByte(from) || timeline.pitchByte(to) != timeline.pitchByte(from);
+            if(dx == 0 && dy == 0 && dz == 0 && !rotated)
+                return false;
+
+            MoveEntityPacket.PosRot move = new MoveEntityPacket.PosRot(npc.entity.getId(), dx, dy, dz, yaw, timeline.pitchByte(to), true);
+            RotateHeadPacket head = yaw != timeline.yawByte(from) ? new RotateHeadPacket(npc.entity, yaw) : null;
+            for(Player player : recipients())
+            {
+                WrappedServerPlayer serverPlayer = WrappedServerPlayer.fromPlayer(player);
+                serverPlayer.sendPacket(move);
+                if(head != null)
+                    serverPlayer.sendPacket(head);
+            }
+
+            if(changeRealLocation)
+            {
+                Location location = location(to);
+                if(location != null)
+                    npc.setLocation(location);
+            }
+            return false;
         }
 
-        public int getCurrentIndex()
+        /**
+         * Sends an absolute teleport to the players that did not receive the previous frames, as relative moves would start from wherever they last saw
+         * the NPC, and to every player every {@link #RESYNC_TICKS} ticks, so rounding errors of the relative moves cannot add up.
+         *
+         * @param teleported whether the current frame was already sent as a teleport to every player
+         */
+        private void resync(boolean teleported)
         {
-            return currentIndex;
+            Player[] current = recipients();
+            if(teleported || resyncAge++ >= RESYNC_TICKS)
+            {
+                resyncAge = 0;
+                Location location = teleported ? null : location(frame);
+                if(location != null)
+                    sendTeleport(location, current);
+            }
+            else if(synced != null && current != synced)
+            {
+                // Players are compared by identity, so a player that joined again counts as a new recipient
+                Set<Player> previous = Collections.newSetFromMap(new IdentityHashMap<>());
+                previous.addAll(Arrays.asList(synced));
+                Player[] joined = Arrays.stream(current).filter(player -> !previous.contains(player)).toArray(Player[]::new);
+
+                Location location = joined.length == 0 ? null : location(frame);
+                if(location != null)
+                    sendTeleport(location, joined);
+            }
+            synced = current;
         }
 
-        public int getTotalMovements()
+        /**
+         * Gets the players to send the frames to, either the viewers of the replay or the online viewers of the NPC, refreshed once a second.
+         */
+        private Player @NotNull [] recipients()
         {
-            return recording.movements().size();
+            if(viewers != null)
+                return viewers;
+
+            if(recipients == null || recipientsAge >= VIEWER_REFRESH_TICKS)
+            {
+                recipientsAge = 0;
+                recipients = npc.getViewers().stream().map(Bukkit::getPlayer).filter(player -> player != null && player.isOnline())
+                        .toArray(Player[]::new);
+            }
+            return recipients;
         }
 
-        public double getProgress()
+        private @Nullable Location location(int frame)
         {
-            return recording.movements().isEmpty() ? 1.0 : (double) currentIndex / recording.movements().size();
+            World world = Bukkit.getWorld(timeline.world(frame));
+            if(world == null)
+                return null;
+
+            return new Location(world, timeline.x(frame), timeline.y(frame), timeline.z(frame), timeline.yaw(frame), timeline.pitch(frame));
         }
     }
 }
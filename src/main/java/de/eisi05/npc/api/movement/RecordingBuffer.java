@@ -0,0 +1,88 @@
+package de.eisi05.npc.api.movement;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-size ring buffer of movement samples with a single producer and a single consumer.
+ * <p>
+ * The main thread offers samples and the writer thread drains them into a {@link MovementRecordingWriter}. The samples are kept in parallel primitive
+ * arrays, so recording a sample does not allocate. Neither side blocks: offering to a full buffer fails and the sample is dropped.
+ */
+final class RecordingBuffer
+{
+    private final long[] timestamps;
+    private final UUID[] worlds;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    private final float[] yaws;
+    private final float[] pitches;
+    private final int mask;
+
+    // The index of the next sample to drain and of the next sample to offer, both only ever growing
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    RecordingBuffer(int minCapacity)
+    {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+        this.timestamps = new long[capacity];
+        this.worlds = new UUID[capacity];
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        this.zs = new double[capacity];
+        this.yaws = new float[capacity];
+        this.pitches = new float[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Adds a sample. Must only be called by the producer.
+     *
+     * @return false if the buffer is full and the sample was dropped, true otherwise
+     */
+    boolean offer(long timestamp, @NotNull UUID world, double x, double y, double z, float yaw, float pitch)
+    {
+        long index = tail.get();
+        if(index - head.get() > mask)
+            return false;
+
+        int slot = (int) index & mask;
+        timestamps[slot] = timestamp;
+        worlds[slot] = world;
+        xs[slot] = x;
+        ys[slot] = y;
+        zs[slot] = z;
+        yaws[slot] = yaw;
+        pitches[slot] = pitch;
+        tail.lazySet(index + 1);
+        return true;
+    }
+
+    /**
+     * Writes all buffered samples. Must only be called by the consumer.
+     *
+     * @param writer the writer to write the samples to
+     * @return the number of written samples
+     * @throws IOException if an I/O error occurs while writing
+     */
+    int drainTo(@NotNull MovementRecordingWriter writer) throws IOException
+    {
+        long index = head.get();
+        long end = tail.get();
+        int count = 0;
+
+        for(; index < end; index++, count++)
+        {
+            int slot = (int) index & mask;
+            writer.write(timestamps[slot], worlds[slot], xs[slot], ys[slot], zs[slot], yaws[slot], pitches[slot]);
+            head.lazySet(index + 1);
+        }
+
+        return count;
+    }
+}
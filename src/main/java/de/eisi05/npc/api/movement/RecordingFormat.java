@@ -0,0 +1,107 @@
+package de.eisi05.npc.api.movement;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Constants and primitive encoding shared by {@link MovementRecordingWriter} and {@link MovementRecordingReader}.
+ * <p>
+ * A recording file starts with a header holding the magic number, the format version, the session id, the start time, the recorded player and the
+ * interval. It is followed by the samples, each starting with a tag byte. A keyframe stores the world and the absolute timestamp, position and rotation,
+ * every other sample stores the differences to the sample before it. All values are quantized to fixed point and written as zigzag varints. After the
+ * {@link #TAG_END} tag, the footer holds the end time, the number of samples and the keyframe index with entries of {@link #KEYFRAME_ENTRY_SIZE} bytes. The
+ * file ends with the offset of the footer and {@link #TRAILER}, so a file without a trailer is a partial recording that can still be read sequentially.
+ */
+final class RecordingFormat
+{
+    static final int MAGIC = 0x4E504352; // "NPCR"
+    static final int TRAILER = 0x4E504345; // "NPCE"
+    static final byte VERSION = 1;
+
+    static final int TAG_DELTA = 0;
+    static final int TAG_KEYFRAME = 1;
+    static final int TAG_END = 0xFF;
+
+    /**
+     * The number of samples between two keyframes.
+     */
+    static final int KEYFRAME_INTERVAL = 100;
+
+    /**
+     * The size of one keyframe index entry: the sample index, the timestamp and the byte offset of the keyframe.
+     */
+    static final int KEYFRAME_ENTRY_SIZE = Integer.BYTES + Long.BYTES + Long.BYTES;
+
+    /**
+     * The size of the file end: the offset of the footer and the trailer.
+     */
+    static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private static final double POSITION_SCALE = 4096.0;
+    private static final double ANGLE_SCALE = 65536.0 / 360.0;
+
+    private RecordingFormat() {}
+
+    static long quantizePosition(double value)
+    {
+        return Math.round(value * POSITION_SCALE);
+    }
+
+    static double position(long quantized)
+    {
+        return quantized / POSITION_SCALE;
+    }
+
+    /**
+     * Quantizes an angle to 1/65536 of a full turn. Yaw values wrap around, so any angle maps into a 16 bit range.
+     */
+    static int quantizeAngle(float degrees)
+    {
+        return (int) Math.round(degrees * ANGLE_SCALE) & 0xFFFF;
+    }
+
+    static float angle(int quantized)
+    {
+        return (float) ((short) quantized / ANGLE_SCALE);
+    }
+
+    /**
+     * Gets the shortest signed difference between two quantized angles.
+     */
+    static int angleDelta(int from, int to)
+    {
+        return (short) (to - from);
+    }
+
+    static int encodeVarLong(long value, byte @NotNull [] buffer)
+    {
+        long zigzag = (value << 1) ^ (value >> 63);
+        int length = 0;
+        while((zigzag & ~0x7FL) != 0)
+        {
+            buffer[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        buffer[length++] = (byte) zigzag;
+        return length;
+    }
+
+    static long readVarLong(@NotNull InputStream in) throws IOException
+    {
+        long zigzag = 0;
+        for(int shift = 0; shift < 64; shift += 7)
+        {
+            int b = in.read();
+            if(b < 0)
+                throw new EOFException();
+
+            zigzag |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,240 @@
+package de.eisi05.npc.api.movement;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reduces a {@link MovementRecording} to the keyframes needed to reproduce it within a tolerance.
+ * <p>
+ * The samples are simplified with the Ramer–Douglas–Peucker algorithm. The error of a sample is measured against the position and rotation interpolated at
+ * its timestamp between the keyframes around it, so changes in speed are kept. Standing still and moving in a straight line at constant speed both collapse
+ * to their first and last sample. Since {@link MovementReplayer} interpolates between the samples of a recording, the simplified recording replays
+ * visually the same with far fewer samples and packets.
+ */
+public class RecordingSimplifier
+{
+    private final double positionTolerance;
+    private final double angleTolerance;
+
+    private RecordingSimplifier(@NotNull Builder builder)
+    {
+        this.positionTolerance = builder.positionTolerance;
+        this.angleTolerance = builder.angleTolerance;
+    }
+
+    /**
+     * Simplifies a recording. The first and last sample and the samples around a change of world are always kept.
+     *
+     * @param recording The recording to simplify
+     * @return A new recording containing only the kept samples
+     */
+    public @NotNull MovementRecording simplify(@NotNull MovementRecording recording)
+    {
+        List<MovementData> movements = recording.movements();
+        int size = movements.size();
+        if(size <= 2)
+            return recording;
+
+        boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[size - 1] = true;
+
+        int start = 0;
+        for(int i = 1; i < size; i++)
+        {
+            if(!movements.get(i).getWorldUUID().equals(movements.get(start).getWorldUUID()))
+            {
+                simplify(movements, keep, start, i - 1);
+                keep[i - 1] = true;
+                keep[i] = true;
+                start = i;
+            }
+        }
+        simplify(movements, keep, start, size - 1);
+
+        ArrayList<MovementData> kept = new ArrayList<>();
+        for(int i = 0; i < size; i++)
+        {
+            if(keep[i])
+                kept.add(movements.get(i));
+        }
+
+        return new MovementRecording(kept, recording.sessionId(), recording.startTime(), recording.endTime(), recording.playerUUID(),
+                recording.intervalTicks());
+    }
+
+    /**
+     * Simplifies a recording on a background thread.
+     *
+     * @param recording The recording to simplify
+     * @return A {@link CompletableFuture} completing with the simplified recording
+     */
+    public @NotNull CompletableFuture<MovementRecording> simplifyAsync(@NotNull MovementRecording recording)
+    {
+        return CompletableFuture.supplyAsync(() -> simplify(recording));
+    }
+
+    /**
+     * Marks the samples to keep between {@code first} and {@code last}, which are kept already. Iterative, so long recordings cannot overflow the stack.
+     */
+    private void simplify(@NotNull List<MovementData> movements, boolean @NotNull [] keep, int first, int last)
+    {
+        if(last - first < 2)
+            return;
+
+        keep[first] = true;
+        keep[last] = true;
+
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = first;
+        stack[top++] = last;
+
+        while(top > 0)
+        {
+            int to = stack[--top];
+            int from = stack[--top];
+            MovementData a = movements.get(from);
+            MovementData b = movements.get(to);
+
+            int split = -1;
+            double maxError = 1.0;
+            for(int i = from + 1; i < to; i++)
+            {
+                double error = error(a, b, movements.get(i));
+                if(error > maxError)
+                {
+                    maxError = error;
+                    split = i;
+                }
+            }
+
+            if(split < 0)
+                continue;
+
+            keep[split] = true;
+            if(top + 4 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+
+            if(split - from >= 2)
+            {
+                stack[top++] = from;
+                stack[top++] = split;
+            }
+            if(to - split >= 2)
+            {
+                stack[top++] = split;
+                stack[top++] = to;
+            }
+        }
+    }
+
+    /**
+     * Gets the error of a sample relative to the tolerances, compared to the interpolation between two keyframes at its timestamp. A value above 1 means
+     * the sample is outside a tolerance.
+     */
+    private double error(@NotNull MovementData a, @NotNull MovementData b, @NotNull MovementData sample)
+    {
+        double t = interpolationFactor(a, b, sample.getTimestamp());
+
+        double dx = a.getX() + (b.getX() - a.getX()) * t - sample.getX();
+        double dy = a.getY() + (b.getY() - a.getY()) * t - sample.getY();
+        double dz = a.getZ() + (b.getZ() - a.getZ()) * t - sample.getZ();
+        double positionError = Math.sqrt(dx * dx + dy * dy + dz * dz) / positionTolerance;
+
+        double yawError = Math.abs(angleDifference(interpolateAngle(a.getYaw(), b.getYaw(), t), sample.getYaw()));
+        double pitchError = Math.abs(a.getPitch() + (b.getPitch() - a.getPitch()) * t - sample.getPitch());
+        double angleError = Math.max(yawError, pitchError) / angleTolerance;
+
+        return Math.max(positionError, angleError);
+    }
+
+    /**
+     * Gets the relative position of a timestamp between two samples.
+     *
+     * @param a         The sample before
+     * @param b         The sample after
+     * @param timestamp The timestamp
+     * @return A value between 0 for {@code a} and 1 for {@code b}
+     */
+    static double interpolationFactor(@NotNull MovementData a, @NotNull MovementData b, long timestamp)
+    {
+        long span = b.getTimestamp() - a.getTimestamp();
+        return span <= 0 ? 1.0 : Math.clamp((timestamp - a.getTimestamp()) / (double) span, 0.0, 1.0);
+    }
+
+    /**
+     * Interpolates between two angles along the shorter arc.
+     *
+     * @param from The start angle in degrees
+     * @param to   The end angle in degrees
+     * @param t    The interpolation factor between 0 and 1
+     * @return The interpolated angle in degrees
+     */
+    static float interpolateAngle(float from, float to, double t)
+    {
+        return (float) (from + angleDifference(from, to) * t);
+    }
+
+    private static double angleDifference(double from, double to)
+    {
+        double difference = (to - from) % 360.0;
+        if(difference > 180.0)
+            difference -= 360.0;
+        else if(difference < -180.0)
+            difference += 360.0;
+        return difference;
+    }
+
+    /**
+     * Builder class for creating RecordingSimplifier instances with a fluent API.
+     */
+    public static class Builder
+    {
+        private double positionTolerance = 0.05;
+        private double angleTolerance = 3.0;
+
+        /**
+         * Creates a new Builder with the default tolerances.
+         */
+        public Builder() {}
+
+        /**
+         * Sets how far the replayed position may deviate from the recorded one.
+         *
+         * @param positionTolerance The tolerance in blocks. Default: 0.05
+         * @return This builder instance for method chaining
+         */
+        public @NotNull Builder positionTolerance(double positionTolerance)
+        {
+            this.positionTolerance = Math.max(1e-4, positionTolerance);
+            return this;
+        }
+
+        /**
+         * Sets how far the replayed yaw and pitch may deviate from the recorded ones.
+         *
+         * @param angleTolerance The tolerance in degrees. Default: 3
+         * @return This builder instance for method chaining
+         */
+        public @NotNull Builder angleTolerance(double angleTolerance)
+        {
+            this.angleTolerance = Math.max(1e-3, angleTolerance);
+            return this;
+        }
+
+        /**
+         * Builds and returns a new RecordingSimplifier instance.
+         *
+         * @return A new RecordingSimplifier with the configured settings
+         */
+        public @NotNull RecordingSimplifier build()
+        {
+            return new RecordingSimplifier(this);
+        }
+    }
+}
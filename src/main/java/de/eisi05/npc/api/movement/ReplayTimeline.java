@@ -0,0 +1,244 @@
+package de.eisi05.npc.api.movement;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.UUID;
+
+/**
+ * A recording compiled into one frame per tick, ready to be replayed by any number of NPCs at once.
+ * <p>
+ * The frames are interpolated from the samples of the recording once. Each frame holds its position quantized to 1/4096 of a block, its rotation as the
+ * angle bytes used by the protocol, and the relative move from the frame before it. Replaying a frame only creates the relative move packet for the entity
+ * id of the NPC, so the cost per NPC hardly depends on the recording. A timeline is immutable and can be shared freely.
+ */
+public final class ReplayTimeline
+{
+    /**
+     * The time between two frames in milliseconds.
+     */
+    public static final long FRAME_MILLIS = 50;
+
+    private static final double POSITION_SCALE = 4096.0;
+
+    private final int frameCount;
+    private final UUID[] worlds;
+    private final long[] x;
+    private final long[] y;
+    private final long[] z;
+    private final float[] yaw;
+    private final float[] pitch;
+    private final byte[] yawByte;
+    private final byte[] pitchByte;
+
+    // The relative move from the frame before, or a jump if the world changed or the move does not fit into a relative move packet
+    private final short[] deltaX;
+    private final short[] deltaY;
+    private final short[] deltaZ;
+    private final boolean[] jump;
+
+    private ReplayTimeline(int frameCount)
+    {
+        this.frameCount = frameCount;
+        this.worlds = new UUID[frameCount];
+        this.x = new long[frameCount];
+        this.y = new long[frameCount];
+        this.z = new long[frameCount];
+        this.yaw = new float[frameCount];
+        this.pitch = new float[frameCount];
+        this.yawByte = new byte[frameCount];
+        this.pitchByte = new byte[frameCount];
+        this.deltaX = new short[frameCount];
+        this.deltaY = new short[frameCount];
+        this.deltaZ = new short[frameCount];
+        this.jump = new boolean[frameCount];
+    }
+
+    /**
+     * Compiles a recording held in memory.
+     *
+     * @param recording The recording to compile
+     * @return The compiled timeline
+     * @throws IllegalArgumentException If the recording has no samples
+     */
+    public static @NotNull ReplayTimeline compile(@NotNull MovementRecording recording)
+    {
+        if(recording.movements().isEmpty())
+            throw new IllegalArgumentException("Recording has no movements");
+
+        Iterator<MovementData> iterator = recording.movements().iterator();
+        try
+        {
+            return compile(recording.movements().getLast().getTimestamp(), () -> iterator.hasNext() ? iterator.next() : null);
+        }
+        catch(IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compiles a mapped recording file. The samples are streamed from the mapping, only the frames are held in memory.
+     *
+     * @param recording The recording to compile
+     * @return The compiled timeline
+     * @throws IOException              If the recording is corrupted
+     * @throws IllegalArgumentException If the recording has no samples
+     */
+    public static @NotNull ReplayTimeline compile(@NotNull MappedRecording recording) throws IOException
+    {
+        if(recording.getSampleCount() == 0)
+            throw new IllegalArgumentException("Recording has no movements");
+
+        MappedRecording.Cursor cursor = recording.cursor();
+        long duration = 0;
+        MovementData movement;
+        while((movement = cursor.next()) != null)
+            duration = movement.getTimestamp();
+
+        return compile(duration, recording.cursor()::next);
+    }
+
+    private static @NotNull ReplayTimeline compile(long duration, @NotNull Samples samples) throws IOException
+    {
+        ReplayTimeline timeline = new ReplayTimeline((int) (Math.max(0, duration) / FRAME_MILLIS) + 1);
+
+        MovementData previous = samples.next();
+        MovementData next = samples.next();
+        for(int frame = 0; frame < timeline.frameCount; frame++)
+        {
+            long time = frame * FRAME_MILLIS;
+            while(next != null && next.getTimestamp() <= time)
+            {
+                previous = next;
+                next = samples.next();
+            }
+
+            if(next == null || !next.getWorldUUID().equals(previous.getWorldUUID()))
+                timeline.set(frame, previous, previous, 0);
+            else
+                timeline.set(frame, previous, next, RecordingSimplifier.interpolationFactor(previous, next, time));
+        }
+
+        return timeline;
+    }
+
+    private void set(int frame, @NotNull MovementData from, @NotNull MovementData to, double t)
+    {
+        worlds[frame] = from.getWorldUUID();
+        x[frame] = Math.round((from.getX() + (to.getX() - from.getX()) * t) * POSITION_SCALE);
+        y[frame] = Math.round((from.getY() + (to.getY() - from.getY()) * t) * POSITION_SCALE);
+        z[frame] = Math.round((from.getZ() + (to.getZ() - from.getZ()) * t) * POSITION_SCALE);
+        yaw[frame] = RecordingSimplifier.interpolateAngle(from.getYaw(), to.getYaw(), t);
+        pitch[frame] = (float) (from.getPitch() + (to.getPitch() - from.getPitch()) * t);
+        yawByte[frame] = (byte) (yaw[frame] * 256 / 360);
+        pitchByte[frame] = (byte) (pitch[frame] * 256 / 360);
+
+        jump[frame] = frame == 0 || !isContinuous(frame - 1, frame);
+        if(!jump[frame])
+        {
+            deltaX[frame] = (short) (x[frame] - x[frame - 1]);
+            deltaY[frame] = (short) (y[frame] - y[frame - 1]);
+            deltaZ[frame] = (short) (z[frame] - z[frame - 1]);
+        }
+    }
+
+    /**
+     * Gets the number of frames.
+     *
+     * @return The frame count
+     */
+    public int getFrameCount()
+    {
+        return frameCount;
+    }
+
+    /**
+     * Gets the time from the first to the last frame.
+     *
+     * @return The duration in milliseconds
+     */
+    public long getDuration()
+    {
+        return (frameCount - 1) * FRAME_MILLIS;
+    }
+
+    /**
+     * Checks whether the move between two frames can be sent as a relative move, which requires the same world and at most 8 blocks on each axis.
+     */
+    boolean isContinuous(int from, int to)
+    {
+        if(to == from + 1 && jump[to])
+            return false;
+
+        return worlds[from].equals(worlds[to]) && fitsShort(x[to] - x[from]) && fitsShort(y[to] - y[from]) && fitsShort(z[to] - z[from]);
+    }
+
+    short deltaX(int from, int to)
+    {
+        return to == from + 1 ? deltaX[to] : (short) (x[to] - x[from]);
+    }
+
+    short deltaY(int from, int to)
+    {
+        return to == from + 1 ? deltaY[to] : (short) (y[to] - y[from]);
+    }
+
+    short deltaZ(int from, int to)
+    {
+        return to == from + 1 ? deltaZ[to] : (short) (z[to] - z[from]);
+    }
+
+    @NotNull UUID world(int frame)
+    {
+        return worlds[frame];
+    }
+
+    double x(int frame)
+    {
+        return x[frame] / POSITION_SCALE;
+    }
+
+    double y(int frame)
+    {
+        return y[frame] / POSITION_SCALE;
+    }
+
+    double z(int frame)
+    {
+        return z[frame] / POSITION_SCALE;
+    }
+
+    float yaw(int frame)
+    {
+        return yaw[frame];
+    }
+
+    float pitch(int frame)
+    {
+        return pitch[frame];
+    }
+
+    byte yawByte(int frame)
+    {
+        return yawByte[frame];
+    }
+
+    byte pitchByte(int frame)
+    {
+        return pitchByte[frame];
+    }
+
+    private static boolean fitsShort(long value)
+    {
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    }
+
+    @FunctionalInterface
+    private interface Samples
+    {
+        @Nullable MovementData next() throws IOException;
+    }
+}
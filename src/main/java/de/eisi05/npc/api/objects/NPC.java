@@ -11,12 +11,17 @@ import de.eisi05.npc.api.events.NpcPreShowEvent;
 import de.eisi05.npc.api.events.NpcStartWalkingEvent;
 import de.eisi05.npc.api.interfaces.NpcClickAction;
 import de.eisi05.npc.api.manager.NpcManager;
+import de.eisi05.npc.api.manager.NpcSaveService;
 import de.eisi05.npc.api.manager.NpcVisibilityManager;
+import de.eisi05.npc.api.pathfinding.IncrementalPathfinder;
+import de.eisi05.npc.api.pathfinding.PathRequest;
+import de.eisi05.npc.api.pathfinding.PathfindingService;
 import de.eisi05.npc.api.pathfinding.PathfindingUtils;
 import de.eisi05.npc.api.scheduler.PathTask;
-import de.eisi05.npc.api.utils.serialize.ObjectSaver;
+import de.eisi05.npc.api.scheduler.TimeSlicedPathScheduler;
 import de.eisi05.npc.api.utils.Var;
 import de.eisi05.npc.api.utils.Versions;
+import de.eisi05.npc.api.utils.serialize.NpcClickActionAdapter;
 import de.eisi05.npc.api.wrapper.enums.Pose;
 import de.eisi05.npc.api.wrapper.objects.WrappedComponent;
 import de.eisi05.npc.api.wrapper.objects.WrappedEntity;
@@ -40,8 +45,6 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.io.Serial;
 import java.io.Serializable;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -57,7 +60,6 @@ public class NPC extends NpcHolder
     public transient final Map<UUID, String> nameCache = new HashMap<>();
     transient final Map<UUID, Map<String, Integer>> toDeleteEntities = new HashMap<>();
     private final Set<UUID> viewers = new HashSet<>();
-    private final Path npcPath;
     private final Map<UUID, PathTask> pathTasks = new HashMap<>();
     private final Set<PathTask> walkingTasks = new LinkedHashSet<>();
     public WrappedEntity<?> entity;
@@ -113,8 +115,6 @@ public class NPC extends NpcHolder
         this.location = location;
         this.entity = this.serverPlayer = WrappedServerPlayer.create(location, uuid, name.isStatic() ? name.getName() : WrappedComponent.create(null), null);
 
-        npcPath = NpcApi.plugin.getDataFolder().toPath().resolve("NPC").resolve(uuid + ".npc.json");
-
         for(NpcOption<?, ?> value : NpcOption.values())
             setOption(value, Var.unsafeCast(value.getDefaultValue()));
 
@@ -160,17 +160,17 @@ public class NPC extends NpcHolder
     }
 
     /**
-     * Checks if this NPC has been saved to a file.
+     * Checks if this NPC has been saved to the NPC store.
      *
-     * @return {@code true} if the NPC's data file exists, {@code false} otherwise.
+     * @return {@code true} if the NPC is stored, {@code false} otherwise.
      */
     public boolean isSaved()
     {
-        return Files.exists(npcPath);
+        return getUUID() != null && NpcManager.getStore().contains(getUUID());
     }
 
     /**
-     * Saves the NPC's data to a file. This method serializes the NPC's current state and writes it to a .npc file.
+     * Saves the NPC's data to the NPC store. This method serializes the NPC's current state and appends it to the store.
      *
      * @throws IOException if an I/O error occurs during saving.
      */
@@ -180,11 +180,23 @@ public class NPC extends NpcHolder
         if(getUUID() == null)
             return;
 
-        npcPath.toFile().getParentFile().mkdirs();
-        new ObjectSaver(npcPath.toFile()).write(SerializedNPC.serializedNPC(this), false);
+        NpcSaveService.waitFor(this);
+        NpcManager.getStore().put(SerializedNPC.serializedNPC(this));
         super.save();
     }
 
+    /**
+     * Marks that there are unsaved changes to this NPC and schedules it to be saved in the background if it was saved before.
+     *
+     * @see NpcSaveService
+     */
+    @Override
+    public void markChange()
+    {
+        super.markChange();
+        NpcSaveService.schedule(this);
+    }
+
     /**
      * Gets the underlying server player representation for this NPC.
      *
@@ -731,13 +743,15 @@ public class NPC extends NpcHolder
     }
 
     /**
-     * Deletes the NPC. This hides the NPC from all players, removes it from the NPC manager, and deletes its saved data file.
+     * Deletes the NPC. This hides the NPC from all players, removes it from the NPC manager, and removes its saved data from the NPC store.
      */
     public void delete() throws IOException
     {
         if(serverPlayer == null)
             return;
 
+        UUID uuid = getUUID();
+        NpcSaveService.waitFor(this);
         stopGoals();
         hideNpcFromAllPlayers();
         NpcManager.removeNPC(this);
@@ -745,8 +759,7 @@ public class NPC extends NpcHolder
         serverPlayer.remove();
         entity = serverPlayer = null;
 
-        npcPath.toFile().getParentFile().mkdirs();
-        Files.deleteIfExists(npcPath);
+        NpcManager.getStore().remove(uuid);
         super.save();
     }
 
@@ -876,10 +889,38 @@ public class NPC extends NpcHolder
         player.sendPacket(new MoveEntityPacket.Rot(entity.getId(), yawByte, pitchByte, serverPlayer.isOnGround()));
     }
 
+    /**
+     * Creates a {@link PathRequest.Builder} for the specified waypoints that is sized to the entity's current bounding box and scale.
+     *
+     * @param waypoints the list of locations the path must pass through, must not be null
+     * @return a new {@link PathRequest.Builder}, never null
+     */
+    public @NotNull PathRequest.Builder pathRequest(@NotNull List<Location> waypoints)
+    {
+        WrappedEntity.BoundingBox boundingBox = entity.getBoundingBox();
+        double scale = getOption(NpcOption.SCALE);
+        return new PathRequest.Builder(waypoints).entitySize(boundingBox.getYSize() * scale, boundingBox.getXSize() * scale);
+    }
+
+    /**
+     * Creates an {@link IncrementalPathfinder} that is sized to the entity's current bounding box and scale. The pathfinder keeps its search tree between
+     * calls, so repeated searches towards a moving target only repair the part of the tree that changed.
+     *
+     * @param maxIterations the maximum number of node expansions per search
+     * @param allowDiagonal whether diagonal movement is allowed
+     * @return a new {@link IncrementalPathfinder}, never null
+     */
+    public @NotNull IncrementalPathfinder incrementalPathfinder(int maxIterations, boolean allowDiagonal)
+    {
+        WrappedEntity.BoundingBox boundingBox = entity.getBoundingBox();
+        double scale = getOption(NpcOption.SCALE);
+        return new IncrementalPathfinder(maxIterations, allowDiagonal, boundingBox.getYSize() * scale, boundingBox.getXSize() * scale);
+    }
+
     /**
      * Asynchronously calculates a path through the specified waypoints.
      * <p>
-     * This method executes the pathfinding logic off the main thread using the Bukkit scheduler.
+     * This method executes the pathfinding logic off the main thread using the {@link PathfindingService}.
      * </p>
      *
      * @param waypoints             the list of locations the path must pass through, must not be null
@@ -893,17 +934,32 @@ public class NPC extends NpcHolder
                                                                                         boolean allowDiagonalMovement,
                                                                                         @Nullable BiConsumer<Integer, Integer> progressListener)
     {
-        return CompletableFuture.supplyAsync(() ->
-        {
-            try
-            {
-                return findPath(waypoints, maxIterations, allowDiagonalMovement, progressListener);
-            }
-            catch(PathfindingUtils.PathfindingException e)
-            {
-                throw new RuntimeException(e);
-            }
-        }, runnable -> Bukkit.getScheduler().runTaskAsynchronously(NpcApi.plugin, runnable));
+        return PathfindingService.submit(pathRequest(waypoints)
+                .maxIterations(maxIterations)
+                .allowDiagonal(allowDiagonalMovement)
+                .progressListener(progressListener)
+                .build());
+    }
+
+    /**
+     * Calculates a path through the specified waypoints on the main thread, spread over several ticks.
+     * <p>
+     * This method uses the {@link TimeSlicedPathScheduler}, which never reads the world off the main thread and limits the time spent on searches per tick.
+     * It must be called on the main thread.
+     * </p>
+     *
+     * @param waypoints             the list of locations the path must pass through, must not be null
+     * @param maxIterations         the maximum number of iterations allowed for the pathfinding algorithm before giving up
+     * @param allowDiagonalMovement {@code true} to allow diagonal movement between nodes, {@code false} for straight lines only
+     * @return a {@link CompletableFuture} that will complete on the main thread with the calculated {@link de.eisi05.npc.api.pathfinding.Path}
+     */
+    public @NotNull CompletableFuture<de.eisi05.npc.api.pathfinding.Path> findPathTimeSliced(@NotNull List<Location> waypoints, int maxIterations,
+                                                                                             boolean allowDiagonalMovement)
+    {
+        return TimeSlicedPathScheduler.submit(pathRequest(waypoints)
+                .maxIterations(maxIterations)
+                .allowDiagonal(allowDiagonalMovement)
+                .build());
     }
 
     /**
@@ -1533,18 +1589,38 @@ public class NPC extends NpcHolder
          * @return A new {@link SerializedNPC} instance representing the given NPC. Will not be null.
          */
         public static @NotNull SerializedNPC serializedNPC(@NotNull NPC npc)
+        {
+            return serializedNPC(npc, npc.getNpcName(), npc.clickEvent, false);
+        }
+
+        /**
+         * Creates a {@link SerializedNPC} instance from an existing {@link NPC} object that shares no mutable state with the NPC, so it can be serialized on
+         * another thread while the NPC keeps changing. The name and the option values are copied and the click action is converted to JSON right away.
+         * Must be called on the main thread.
+         *
+         * @param npc The NPC to serialize. Must not be null.
+         * @return A new {@link SerializedNPC} instance representing the current state of the given NPC. Will not be null.
+         */
+        public static @NotNull SerializedNPC snapshot(@NotNull NPC npc)
+        {
+            return serializedNPC(npc, npc.getNpcName().copy(), npc.clickEvent == null ? null : NpcClickActionAdapter.snapshot(npc.clickEvent), true);
+        }
+
+        private static @NotNull SerializedNPC serializedNPC(@NotNull NPC npc, @NotNull NpcName name, @Nullable NpcClickAction clickEvent,
+                                                            boolean copyOptions)
         {
             HashMap<String, HashMap<String, Serializable>> map = npc.options.entrySet()
                     .stream()
                     .collect(HashMap::new, (m, e) -> m.put(e.getKey().toString(), e.getValue()
                                     .entrySet()
                                     .stream()
-                                    .collect(HashMap::new, (om, oe) -> om.put(oe.getKey().getPath(), oe.getKey().serialize(oe.getValue())), HashMap::putAll)),
+                                    .collect(HashMap::new, (om, oe) -> om.put(oe.getKey().getPath(), oe.getKey().serialize(copyOptions ?
+                                            oe.getKey().copy(Var.unsafeCast(oe.getValue())) : oe.getValue())), HashMap::putAll)),
                             HashMap::putAll);
 
             return new SerializedNPC(npc.getLocation().getWorld().getUID(), npc.getLocation().getX(), npc.getLocation().getY(),
                     npc.getLocation().getZ(), npc.getLocation().getYaw(), npc.getLocation().getPitch(), npc.getUUID(),
-                    npc.getNpcName(), npc.clickEvent, npc.createdAt, map);
+                    name, clickEvent, npc.createdAt, map);
         }
 
         /**
@@ -80,6 +80,38 @@ public class NpcConfig
      */
     private double walkingViewerDistance = 64.0;
 
+    /**
+     * Distance in blocks up to which walking NPC movement is sent to a player on every tick.
+     * <p>
+     * Players farther away receive movement less often and the client interpolates between the updates, see {@link #walkingReducedRateDistance} and
+     * {@link #walkingReducedRateInterval}.
+     * <p>
+     * Default: 16 blocks.
+     */
+    private double walkingFullRateDistance = 16.0;
+
+    /**
+     * Distance in blocks up to which walking NPC movement is sent to a player every {@link #walkingReducedRateInterval} ticks. Players farther away receive
+     * it every {@link #walkingFarRateInterval} ticks.
+     * <p>
+     * Default: 32 blocks.
+     */
+    private double walkingReducedRateDistance = 32.0;
+
+    /**
+     * The number of ticks between two movement updates for players between {@link #walkingFullRateDistance} and {@link #walkingReducedRateDistance}.
+     * <p>
+     * Default: 2
+     */
+    private int walkingReducedRateInterval = 2;
+
+    /**
+     * The number of ticks between two movement updates for players farther away than {@link #walkingReducedRateDistance}.
+     * <p>
+     * Default: 4
+     */
+    private int walkingFarRateInterval = 4;
+
     /**
      * If true, precise hitbox detection is used for sleeping NPCs.
      * <p>
@@ -96,6 +128,85 @@ public class NpcConfig
      */
     private boolean loadChunksOnPath = false;
 
+    /**
+     * The number of chunks ahead of a walking NPC along its path that are loaded and kept loaded with a plugin chunk ticket if {@link #loadChunksOnPath} is
+     * enabled. Tickets of chunks the NPC has passed are removed again.
+     * Default: 2
+     */
+    private int loadChunksAhead = 2;
+
+    /**
+     * The number of worker threads used by the {@link de.eisi05.npc.api.pathfinding.PathfindingService} for asynchronous path searches.
+     * <p>
+     * Changes only take effect when the service is (re)started.
+     * <p>
+     * Default: 2
+     */
+    private int pathfindingThreads = 2;
+
+    /**
+     * If true, calculated paths are reduced to their turning points by removing nodes the entity can skip in a straight line on the same level.
+     * Off by default, so paths keep one node per block unless smoothing is enabled.
+     * <p>
+     * Default: false
+     */
+    private boolean smoothPaths = false;
+
+    /**
+     * The time in nanoseconds the {@link de.eisi05.npc.api.scheduler.TimeSlicedPathScheduler} may spend on path searches per tick, shared by all searches.
+     * Default: 2000000 (2 milliseconds)
+     */
+    private long timeSlicedNanosPerTick = 2_000_000;
+
+    /**
+     * The number of nodes the {@link de.eisi05.npc.api.scheduler.TimeSlicedPathScheduler} may expand per tick, shared by all searches.
+     * Default: 2000
+     */
+    private int timeSlicedNodesPerTick = 2000;
+
+    /**
+     * The longest time a movement recording may run in ticks. Once reached, the recording stops on its own and its file is finished. A value of 0 disables
+     * the limit.
+     * <p>
+     * Default: 36000 (30 minutes)
+     */
+    private long maxRecordingDuration = 20 * 60 * 30;
+
+    /**
+     * The largest size a movement recording file may reach in bytes. Once reached, the recording stops on its own and its file is finished. A value of 0
+     * disables the limit.
+     * <p>
+     * Default: 67108864 (64 MiB)
+     */
+    private long maxRecordingSize = 64L * 1024 * 1024;
+
+    /**
+     * The number of samples a movement recording buffers in memory until they are written to its file. Samples recorded while the buffer is full are
+     * dropped.
+     * <p>
+     * Changes only take effect for recordings started afterward.
+     * <p>
+     * Default: 1024
+     */
+    private int recordingBufferSize = 1024;
+
+    /**
+     * The time in ticks an NPC is saved in the background after its last change. Further changes within this time restart it, but an NPC that keeps changing
+     * is saved after at most four times this delay. A value of 0 disables saving in the background; changed NPCs are still saved when the API is disabled.
+     * <p>
+     * Default: 100 (5 seconds)
+     */
+    private int autoSaveDelay = 100;
+
+    /**
+     * The number of threads writing NPCs saved in the background.
+     * <p>
+     * Changes only take effect after the API is restarted.
+     * <p>
+     * Default: 2
+     */
+    private int saveThreads = 2;
+
     /**
      * Sets the duration an NPC will look at a player after an interaction.
      *
@@ -224,6 +335,54 @@ public class NpcConfig
         return this;
     }
 
+    /**
+     * Sets the distance in blocks up to which walking NPC movement is sent to a player on every tick.
+     *
+     * @param walkingFullRateDistance the distance in blocks
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig walkingFullRateDistance(double walkingFullRateDistance)
+    {
+        this.walkingFullRateDistance = walkingFullRateDistance;
+        return this;
+    }
+
+    /**
+     * Sets the distance in blocks up to which walking NPC movement is sent to a player every {@link #walkingReducedRateInterval()} ticks.
+     *
+     * @param walkingReducedRateDistance the distance in blocks
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig walkingReducedRateDistance(double walkingReducedRateDistance)
+    {
+        this.walkingReducedRateDistance = walkingReducedRateDistance;
+        return this;
+    }
+
+    /**
+     * Sets the number of ticks between two movement updates for players at a medium distance.
+     *
+     * @param walkingReducedRateInterval the number of ticks, at least 1
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig walkingReducedRateInterval(int walkingReducedRateInterval)
+    {
+        this.walkingReducedRateInterval = Math.max(1, walkingReducedRateInterval);
+        return this;
+    }
+
+    /**
+     * Sets the number of ticks between two movement updates for players far away.
+     *
+     * @param walkingFarRateInterval the number of ticks, at least 1
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig walkingFarRateInterval(int walkingFarRateInterval)
+    {
+        this.walkingFarRateInterval = Math.max(1, walkingFarRateInterval);
+        return this;
+    }
+
     /**
      * Sets whether precise hitbox detection is used for sleeping NPCs.
      * <p>
@@ -251,6 +410,126 @@ public class NpcConfig
         return this;
     }
 
+    /**
+     * Sets the number of chunks ahead of a walking NPC that are loaded if chunks are loaded on the path.
+     *
+     * @param loadChunksAhead the number of chunks, at least 0
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig loadChunksAhead(int loadChunksAhead)
+    {
+        this.loadChunksAhead = Math.max(0, loadChunksAhead);
+        return this;
+    }
+
+    /**
+     * Sets the number of worker threads used for asynchronous path searches.
+     *
+     * @param pathfindingThreads the number of threads, at least 1
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig pathfindingThreads(int pathfindingThreads)
+    {
+        this.pathfindingThreads = Math.max(1, pathfindingThreads);
+        return this;
+    }
+
+    /**
+     * Sets whether calculated paths should be reduced to their turning points.
+     *
+     * @param smoothPaths true to smooth paths, false to keep one node per block
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig smoothPaths(boolean smoothPaths)
+    {
+        this.smoothPaths = smoothPaths;
+        return this;
+    }
+
+    /**
+     * Sets the time the time-sliced path scheduler may spend on path searches per tick.
+     *
+     * @param timeSlicedNanosPerTick the time in nanoseconds, at least 1
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig timeSlicedNanosPerTick(long timeSlicedNanosPerTick)
+    {
+        this.timeSlicedNanosPerTick = Math.max(1, timeSlicedNanosPerTick);
+        return this;
+    }
+
+    /**
+     * Sets the number of nodes the time-sliced path scheduler may expand per tick.
+     *
+     * @param timeSlicedNodesPerTick the number of nodes, at least 1
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig timeSlicedNodesPerTick(int timeSlicedNodesPerTick)
+    {
+        this.timeSlicedNodesPerTick = Math.max(1, timeSlicedNodesPerTick);
+        return this;
+    }
+
+    /**
+     * Sets the longest time a movement recording may run.
+     *
+     * @param maxRecordingDuration the time in ticks, or 0 for no limit
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig maxRecordingDuration(long maxRecordingDuration)
+    {
+        this.maxRecordingDuration = Math.max(0, maxRecordingDuration);
+        return this;
+    }
+
+    /**
+     * Sets the largest size a movement recording file may reach.
+     *
+     * @param maxRecordingSize the size in bytes, or 0 for no limit
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig maxRecordingSize(long maxRecordingSize)
+    {
+        this.maxRecordingSize = Math.max(0, maxRecordingSize);
+        return this;
+    }
+
+    /**
+     * Sets the number of samples a movement recording buffers in memory until they are written to its file.
+     *
+     * @param recordingBufferSize the number of samples, at least 16
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig recordingBufferSize(int recordingBufferSize)
+    {
+        this.recordingBufferSize = Math.max(16, recordingBufferSize);
+        return this;
+    }
+
+    /**
+     * Sets the time after its last change an NPC is saved in the background.
+     *
+     * @param autoSaveDelay the delay in ticks, or 0 to disable saving in the background
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig autoSaveDelay(int autoSaveDelay)
+    {
+        this.autoSaveDelay = Math.max(0, autoSaveDelay);
+        return this;
+    }
+
+    /**
+     * Sets the number of threads writing NPCs saved in the background.
+     *
+     * @param saveThreads the number of threads, at least 1
+     * @return This {@link NpcConfig} instance for method chaining. Never null.
+     */
+    public @NotNull NpcConfig saveThreads(int saveThreads)
+    {
+        this.saveThreads = Math.max(1, saveThreads);
+        return this;
+    }
+
     /**
      * Gets the configured duration an NPC will look at a player.
      *
@@ -351,6 +630,46 @@ public class NpcConfig
         return walkingViewerDistance;
     }
 
+    /**
+     * Gets the distance in blocks up to which walking NPC movement is sent to a player on every tick.
+     *
+     * @return the distance in blocks
+     */
+    public double walkingFullRateDistance()
+    {
+        return walkingFullRateDistance;
+    }
+
+    /**
+     * Gets the distance in blocks up to which walking NPC movement is sent to a player every {@link #walkingReducedRateInterval()} ticks.
+     *
+     * @return the distance in blocks
+     */
+    public double walkingReducedRateDistance()
+    {
+        return walkingReducedRateDistance;
+    }
+
+    /**
+     * Gets the number of ticks between two movement updates for players at a medium distance.
+     *
+     * @return the number of ticks
+     */
+    public int walkingReducedRateInterval()
+    {
+        return walkingReducedRateInterval;
+    }
+
+    /**
+     * Gets the number of ticks between two movement updates for players far away.
+     *
+     * @return the number of ticks
+     */
+    public int walkingFarRateInterval()
+    {
+        return walkingFarRateInterval;
+    }
+
     /**
      * Checks whether precise hitbox detection is enabled for sleeping NPCs.
      *
@@ -370,4 +689,104 @@ public class NpcConfig
     {
         return loadChunksOnPath;
     }
+
+    /**
+     * Gets the number of worker threads used for asynchronous path searches.
+     *
+     * @return the number of pathfinding threads
+     */
+    public int pathfindingThreads()
+    {
+        return pathfindingThreads;
+    }
+
+    /**
+     * Checks whether calculated paths are reduced to their turning points.
+     *
+     * @return true if paths are smoothed, false otherwise
+     */
+    public boolean smoothPaths()
+    {
+        return smoothPaths;
+    }
+
+    /**
+     * Gets the time the time-sliced path scheduler may spend on path searches per tick.
+     *
+     * @return the time in nanoseconds
+     */
+    public long timeSlicedNanosPerTick()
+    {
+        return timeSlicedNanosPerTick;
+    }
+
+    /**
+     * Gets the number of nodes the time-sliced path scheduler may expand per tick.
+     *
+     * @return the number of nodes
+     */
+    public int timeSlicedNodesPerTick()
+    {
+        return timeSlicedNodesPerTick;
+    }
+
+    /**
+     * Gets the number of chunks ahead of a walking NPC that are loaded if chunks are loaded on the path.
+     *
+     * @return the number of chunks
+     */
+    public int loadChunksAhead()
+    {
+        return loadChunksAhead;
+    }
+
+    /**
+     * Gets the longest time a movement recording may run.
+     *
+     * @return the time in ticks, or 0 for no limit
+     */
+    public long maxRecordingDuration()
+    {
+        return maxRecordingDuration;
+    }
+
+    /**
+     * Gets the largest size a movement recording file may reach.
+     *
+     * @return the size in bytes, or 0 for no limit
+     */
+    public long maxRecordingSize()
+    {
+        return maxRecordingSize;
+    }
+
+    /**
+     * Gets the number of samples a movement recording buffers in memory until they are written to its file.
+     *
+     * @return the number of samples
+     */
+    public int recordingBufferSize()
+    {
+        return recordingBufferSize;
+    }
+
+    /**
+     * Gets the time after its last change an NPC is saved in the background.
+     *
+     * @return the delay in ticks, or 0 if saving in the background is disabled
+     */
+    public int autoSaveDelay()
+    {
+        return autoSaveDelay;
+    }
+
+    /**
+     * Gets the number of threads writing NPCs saved in the background.
+     *
+     * @return the number of threads
+     */
+    public int saveThreads()
+    {
+        return saveThreads;
+    }
 }
@@ -53,6 +53,14 @@ public abstract class NpcHolder implements InventoryHolder
         unsavedChanges = true;
     }
 
+    /**
+     * Marks that the current state of this NPC holder is saved without saving it. Used when a snapshot of the holder is handed to a background save.
+     */
+    public void markSaved()
+    {
+        unsavedChanges = false;
+    }
+
     /**
      * Saves the current state of the NPC holder. This method is intended to persist any changes. After successful execution, the {@code unsavedChanges} flag is
      * reset to {@code false}.
@@ -237,7 +237,7 @@ public class NpcOption<T, S extends Serializable>
      * NPC option to control which parts of the NPC's skin are visible (e.g., hat, jacket). For a full list look at {@link SkinParts}.
      */
     public static final NpcOption<SkinParts[], SkinParts[]> SKIN_PARTS = new NpcOption<>("skin-parts", SkinParts::values,
-            skinParts -> skinParts, skinParts -> skinParts, skinParts -> skinParts,
+            SkinParts[]::clone, skinParts -> skinParts, skinParts -> skinParts,
             (skinParts, npc, player) ->
             {
                 WrappedEntityData data = npc.getServerPlayer().getEntityData();
@@ -11,27 +11,11 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.function.BooleanSupplier;
 
 public class AStarPathfinder
 {
-    private static final double[][][] MOVE_COSTS = new double[3][3][3];
-
-    static
-    {
-        for(int x = -1; x <= 1; x++)
-        {
-            for(int y = -1; y <= 1; y++)
-            {
-                for(int z = -1; z <= 1; z++)
-                {
-                    if(x == 0 && y == 0 && z == 0)
-                        MOVE_COSTS[x + 1][y + 1][z + 1] = 0;
-                    else
-                        MOVE_COSTS[x + 1][y + 1][z + 1] = (Math.abs(x) + Math.abs(y) + Math.abs(z)) > 1 ? 1.414 : 1.0;
-                }
-            }
-        }
-    }
+    private static final int JUMP_MARGIN = 32;
 
     private final int maxIterations;
     private final boolean allowDiagonal;
@@ -40,7 +24,31 @@ public class AStarPathfinder
     private final PriorityQueue<Node> openSet = new PriorityQueue<>();
     private final Set<Long> openSetIds = new HashSet<>();
     private final Map<Long, Node> allNodes = new HashMap<>();
+    private final PriorityQueue<Node> backwardOpenSet = new PriorityQueue<>();
+    private final Set<Long> backwardOpenSetIds = new HashSet<>();
+    private final Map<Long, Node> backwardNodes = new HashMap<>();
     private World world;
+    private PathTerrain terrain;
+    private BooleanSupplier cancellation;
+    private SearchStrategy strategy = SearchStrategy.A_STAR;
+    private final Map<Long, Boolean> standable = new HashMap<>();
+    private int endX, endY, endZ;
+    private int minJumpX, maxJumpX, minJumpZ, maxJumpZ;
+    private Location start;
+    private Location end;
+    private int startFloorY;
+    private SearchStrategy activeStrategy;
+    private SearchState state = SearchState.FAILED;
+    private List<Location> result;
+    private int iterations;
+    private PathingResult outcome = PathingResult.NO_PATH;
+    private int expandedNodes;
+    private int peakOpenSetSize;
+    private double meetingCost;
+    private long meetingId;
+    private int jumpBudget;
+    private int jumpScanned;
+    private long jumpDeadline;
 
     public AStarPathfinder(int maxIterations, boolean allowDiagonal, double entityHeight, double entityWidth)
     {
@@ -50,6 +58,31 @@ public class AStarPathfinder
         this.entityWidth = entityWidth;
     }
 
+    /**
+     * Sets a condition that is polled while searching. Once it returns {@code true}, the current search is abandoned and {@link #getPath(Location, Location)}
+     * returns {@code null}.
+     *
+     * @param cancellation the cancellation condition, or {@code null} to never cancel
+     * @return this pathfinder for chaining
+     */
+    public @NotNull AStarPathfinder cancelWhen(@Nullable BooleanSupplier cancellation)
+    {
+        this.cancellation = cancellation;
+        return this;
+    }
+
+    /**
+     * Sets the strategy used to expand nodes.
+     *
+     * @param strategy the search strategy
+     * @return this pathfinder for chaining
+     */
+    public @NotNull AStarPathfinder strategy(@NotNull SearchStrategy strategy)
+    {
+        this.strategy = strategy;
+        return this;
+    }
+
     /**
      * Checks if a block is valid to stand on.
      */
@@ -125,244 +158,687 @@ public class AStarPathfinder
 
     public @Nullable List<Location> getPath(@NotNull Location start, @NotNull Location end) throws PathfindingUtils.PathfindingException
     {
-        if(start.getWorld() == null || end.getWorld() == null)
+        if(!begin(start, end))
             return null;
 
+        return step(Integer.MAX_VALUE, Long.MAX_VALUE) == SearchState.FOUND ? result : null;
+    }
+
+    /**
+     * Prepares a resumable search from start to end. The search does not expand any nodes until {@link #step(int, long)} is called, which allows a search to
+     * be spread over several server ticks.
+     *
+     * @param start the start location
+     * @param end   the end location
+     * @return {@code false} if the locations are not in the same world and no search was prepared
+     * @throws PathfindingUtils.PathfindingException if the start or end is not on a valid floor
+     */
+    public boolean begin(@NotNull Location start, @NotNull Location end) throws PathfindingUtils.PathfindingException
+    {
+        state = SearchState.FAILED;
+        result = null;
+        outcome = PathingResult.NO_PATH;
+        iterations = 0;
+        expandedNodes = 0;
+        peakOpenSetSize = 0;
+
+        if(start.getWorld() == null || end.getWorld() == null)
+            return false;
+
         if(!start.getWorld().equals(end.getWorld()))
-            return null;
+            return false;
 
-        openSet.clear();
-        openSetIds.clear();
-        allNodes.clear();
+        standable.clear();
         this.world = start.getWorld();
+        this.terrain = new PathTerrain(world, entityHeight, entityWidth);
 
-        int startFloorY = resolveFloorY(start);
-        int endFloorY = resolveFloorY(end);
+        int startFloorY = terrain.resolveFloorY(start);
+        int endFloorY = terrain.resolveFloorY(end);
 
         Block startFloor = world.getBlockAt(start.getBlockX(), startFloorY, start.getBlockZ());
         if(NpcApi.config.checkValidPath() && !isSafeFloor(startFloor))
+        {
+            outcome = PathingResult.INVALID_FLOOR;
             throw new PathfindingUtils.PathfindingException("Start not on a valid floor: " + start);
+        }
 
         Block endFloor = world.getBlockAt(end.getBlockX(), endFloorY, end.getBlockZ());
         if(NpcApi.config.checkValidPath() && !isSafeFloor(endFloor))
+        {
+            outcome = PathingResult.INVALID_FLOOR;
             throw new PathfindingUtils.PathfindingException("End not on a valid floor: " + end);
+        }
+
+        endX = end.getBlockX();
+        endY = endFloorY;
+        endZ = end.getBlockZ();
+        minJumpX = Math.min(start.getBlockX(), endX) - JUMP_MARGIN;
+        maxJumpX = Math.max(start.getBlockX(), endX) + JUMP_MARGIN;
+        minJumpZ = Math.min(start.getBlockZ(), endZ) - JUMP_MARGIN;
+        maxJumpZ = Math.max(start.getBlockZ(), endZ) + JUMP_MARGIN;
+
+        this.start = start;
+        this.startFloorY = startFloorY;
+        this.end = end;
+        restart(strategy);
+        return true;
+    }
+
+    /**
+     * Continues the search prepared by {@link #begin(Location, Location)} until the path is found, the search fails, or one of the budgets runs out.
+     *
+     * @param nodeBudget    the maximum number of nodes to expand in this call
+     * @param deadlineNanos the {@link System#nanoTime()} after which this call returns, checked every few nodes
+     * @return {@link SearchState#RUNNING} if the search must be stepped again, otherwise the final state
+     */
+    public @NotNull SearchState step(int nodeBudget, long deadlineNanos)
+    {
+        if(state != SearchState.RUNNING)
+            return state;
+
+        if(activeStrategy == SearchStrategy.BIDIRECTIONAL)
+            return stepBidirectional(nodeBudget, deadlineNanos);
+
+        for(int expanded = 0; expanded < nodeBudget; expanded++)
+        {
+            if(openSet.isEmpty())
+            {
+                // Jumps are bounded by a box around start and end, so fall back to plain A* if the box contains no path. The iterations are kept, so
+                // maxIterations limits the whole search
+                if(activeStrategy == SearchStrategy.JUMP_POINT && (cancellation == null || !cancellation.getAsBoolean()))
+                {
+                    restart(SearchStrategy.A_STAR);
+                    continue;
+                }
+
+                return fail(PathingResult.NO_PATH);
+            }
+
+            if(iterations > maxIterations)
+                return fail(PathingResult.ITERATIONS_EXCEEDED);
+
+            if((iterations & 63) == 0 && cancellation != null && cancellation.getAsBoolean())
+                return fail(PathingResult.CANCELLED);
+
+            if((expanded & 15) == 15 && System.nanoTime() >= deadlineNanos)
+                return state;
+
+            iterations++;
+            expandedNodes++;
+
+            Node current = openSet.poll();
+            openSetIds.remove(current.id);
+
+            if(distanceSq(current, end) < 1.0)
+            {
+                result = retracePath(current);
+                outcome = PathingResult.SUCCESS;
+                return state = SearchState.FOUND;
+            }
+
+            current.closed = true;
+
+            if(activeStrategy == SearchStrategy.JUMP_POINT)
+            {
+                // Every scanned block is charged like an expanded node, so a single expansion can not scan the whole jump box
+                jumpBudget = Math.max(1, Math.min(maxIterations - iterations, nodeBudget - expanded - 1));
+                jumpScanned = 0;
+                jumpDeadline = deadlineNanos;
+                expandJumpPoints(current, end);
+                iterations += jumpScanned;
+                expandedNodes += jumpScanned;
+                expanded += jumpScanned;
+            }
+            else
+                expandNeighbors(current, end);
+
+            peakOpenSetSize = Math.max(peakOpenSetSize, openSet.size());
+
+            if(jumpBudget == 0 && activeStrategy == SearchStrategy.JUMP_POINT && System.nanoTime() >= deadlineNanos)
+                return state;
+        }
+
+        return state;
+    }
+
+    /**
+     * Gets the state of the search prepared by {@link #begin(Location, Location)}.
+     *
+     * @return the search state
+     */
+    public @NotNull SearchState getState()
+    {
+        return state;
+    }
+
+    /**
+     * Gets the path found by the last search.
+     *
+     * @return the path, or {@code null} if the last search has not found a path
+     */
+    public @Nullable List<Location> getResult()
+    {
+        return result;
+    }
+
+    /**
+     * Gets the number of nodes expanded by the current search so far, including the blocks scanned by jumps.
+     *
+     * @return the number of expanded nodes
+     */
+    public int getIterations()
+    {
+        return iterations;
+    }
+
+    /**
+     * Gets why the last search ended.
+     *
+     * @return {@link PathingResult#SUCCESS} if a path was found, otherwise the reason the search failed
+     */
+    public @NotNull PathingResult getOutcome()
+    {
+        return outcome;
+    }
+
+    /**
+     * Gets the number of nodes expanded since {@link #begin(Location, Location)}, including the nodes of a jump point search that fell back to A* and the
+     * blocks scanned by jumps.
+     *
+     * @return the number of expanded nodes
+     */
+    public int getExpandedNodes()
+    {
+        return expandedNodes;
+    }
+
+    /**
+     * Gets the largest number of nodes the open sets held at once since {@link #begin(Location, Location)}.
+     *
+     * @return the peak open set size
+     */
+    public int getPeakOpenSetSize()
+    {
+        return peakOpenSetSize;
+    }
+
+    private @NotNull SearchState fail(@NotNull PathingResult reason)
+    {
+        outcome = reason;
+        return state = SearchState.FAILED;
+    }
+
+    private void restart(@NotNull SearchStrategy strategy)
+    {
+        openSet.clear();
+        openSetIds.clear();
+        allNodes.clear();
+        activeStrategy = strategy;
+        state = SearchState.RUNNING;
 
         Node startNode = new Node(start.getBlockX(), startFloorY, start.getBlockZ(), null);
         startNode.gCost = 0;
-        startNode.calculateH(end);
+        startNode.calculateH(endX, endY, endZ);
 
         openSet.add(startNode);
         openSetIds.add(startNode.id);
         allNodes.put(startNode.id, startNode);
 
-        int iterations = 0;
+        backwardOpenSet.clear();
+        backwardOpenSetIds.clear();
+        backwardNodes.clear();
+        meetingCost = Double.MAX_VALUE;
+
+        if(strategy != SearchStrategy.BIDIRECTIONAL)
+            return;
+
+        Node endNode = new Node(endX, endY, endZ, null);
+        endNode.gCost = 0;
+        endNode.calculateH(start.getBlockX(), startFloorY, start.getBlockZ());
 
-        while(!openSet.isEmpty())
+        backwardOpenSet.add(endNode);
+        backwardOpenSetIds.add(endNode.id);
+        backwardNodes.put(endNode.id, endNode);
+
+        if(endNode.id == startNode.id)
+        {
+            meetingCost = 0;
+            meetingId = startNode.id;
+        }
+    }
+
+    /**
+     * Steps a bidirectional search. One frontier grows from the start and one from the end, always expanding the smaller one. The search stops once the
+     * cheapest connection found between both frontiers costs no more than the larger of the smallest f-costs of both open sets. As the heuristic never
+     * overestimates, every connection not found yet costs at least that much, so the path is as short as the one plain A* finds. It fails as soon as
+     * either frontier runs out of nodes without a connection, so an enclosed start or end is detected early.
+     */
+    private @NotNull SearchState stepBidirectional(int nodeBudget, long deadlineNanos)
+    {
+        for(int expanded = 0; expanded < nodeBudget; expanded++)
         {
+            if(openSet.isEmpty() || backwardOpenSet.isEmpty())
+                return meetingCost < Double.MAX_VALUE ? finishBidirectional() : fail(PathingResult.NO_PATH);
+
+            if(meetingCost <= Math.max(openSet.peek().getFCost(), backwardOpenSet.peek().getFCost()))
+                return finishBidirectional();
+
             if(iterations > maxIterations)
-                return null;
+                return fail(PathingResult.ITERATIONS_EXCEEDED);
+
+            if((iterations & 63) == 0 && cancellation != null && cancellation.getAsBoolean())
+                return fail(PathingResult.CANCELLED);
+
+            if((expanded & 15) == 15 && System.nanoTime() >= deadlineNanos)
+                return state;
 
             iterations++;
+            expandedNodes++;
 
-            Node current = openSet.poll();
-            openSetIds.remove(current.id);
+            if(openSet.size() <= backwardOpenSet.size())
+            {
+                Node current = openSet.poll();
+                openSetIds.remove(current.id);
+                current.closed = true;
+                expandNeighbors(current, end);
+            }
+            else
+            {
+                Node current = backwardOpenSet.poll();
+                backwardOpenSetIds.remove(current.id);
+                current.closed = true;
+                expandPredecessors(current);
+            }
 
-            if(distanceSq(current, end) < 1.0)
-                return retracePath(current);
+            peakOpenSetSize = Math.max(peakOpenSetSize, openSet.size() + backwardOpenSet.size());
+        }
 
-            current.closed = true;
+        return state;
+    }
 
-            for(int x = -1; x <= 1; x++)
+    /**
+     * Adds all blocks from which a node of the backward search can be reached to the backward open set.
+     */
+    private void expandPredecessors(@NotNull Node current)
+    {
+        for(int x = -1; x <= 1; x++)
+        {
+            for(int y = -1; y <= 1; y++)
             {
-                for(int y = -1; y <= 1; y++)
+                for(int z = -1; z <= 1; z++)
                 {
-                    for(int z = -1; z <= 1; z++)
-                    {
-                        if(x == 0 && y == 0 && z == 0)
-                            continue;
+                    if(x == 0 && y == 0 && z == 0)
+                        continue;
 
-                        if(!allowDiagonal && (Math.abs(x) + Math.abs(z) > 1))
-                            continue;
+                    if(!allowDiagonal && (Math.abs(x) + Math.abs(z) > 1))
+                        continue;
 
-                        int targetX = current.x + x;
-                        int targetY = current.y + y;
-                        int targetZ = current.z + z;
+                    int sourceX = current.x + x;
+                    int sourceY = current.y + y;
+                    int sourceZ = current.z + z;
 
-                        if(!canWalk(current.x, current.y, current.z, targetX, targetY, targetZ))
-                            continue;
+                    if(!canStandOn(sourceX, sourceY, sourceZ) || !terrain.canWalk(sourceX, sourceY, sourceZ, current.x, current.y, current.z))
+                        continue;
 
-                        long id = Node.hash(targetX, targetY, targetZ);
-                        Node neighbor = allNodes.get(id);
+                    long id = Node.hash(sourceX, sourceY, sourceZ);
+                    Node predecessor = backwardNodes.get(id);
 
-                        if(neighbor == null)
-                        {
-                            neighbor = new Node(targetX, targetY, targetZ, id);
-                            allNodes.put(id, neighbor);
-                        }
+                    if(predecessor == null)
+                    {
+                        predecessor = new Node(sourceX, sourceY, sourceZ, id);
+                        backwardNodes.put(id, predecessor);
+                    }
 
-                        if(neighbor.closed)
-                            continue;
+                    if(predecessor.closed)
+                        continue;
 
-                        double newGCost = current.gCost + MOVE_COSTS[x + 1][y + 1][z + 1];
+                    double newGCost = current.gCost + PathTerrain.MOVE_COSTS[1 - x][1 - y][1 - z];
+
+                    if(newGCost < predecessor.gCost || !backwardOpenSetIds.contains(id))
+                    {
+                        // The node has to leave the queue before its cost changes, otherwise the queue can not find its position anymore
+                        if(backwardOpenSetIds.remove(id))
+                            backwardOpenSet.remove(predecessor);
 
-                        if(newGCost < neighbor.gCost || !openSetIds.contains(id))
-                        {
-                            neighbor.gCost = newGCost;
-                            neighbor.calculateH(end);
-                            neighbor.parent = current;
+                        predecessor.gCost = newGCost;
+                        predecessor.calculateH(start.getBlockX(), startFloorY, start.getBlockZ());
+                        predecessor.parent = current;
 
-                            if(!openSetIds.contains(id))
-                            {
-                                openSet.add(neighbor);
-                                openSetIds.add(id);
-                            }
-                        }
+                        backwardOpenSet.add(predecessor);
+                        backwardOpenSetIds.add(id);
+
+                        updateMeeting(allNodes.get(id), predecessor);
                     }
                 }
             }
         }
-        return null;
     }
 
     /**
-     * Advanced physics check. Checks whether we can move from one floor block to another.
-     * <p>
-     * The {@code fy} and {@code ty} values are floor-block Y coordinates. Entity feet and headspace are checked at {@code ty + 1} and {@code ty + 2}.
+     * Remembers the node as the connection of both frontiers if it is the cheapest one so far.
      */
-    private boolean canWalk(int fx, int fy, int fz, int tx, int ty, int tz)
+    private void updateMeeting(@Nullable Node forward, @Nullable Node backward)
     {
-        Block floor = world.getBlockAt(tx, ty, tz);
-        if(!isSafeFloor(floor))
-            return false;
+        if(forward == null || backward == null || forward.gCost == Double.MAX_VALUE || backward.gCost == Double.MAX_VALUE)
+            return;
+
+        double cost = forward.gCost + backward.gCost;
+        if(cost < meetingCost)
+        {
+            meetingCost = cost;
+            meetingId = forward.id;
+        }
+    }
 
-        double absoluteFeetY = feetYAt(tx, ty, tz);
+    /**
+     * Joins the forward path to the meeting node with the backward path from the meeting node to the end.
+     */
+    private @NotNull SearchState finishBidirectional()
+    {
+        List<Location> path = retracePath(allNodes.get(meetingId));
+        for(Node node = backwardNodes.get(meetingId).parent; node != null; node = node.parent)
+            path.add(new Location(world, node.x + 0.5, terrain.feetYAt(node.x, node.y, node.z), node.z + 0.5));
 
-        if(!isPositionValid(world, tx + 0.5, absoluteFeetY, tz + 0.5, entityHeight, entityWidth))
-            return false;
+        result = path;
+        outcome = PathingResult.SUCCESS;
+        return state = SearchState.FOUND;
+    }
 
-        if(fx != tx && fz != tz)
+    /**
+     * Adds all walkable neighbors of a node to the open set.
+     */
+    private void expandNeighbors(@NotNull Node current, @NotNull Location end)
+    {
+        for(int x = -1; x <= 1; x++)
         {
-            double currentFeetY = feetYAt(fx, fy, fz);
-            double checkY = Math.max(currentFeetY, absoluteFeetY);
+            for(int y = -1; y <= 1; y++)
+            {
+                for(int z = -1; z <= 1; z++)
+                {
+                    if(x == 0 && y == 0 && z == 0)
+                        continue;
 
-            if(!isPositionValid(world, fx + 0.5, checkY, tz + 0.5, entityHeight, entityWidth))
-                return false;
+                    if(!allowDiagonal && (Math.abs(x) + Math.abs(z) > 1))
+                        continue;
 
-            if(!isPositionValid(world, tx + 0.5, checkY, fz + 0.5, entityHeight, entityWidth))
-                return false;
-        }
+                    int targetX = current.x + x;
+                    int targetY = current.y + y;
+                    int targetZ = current.z + z;
 
-        if(fy != ty)
-        {
-            double currentFeetY = feetYAt(fx, fy, fz);
-            double highestFloorY = Math.max(currentFeetY, absoluteFeetY);
+                    if(!terrain.canWalk(current.x, current.y, current.z, targetX, targetY, targetZ))
+                        continue;
 
-            if(!isPositionValid(world, tx + 0.5, highestFloorY, tz + 0.5, entityHeight, entityWidth) ||
-                    !isPositionValid(world, fx + 0.5, highestFloorY, fz + 0.5, entityHeight, entityWidth))
-                return false;
+                    relax(current, targetX, targetY, targetZ, PathTerrain.MOVE_COSTS[x + 1][y + 1][z + 1], end);
+                }
+            }
         }
-
-        return true;
     }
 
     /**
-     * Resolves the block Y coordinate of the floor beneath a feet-based location. This keeps path nodes aligned with partial collision blocks such as slabs and
-     * stairs.
-     *
-     * @param loc the feet-based location to inspect
-     * @return the Y coordinate of the floor block
+     * Jump Point Search expansion. Moves that change the floor level are expanded like in plain A*, while moves on the same level jump over symmetric runs of
+     * open blocks. Blocks of the same level with the same feet height are treated as open and everything else as blocked, and a jump additionally stops next
+     * to any block that can only be reached by stepping up or down, so such moves are still expanded from a node.
      */
-    private int resolveFloorY(@NotNull Location loc)
+    private void expandJumpPoints(@NotNull Node current, @NotNull Location end)
     {
-        World w = loc.getWorld();
-        if(w == null)
-            return loc.getBlockY() - 1;
+        double feetY = terrain.feetYAt(current.x, current.y, current.z);
 
-        int bx = loc.getBlockX();
-        int bz = loc.getBlockZ();
-        int startY = loc.getBlockY();
+        for(int x = -1; x <= 1; x++)
+        {
+            for(int y = -1; y <= 1; y++)
+            {
+                for(int z = -1; z <= 1; z++)
+                {
+                    if(x == 0 && y == 0 && z == 0)
+                        continue;
 
-        double lx = loc.getX() - bx;
-        double lz = loc.getZ() - bz;
+                    if(!allowDiagonal && (Math.abs(x) + Math.abs(z) > 1))
+                        continue;
 
-        for(int y = startY + 1; y >= startY - 6; y--)
-        {
-            Block block = w.getBlockAt(bx, y, bz);
+                    if(y == 0)
+                    {
+                        int steps = jump(current.x, current.y, current.z, x, z, feetY);
+                        if(steps > 0)
+                            relax(current, current.x + x * steps, current.y, current.z + z * steps, PathTerrain.MOVE_COSTS[x + 1][1][z + 1] * steps, end);
+                        continue;
+                    }
 
-            if(block.getBlockData() instanceof Openable)
-                continue;
+                    int targetX = current.x + x;
+                    int targetY = current.y + y;
+                    int targetZ = current.z + z;
 
-            if(block.isLiquid())
-                continue;
+                    if(!terrain.canWalk(current.x, current.y, current.z, targetX, targetY, targetZ))
+                        continue;
 
-            if(!block.getType().isSolid() || block.isPassable())
-                continue;
+                    relax(current, targetX, targetY, targetZ, PathTerrain.MOVE_COSTS[x + 1][y + 1][z + 1], end);
+                }
+            }
+        }
+    }
 
-            Collection<BoundingBox> boxes = block.getCollisionShape().getBoundingBoxes();
-            if(boxes.isEmpty())
-                return y;
+    /**
+     * Jumps from a block in the given horizontal direction on the same level, following the rules of Jump Point Search without corner cutting.
+     * <p>
+     * Straight jumps stop at blocks with forced neighbors. Diagonal jumps stop where one of their straight components finds a jump point. Without diagonal
+     * movement, jumps along the x-axis play the role of the diagonal jumps and check both directions of the z-axis instead.
+     * <p>
+     * Once the scan budget of the current expansion or the deadline of the step runs out, a jump stops at the next open block as if it was a jump point.
+     * This only adds nodes that plain Jump Point Search would have skipped, so no path is lost.
+     *
+     * @return the number of steps to the jump point, or 0 if the jump ran into an obstacle without finding one
+     */
+    private int jump(int x, int y, int z, int dx, int dz, double feetY)
+    {
+        for(int steps = 1; ; steps++)
+        {
+            int nx = x + dx;
+            int nz = z + dz;
+
+            if(nx < minJumpX || nx > maxJumpX || nz < minJumpZ || nz > maxJumpZ || !terrain.canWalk(x, y, z, nx, y, nz))
+                return 0;
+
+            if(!isOpen(nx, y, nz, feetY) || isNearGoal(nx, y, nz) || hasStepNeighbor(nx, y, nz, feetY))
+                return steps;
 
-            for(BoundingBox bb : boxes)
+            jumpScanned++;
+            if(jumpScanned >= jumpBudget || ((jumpScanned & 63) == 0 && System.nanoTime() >= jumpDeadline))
             {
-                if(lx >= bb.getMinX() && lx <= bb.getMaxX() && lz >= bb.getMinZ() && lz <= bb.getMaxZ())
-                    return y;
+                jumpBudget = 0;
+                return steps;
             }
 
-            return y;
+            if(dx != 0 && dz != 0)
+            {
+                if(jump(nx, y, nz, dx, 0, feetY) > 0 || jump(nx, y, nz, 0, dz, feetY) > 0)
+                    return steps;
+            }
+            else if(dx != 0)
+            {
+                if(hasForcedNeighbor(nx, y, nz, dx, 0, feetY))
+                    return steps;
+
+                if(!allowDiagonal && (jump(nx, y, nz, 0, 1, feetY) > 0 || jump(nx, y, nz, 0, -1, feetY) > 0))
+                    return steps;
+            }
+            else if(hasForcedNeighbor(nx, y, nz, 0, dz, feetY))
+                return steps;
+
+            x = nx;
+            z = nz;
+        }
+    }
+
+    /**
+     * Checks whether a block reached by a straight move has a neighbor to its side that is open while the block behind that neighbor is blocked. Such a
+     * neighbor can not be reached on an equally short path that avoids the block.
+     */
+    private boolean hasForcedNeighbor(int x, int y, int z, int dx, int dz, double feetY)
+    {
+        for(int side = -1; side <= 1; side += 2)
+        {
+            int sideX = x + dz * side;
+            int sideZ = z + dx * side;
+            if(isOpen(sideX, y, sideZ, feetY) && !isOpen(sideX - dx, y, sideZ - dz, feetY))
+                return true;
         }
 
-        return loc.getBlockY() - 1;
+        return false;
     }
 
-    private @NotNull List<Location> retracePath(@NotNull Node current)
+    /**
+     * Checks whether a horizontal neighbor of a block can only be reached by stepping up or down, or differs in feet height.
+     */
+    private boolean hasStepNeighbor(int x, int y, int z, double feetY)
     {
-        List<Location> path = new ArrayList<>();
-        while(current != null)
+        for(int dx = -1; dx <= 1; dx++)
         {
-            double feetY = feetYAt(current.x, current.y, current.z);
-            path.add(new Location(world, current.x + 0.5, feetY, current.z + 0.5));
-            current = current.parent;
+            for(int dz = -1; dz <= 1; dz++)
+            {
+                if(dx == 0 && dz == 0)
+                    continue;
+
+                int nx = x + dx;
+                int nz = z + dz;
+                if(isOpen(nx, y, nz, feetY))
+                    continue;
+
+                if(canStandOn(nx, y, nz) || canStandOn(nx, y + 1, nz) || canStandOn(nx, y - 1, nz))
+                    return true;
+            }
         }
-        Collections.reverse(path);
-        return path;
+
+        return false;
+    }
+
+    private boolean isOpen(int x, int y, int z, double feetY)
+    {
+        return canStandOn(x, y, z) && Math.abs(terrain.feetYAt(x, y, z) - feetY) < 1e-6;
     }
 
-    private double feetYAt(int x, int floorY, int z)
+    private boolean canStandOn(int x, int y, int z)
     {
-        Block floor = world.getBlockAt(x, floorY, z);
-        return floorY + topSurfaceAt(floor, 0.5, 0.5);
+        return standable.computeIfAbsent(Node.hash(x, y, z), id -> terrain.canStandOn(x, y, z));
     }
 
-    private double topSurfaceAt(@NotNull Block block, double lx, double lz)
+    private boolean isNearGoal(int x, int y, int z)
     {
-        Collection<BoundingBox> boxes = block.getCollisionShape().getBoundingBoxes();
-        if(boxes.isEmpty())
-            return 1.0;
+        return Math.abs(x - endX) <= 1 && Math.abs(z - endZ) <= 1 && Math.abs(y - endY) <= 1;
+    }
+
+    /**
+     * Updates a node if the given move offers a cheaper way to reach it.
+     */
+    private void relax(@NotNull Node current, int targetX, int targetY, int targetZ, double moveCost, @NotNull Location end)
+    {
+        long id = Node.hash(targetX, targetY, targetZ);
+        Node neighbor = allNodes.get(id);
+
+        if(neighbor == null)
+        {
+            neighbor = new Node(targetX, targetY, targetZ, id);
+            allNodes.put(id, neighbor);
+        }
+
+        if(neighbor.closed)
+            return;
 
-        double bestTop = -1.0;
+        double newGCost = current.gCost + moveCost;
 
-        for(BoundingBox bb : boxes)
+        if(newGCost < neighbor.gCost || !openSetIds.contains(id))
         {
-            if(lx >= bb.getMinX() && lx <= bb.getMaxX() && lz >= bb.getMinZ() && lz <= bb.getMaxZ())
-                bestTop = Math.max(bestTop, bb.getMaxY());
+            // A cheaper node has to be queued again, as the queue does not notice that its cost changed
+            if(openSetIds.contains(id))
+                openSet.remove(neighbor);
+
+            neighbor.gCost = newGCost;
+            neighbor.calculateH(endX, endY, endZ);
+            neighbor.parent = current;
+
+            openSet.add(neighbor);
+            openSetIds.add(id);
+
+            if(activeStrategy == SearchStrategy.BIDIRECTIONAL)
+                updateMeeting(neighbor, backwardNodes.get(id));
         }
+    }
 
-        if(bestTop < 0.0)
+    private @NotNull List<Location> retracePath(@NotNull Node current)
+    {
+        List<Location> path = new ArrayList<>();
+        while(current != null)
         {
-            for(BoundingBox bb : boxes)
-                bestTop = Math.max(bestTop, bb.getMaxY());
+            double feetY = terrain.feetYAt(current.x, current.y, current.z);
+            path.add(new Location(world, current.x + 0.5, feetY, current.z + 0.5));
+
+            // Fill in the blocks skipped by a jump so callers always get one node per block
+            Node parent = current.parent;
+            if(parent != null)
+            {
+                int steps = Math.max(Math.abs(current.x - parent.x), Math.abs(current.z - parent.z));
+                int dx = Integer.signum(current.x - parent.x);
+                int dz = Integer.signum(current.z - parent.z);
+                for(int i = steps - 1; i > 0; i--)
+                {
+                    int x = parent.x + dx * i;
+                    int z = parent.z + dz * i;
+                    path.add(new Location(world, x + 0.5, terrain.feetYAt(x, current.y, z), z + 0.5));
+                }
+            }
+
+            current = parent;
         }
+        Collections.reverse(path);
+        return path;
+    }
 
-        if(bestTop <= 0.0)
-            return 1.0;
+    /**
+     * The state of a resumable search.
+     */
+    public enum SearchState
+    {
+        /**
+         * The search has not finished yet and must be stepped again.
+         */
+        RUNNING,
+
+        /**
+         * The search found a path, available through {@link #getResult()}.
+         */
+        FOUND,
+
+        /**
+         * The search failed, was cancelled or exceeded its iteration limit.
+         */
+        FAILED
+    }
 
-        return bestTop;
+    /**
+     * The strategy used to expand nodes during a search.
+     */
+    public enum SearchStrategy
+    {
+        /**
+         * Expands every walkable neighbor of a node.
+         */
+        A_STAR,
+
+        /**
+         * Skips symmetric runs of open blocks on the same level using Jump Point Search. Expands far fewer nodes on open terrain. The blocks scanned by the
+         * jumps count towards the iteration limit and the node budget of a step.
+         */
+        JUMP_POINT,
+
+        /**
+         * Searches from the start and the end at the same time until both frontiers meet. Expands about half as many nodes on long routes and fails fast if
+         * either the start or the end is enclosed.
+         */
+        BIDIRECTIONAL
     }
 
     private double distanceSq(@NotNull Node n, @NotNull Location l)
     {
         double dx = (n.x + 0.5) - l.getX();
-        double dy = feetYAt(n.x, n.y, n.z) - l.getY();
+        double dy = terrain.feetYAt(n.x, n.y, n.z) - l.getY();
         double dz = (n.z + 0.5) - l.getZ();
         return dx * dx + dy * dy + dz * dz;
     }
@@ -390,12 +866,19 @@ public class AStarPathfinder
             return ((long) x & 0x3FFFFFF) | (((long) z & 0x3FFFFFF) << 26) | (((long) y & 0xFFF) << 52);
         }
 
-        public void calculateH(@NotNull Location end)
+        /**
+         * Calculates the octile distance to the given block. A move that changes two or three axes costs as much as a diagonal move, so the distance is the
+         * largest axis difference plus the extra cost of a diagonal move for the second largest one. No single move lowers it by more than the move costs,
+         * so it never overestimates and a node is never reached on a cheaper path after it was expanded.
+         */
+        public void calculateH(int targetX, int targetY, int targetZ)
         {
-            double dx = (x + 0.5) - end.getX();
-            double dy = (y + 1.0) - end.getY();
-            double dz = (z + 0.5) - end.getZ();
-            this.hCost = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            int dx = Math.abs(x - targetX);
+            int dy = Math.abs(y - targetY);
+            int dz = Math.abs(z - targetZ);
+            int max = Math.max(dx, Math.max(dy, dz));
+            int mid = dx + dy + dz - max - Math.min(dx, Math.min(dy, dz));
+            this.hCost = max + (PathTerrain.MOVE_COSTS[0][1][0] - PathTerrain.MOVE_COSTS[1][1][0]) * mid;
         }
 
         public double getFCost()
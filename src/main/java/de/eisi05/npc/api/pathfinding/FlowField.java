@@ -0,0 +1,437 @@
+package de.eisi05.npc.api.pathfinding;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A precomputed navigation field towards a single destination.
+ * <p>
+ * The field stores, for every floor block in a bounded region around the destination, the cost of the cheapest path to the destination and the direction of
+ * the first step of that path. It is calculated once with a Dijkstra search outward from the destination, after which any number of entities can follow it
+ * by reading the stored directions, so the cost of moving a crowd to the same place no longer grows with the number of entities.
+ * <p>
+ * Fields are shared through {@link #get(Location, int, int, boolean, double, double)} and dropped from the cache once a block inside their region changes. A
+ * field whose region changes while it is still being calculated is calculated again, so the entities waiting for it receive a current field.
+ */
+public class FlowField
+{
+    private static final long CACHE_TTL_MILLIS = 60_000;
+    private static final int MAX_RECOMPUTES = 3;
+    private static final Map<Key, Entry> cache = new ConcurrentHashMap<>();
+
+    private final World world;
+    private final PathTerrain terrain;
+    private final int destinationX, destinationY, destinationZ;
+    private final int minX, minY, minZ;
+    private final int sizeX, sizeY, sizeZ;
+    private final float[] costs;
+    private final byte[] directions;
+    private volatile boolean stale;
+
+    private FlowField(@NotNull World world, @NotNull PathTerrain terrain, int destinationX, int destinationY, int destinationZ, int radius, int height)
+    {
+        this.world = world;
+        this.terrain = terrain;
+        this.destinationX = destinationX;
+        this.destinationY = destinationY;
+        this.destinationZ = destinationZ;
+        this.minX = destinationX - radius;
+        this.minY = destinationY - height;
+        this.minZ = destinationZ - radius;
+        this.sizeX = radius * 2 + 1;
+        this.sizeY = height * 2 + 1;
+        this.sizeZ = radius * 2 + 1;
+        this.costs = new float[sizeX * sizeY * sizeZ];
+        this.directions = new byte[costs.length];
+        Arrays.fill(costs, Float.POSITIVE_INFINITY);
+        Arrays.fill(directions, (byte) -1);
+    }
+
+    /**
+     * Gets a shared flow field towards the given destination. If an identical field is cached or already being calculated, that field is returned; otherwise
+     * a new one is calculated on the {@link PathfindingService} worker pool.
+     *
+     * @param destination   the location all entities should walk to
+     * @param radius        the horizontal distance from the destination the field covers, in blocks
+     * @param height        the vertical distance from the destination the field covers, in blocks
+     * @param allowDiagonal whether diagonal movement is allowed
+     * @param entityHeight  the height of the entities following the field
+     * @param entityWidth   the width of the entities following the field
+     * @return a {@link CompletableFuture} that completes with the field, or exceptionally if the destination is not on a valid floor
+     */
+    public static @NotNull CompletableFuture<FlowField> get(@NotNull Location destination, int radius, int height, boolean allowDiagonal, double entityHeight,
+                                                            double entityWidth)
+    {
+        World world = destination.getWorld();
+        if(world == null)
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Destination has no world"));
+
+        long now = System.currentTimeMillis();
+        cache.values().removeIf(entry -> now - entry.lastAccess > CACHE_TTL_MILLIS);
+
+        Key key = new Key(world.getUID(), destination.getBlockX(), destination.getBlockY(), destination.getBlockZ(), radius, height, allowDiagonal,
+                entityHeight, entityWidth);
+        Location target = destination.clone();
+        Entry entry = cache.compute(key, (k, existing) ->
+        {
+            if(existing != null && !existing.future.isCompletedExceptionally() && !existing.future.isCancelled())
+                return existing;
+
+            return new Entry(PathfindingService.priorityOf(target), () -> compute(target, radius, height, allowDiagonal, entityHeight, entityWidth));
+        });
+        entry.lastAccess = now;
+        entry.start();
+
+        return entry.future;
+    }
+
+    /**
+     * Synchronously calculates a flow field towards the given destination without using the cache.
+     *
+     * @param destination   the location all entities should walk to
+     * @param radius        the horizontal distance from the destination the field covers, in blocks
+     * @param height        the vertical distance from the destination the field covers, in blocks
+     * @param allowDiagonal whether diagonal movement is allowed
+     * @param entityHeight  the height of the entities following the field
+     * @param entityWidth   the width of the entities following the field
+     * @return the calculated field
+     * @throws PathfindingUtils.PathfindingException if the destination is not on a valid floor
+     */
+    public static @NotNull FlowField compute(@NotNull Location destination, int radius, int height, boolean allowDiagonal, double entityHeight,
+                                             double entityWidth) throws PathfindingUtils.PathfindingException
+    {
+        World world = destination.getWorld();
+        if(world == null)
+            throw new IllegalArgumentException("Destination has no world");
+
+        PathTerrain terrain = new PathTerrain(world, entityHeight, entityWidth);
+        int floorY = terrain.resolveFloorY(destination);
+        if(!terrain.canStandOn(destination.getBlockX(), floorY, destination.getBlockZ()))
+            throw new PathfindingUtils.PathfindingException("Destination not on a valid floor: " + destination);
+
+        FlowField field = new FlowField(world, terrain, destination.getBlockX(), floorY, destination.getBlockZ(), Math.max(1, radius), Math.max(1, height));
+        field.integrate(allowDiagonal);
+        return field;
+    }
+
+    /**
+     * Drops all cached fields whose region contains the given block, so the next request calculates a fresh field. Entities that already follow a dropped
+     * field can check {@link #isStale()}. Fields that are still being calculated stay cached and are calculated again once the current calculation ends.
+     *
+     * @param world the world of the changed block
+     * @param x     the x coordinate of the changed block
+     * @param y     the y coordinate of the changed block
+     * @param z     the z coordinate of the changed block
+     */
+    public static void blockChanged(@NotNull World world, int x, int y, int z)
+    {
+        if(cache.isEmpty())
+            return;
+
+        UUID worldId = world.getUID();
+        cache.entrySet().removeIf(entry ->
+        {
+            Key key = entry.getKey();
+            if(!key.world.equals(worldId) || Math.abs(x - key.x) > key.radius + 1 || Math.abs(z - key.z) > key.radius + 1 ||
+                    Math.abs(y - key.y) > key.height + 3)
+                return false;
+
+            FlowField field = entry.getValue().future.getNow(null);
+            if(field == null && !entry.getValue().future.isDone())
+            {
+                entry.getValue().changes.incrementAndGet();
+                return false;
+            }
+
+            if(field != null)
+                field.stale = true;
+            return true;
+        });
+    }
+
+    /**
+     * Clears the cache of shared fields.
+     */
+    public static void clearCache()
+    {
+        cache.values().forEach(entry ->
+        {
+            entry.future.cancel(false);
+            if(entry.running != null)
+                entry.running.cancel(false);
+        });
+        cache.clear();
+    }
+
+    /**
+     * Gets the world this field was calculated in.
+     *
+     * @return the world
+     */
+    public @NotNull World getWorld()
+    {
+        return world;
+    }
+
+    /**
+     * Checks whether a block inside the region of this field changed after it was calculated. A stale field may lead through blocks that are no longer
+     * walkable.
+     *
+     * @return true if the field is stale
+     */
+    public boolean isStale()
+    {
+        return stale;
+    }
+
+    /**
+     * Gets the cost of the cheapest path from the given location to the destination.
+     *
+     * @param location the feet location of an entity
+     * @return the cost, or {@link Double#POSITIVE_INFINITY} if the destination cannot be reached from the location
+     */
+    public double getCost(@NotNull Location location)
+    {
+        int index = indexOf(location);
+        return index < 0 ? Double.POSITIVE_INFINITY : costs[index];
+    }
+
+    /**
+     * Follows the field from the given location to the destination.
+     *
+     * @param start the feet location of an entity
+     * @return the nodes from the start to the destination, or {@code null} if the destination cannot be reached from the start
+     */
+    public @Nullable List<Location> pathFrom(@NotNull Location start)
+    {
+        int index = indexOf(start);
+        if(index < 0 || costs[index] == Float.POSITIVE_INFINITY)
+            return null;
+
+        int x = start.getBlockX();
+        int y = terrain.resolveFloorY(start);
+        int z = start.getBlockZ();
+
+        List<Location> path = new ArrayList<>();
+        path.add(new Location(world, x + 0.5, terrain.feetYAt(x, y, z), z + 0.5));
+
+        for(int steps = 0; steps < costs.length && (x != destinationX || y != destinationY || z != destinationZ); steps++)
+        {
+            int direction = directions[index(x, y, z)];
+            if(direction < 0)
+                return null;
+
+            x += direction / 9 - 1;
+            y += direction / 3 % 3 - 1;
+            z += direction % 3 - 1;
+            path.add(new Location(world, x + 0.5, terrain.feetYAt(x, y, z), z + 0.5));
+        }
+
+        return path;
+    }
+
+    /**
+     * Runs the Dijkstra search outward from the destination. Edges are followed backwards, so each reached block stores the direction towards the block it
+     * was reached from.
+     */
+    private void integrate(boolean allowDiagonal)
+    {
+        LongHeap open = new LongHeap();
+        int destination = index(destinationX, destinationY, destinationZ);
+        costs[destination] = 0;
+        open.add(entry(0, destination));
+
+        while(!open.isEmpty())
+        {
+            long entry = open.poll();
+            int index = (int) entry;
+            float cost = Float.intBitsToFloat((int) (entry >>> 32));
+            if(cost > costs[index])
+                continue;
+
+            int x = minX + index / (sizeY * sizeZ);
+            int y = minY + index / sizeZ % sizeY;
+            int z = minZ + index % sizeZ;
+
+            for(int dx = -1; dx <= 1; dx++)
+            {
+                for(int dy = -1; dy <= 1; dy++)
+                {
+                    for(int dz = -1; dz <= 1; dz++)
+                    {
+                        if(dx == 0 && dy == 0 && dz == 0)
+                            continue;
+
+                        if(!allowDiagonal && (Math.abs(dx) + Math.abs(dz) > 1))
+                            continue;
+
+                        int px = x + dx;
+                        int py = y + dy;
+                        int pz = z + dz;
+                        if(!contains(px, py, pz))
+                            continue;
+
+                        int previous = index(px, py, pz);
+                        float newCost = cost + (float) PathTerrain.MOVE_COSTS[1 - dx][1 - dy][1 - dz];
+                        if(newCost >= costs[previous])
+                            continue;
+
+                        if(!terrain.canStandOn(px, py, pz) || !terrain.canWalk(px, py, pz, x, y, z))
+                            continue;
+
+                        costs[previous] = newCost;
+                        directions[previous] = (byte) ((1 - dx) * 9 + (1 - dy) * 3 + (1 - dz));
+                        open.add(entry(newCost, previous));
+                    }
+                }
+            }
+        }
+    }
+
+    private int indexOf(@NotNull Location location)
+    {
+        if(!world.equals(location.getWorld()))
+            return -1;
+
+        int x = location.getBlockX();
+        int y = terrain.resolveFloorY(location);
+        int z = location.getBlockZ();
+        return contains(x, y, z) ? index(x, y, z) : -1;
+    }
+
+    private boolean contains(int x, int y, int z)
+    {
+        return x >= minX && x < minX + sizeX && y >= minY && y < minY + sizeY && z >= minZ && z < minZ + sizeZ;
+    }
+
+    private int index(int x, int y, int z)
+    {
+        return ((x - minX) * sizeY + (y - minY)) * sizeZ + (z - minZ);
+    }
+
+    /**
+     * Packs a non-negative cost and an index into a single long that sorts by cost.
+     */
+    private static long entry(float cost, int index)
+    {
+        return ((long) Float.floatToIntBits(cost) << 32) | (index & 0xFFFFFFFFL);
+    }
+
+    private record Key(UUID world, int x, int y, int z, int radius, int height, boolean allowDiagonal, double entityHeight, double entityWidth) {}
+
+    private static final class Entry
+    {
+        private final CompletableFuture<FlowField> future = new CompletableFuture<>();
+        // Counts the block changes inside the region, a calculation that overlapped one of them is repeated
+        private final AtomicInteger changes = new AtomicInteger();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final double priority;
+        private final Callable<FlowField> calculation;
+        private int computes;
+        private volatile CompletableFuture<FlowField> running;
+        private volatile long lastAccess;
+
+        private Entry(double priority, @NotNull Callable<FlowField> calculation)
+        {
+            this.priority = priority;
+            this.calculation = calculation;
+        }
+
+        private void start()
+        {
+            if(started.compareAndSet(false, true))
+                submit();
+        }
+
+        private void submit()
+        {
+            int changesBefore = changes.get();
+            computes++;
+            running = PathfindingService.execute(priority, calculation);
+            running.whenComplete((field, error) ->
+            {
+                if(future.isDone())
+                    return;
+
+                // A field calculated while its region changed may already be outdated. After a few attempts the last one is used anyway, so a region
+                // that keeps changing cannot keep the waiting entities from ever walking.
+                if(changes.get() != changesBefore && computes < MAX_RECOMPUTES)
+                {
+                    submit();
+                    return;
+                }
+
+                if(error != null)
+                    future.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                else
+                    future.complete(field);
+            });
+        }
+    }
+
+    /**
+     * A minimal binary min-heap of primitive longs, avoiding a boxed {@link Long} per queued block.
+     */
+    private static final class LongHeap
+    {
+        private long[] heap = new long[256];
+        private int size;
+
+        private boolean isEmpty()
+        {
+            return size == 0;
+        }
+
+        private void add(long value)
+        {
+            if(size == heap.length)
+                heap = Arrays.copyOf(heap, size * 2);
+
+            int i = size++;
+            while(i > 0)
+            {
+                int parent = (i - 1) >>> 1;
+                if(heap[parent] <= value)
+                    break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        private long poll()
+        {
+            long result = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            while(true)
+            {
+                int child = i * 2 + 1;
+                if(child >= size)
+                    break;
+                if(child + 1 < size && heap[child + 1] < heap[child])
+                    child++;
+                if(heap[child] >= last)
+                    break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,550 @@
+package de.eisi05.npc.api.pathfinding;
+
+import de.eisi05.npc.api.NpcApi;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A Lifelong Planning A* (LPA*) pathfinder that keeps its search tree between calls.
+ * <p>
+ * The tree is rooted at the start of the first search. Later calls with a moved goal only re-key the open list and expand the part of the tree that changed,
+ * and block changes reported through {@link #blockChanged(World, int, int, int)} only repair the affected vertices. While the start stays on the previously
+ * returned path, the returned path is cut at the start. Once the start leaves that path, the tree is rebuilt from the new start.
+ * <p>
+ * Instances are meant to be owned by a single following NPC and are safe to use from the pathfinding worker threads.
+ */
+public class IncrementalPathfinder
+{
+    private static final Set<IncrementalPathfinder> instances = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private static final double DIAGONAL_HEURISTIC = 1.414 / 3.0;
+
+    private final int maxIterations;
+    private final boolean allowDiagonal;
+    private final double entityHeight;
+    private final double entityWidth;
+    private final int maxNodes;
+    private final int[][] directions;
+    private final Map<Long, Node> nodes = new HashMap<>();
+    private final TreeSet<Node> open = new TreeSet<>();
+    private final Queue<long[]> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final Set<Long> lastPath = new HashSet<>();
+
+    private volatile UUID worldId;
+    private PathTerrain terrain;
+    private Node root;
+    private Node goal;
+    private int lastExpansions;
+    private int lastPeakOpenSetSize;
+    private PathingResult lastOutcome = PathingResult.NO_PATH;
+
+    public IncrementalPathfinder(int maxIterations, boolean allowDiagonal, double entityHeight, double entityWidth)
+    {
+        this.maxIterations = maxIterations;
+        this.allowDiagonal = allowDiagonal;
+        this.entityHeight = entityHeight;
+        this.entityWidth = entityWidth;
+        this.maxNodes = Math.max(1024, maxIterations * 8);
+
+        List<int[]> list = new ArrayList<>();
+        for(int x = -1; x <= 1; x++)
+        {
+            for(int y = -1; y <= 1; y++)
+            {
+                for(int z = -1; z <= 1; z++)
+                {
+                    if(x == 0 && y == 0 && z == 0)
+                        continue;
+
+                    if(!allowDiagonal && (Math.abs(x) + Math.abs(z) > 1))
+                        continue;
+
+                    list.add(new int[]{x, y, z});
+                }
+            }
+        }
+        this.directions = list.toArray(int[][]::new);
+
+        instances.add(this);
+    }
+
+    /**
+     * Reports a changed block to every incremental pathfinder searching in the given world. The change is applied lazily before the next search.
+     *
+     * @param world the world the block is in
+     * @param x     the x coordinate of the block
+     * @param y     the y coordinate of the block
+     * @param z     the z coordinate of the block
+     */
+    public static void blockChanged(@NotNull World world, int x, int y, int z)
+    {
+        UUID id = world.getUID();
+        synchronized(instances)
+        {
+            for(IncrementalPathfinder pathfinder : instances)
+            {
+                if(id.equals(pathfinder.worldId))
+                    pathfinder.pendingChanges.add(new long[]{x, y, z});
+            }
+        }
+    }
+
+    /**
+     * Calculates a path, reusing the search tree of previous calls where possible.
+     *
+     * @param start the start location
+     * @param end   the end location
+     * @return the path as a list of locations, or {@code null} if no path could be found
+     * @throws PathfindingUtils.PathfindingException if the start or end is not on a valid floor
+     */
+    public @Nullable List<Location> getPath(@NotNull Location start, @NotNull Location end) throws PathfindingUtils.PathfindingException
+    {
+        return getPath(start, end, null);
+    }
+
+    /**
+     * Calculates a path, reusing the search tree of previous calls where possible, and polls the given condition to abandon the search early. An abandoned
+     * search leaves the tree in a consistent state and is continued by the next call.
+     *
+     * @param start        the start location
+     * @param end          the end location
+     * @param cancellation a condition that cancels the search once it returns {@code true}, or {@code null}
+     * @return the path as a list of locations, or {@code null} if no path could be found or the search was cancelled
+     * @throws PathfindingUtils.PathfindingException if the start or end is not on a valid floor
+     */
+    public synchronized @Nullable List<Location> getPath(@NotNull Location start, @NotNull Location end, @Nullable BooleanSupplier cancellation)
+            throws PathfindingUtils.PathfindingException
+    {
+        lastExpansions = 0;
+        lastPeakOpenSetSize = 0;
+        lastOutcome = PathingResult.NO_PATH;
+
+        World world = start.getWorld();
+        if(world == null || end.getWorld() == null || !world.equals(end.getWorld()))
+            return null;
+
+        if(terrain == null || !world.getUID().equals(worldId))
+        {
+            reset();
+            terrain = new PathTerrain(world, entityHeight, entityWidth);
+            worldId = world.getUID();
+        }
+
+        int startFloorY = terrain.resolveFloorY(start);
+        int endFloorY = terrain.resolveFloorY(end);
+
+        if(NpcApi.config.checkValidPath() && !AStarPathfinder.isSafeFloor(world.getBlockAt(start.getBlockX(), startFloorY, start.getBlockZ())))
+        {
+            lastOutcome = PathingResult.INVALID_FLOOR;
+            throw new PathfindingUtils.PathfindingException("Start not on a valid floor: " + start);
+        }
+
+        if(NpcApi.config.checkValidPath() && !AStarPathfinder.isSafeFloor(world.getBlockAt(end.getBlockX(), endFloorY, end.getBlockZ())))
+        {
+            lastOutcome = PathingResult.INVALID_FLOOR;
+            throw new PathfindingUtils.PathfindingException("End not on a valid floor: " + end);
+        }
+
+        long startId = hash(start.getBlockX(), startFloorY, start.getBlockZ());
+
+        if(root == null || (root.id != startId && !lastPath.contains(startId)) || nodes.size() > maxNodes)
+            reroot(start.getBlockX(), startFloorY, start.getBlockZ());
+        else
+            applyPendingChanges();
+
+        List<Node> path = search(end.getBlockX(), endFloorY, end.getBlockZ(), cancellation);
+
+        // The start left the tree since the last call, so the cut below would fail. Search again from the start.
+        if(path != null && root.id != startId && path.stream().noneMatch(node -> node.id == startId))
+        {
+            reroot(start.getBlockX(), startFloorY, start.getBlockZ());
+            path = search(end.getBlockX(), endFloorY, end.getBlockZ(), cancellation);
+        }
+
+        if(path == null)
+            return null;
+
+        lastOutcome = PathingResult.SUCCESS;
+        lastPath.clear();
+        List<Location> locations = new ArrayList<>(path.size());
+        boolean started = root.id == startId;
+        for(Node node : path)
+        {
+            lastPath.add(node.id);
+            if(!started && node.id == startId)
+                started = true;
+
+            if(started)
+                locations.add(new Location(world, node.x + 0.5, terrain.feetYAt(node.x, node.y, node.z), node.z + 0.5));
+        }
+
+        return locations;
+    }
+
+    /**
+     * Discards the search tree. The next call to {@link #getPath(Location, Location)} starts from scratch.
+     */
+    public synchronized void reset()
+    {
+        nodes.clear();
+        open.clear();
+        lastPath.clear();
+        pendingChanges.clear();
+        root = null;
+        goal = null;
+    }
+
+    /**
+     * Gets the number of vertices expanded by the last call to {@link #getPath(Location, Location)}.
+     *
+     * @return the number of expanded vertices
+     */
+    public synchronized int getLastExpansions()
+    {
+        return lastExpansions;
+    }
+
+    /**
+     * Gets the largest size the open list reached during the last call to {@link #getPath(Location, Location)}.
+     *
+     * @return the peak size of the open list
+     */
+    public synchronized int getLastPeakOpenSetSize()
+    {
+        return lastPeakOpenSetSize;
+    }
+
+    /**
+     * Gets the outcome of the last call to {@link #getPath(Location, Location)}.
+     *
+     * @return the outcome of the last search
+     */
+    public synchronized @NotNull PathingResult getLastOutcome()
+    {
+        return lastOutcome;
+    }
+
+    /**
+     * Discards the tree and roots a new one at the given floor block.
+     */
+    private void reroot(int x, int y, int z)
+    {
+        nodes.clear();
+        open.clear();
+        lastPath.clear();
+        pendingChanges.clear();
+        goal = null;
+
+        root = node(x, y, z);
+        root.rhs = 0;
+        open.add(root.withKey(0));
+    }
+
+    /**
+     * Runs LPA* until the goal is consistent and no open vertex has a smaller key.
+     *
+     * @return the path from the root to the goal, or {@code null} if the goal is unreachable, the iteration limit was hit or the search was cancelled
+     */
+    private @Nullable List<Node> search(int gx, int gy, int gz, @Nullable BooleanSupplier cancellation)
+    {
+        Node newGoal = node(gx, gy, gz);
+        if(newGoal != goal)
+        {
+            goal = newGoal;
+
+            // The heuristic depends on the goal, so every open vertex needs a new key
+            List<Node> inconsistent = new ArrayList<>(open);
+            open.clear();
+            for(Node node : inconsistent)
+                open.add(node.withKey(heuristic(node)));
+        }
+
+        lastPeakOpenSetSize = Math.max(lastPeakOpenSetSize, open.size());
+        int iterations = 0;
+        while(!open.isEmpty() && (open.first().compareKey(key1(goal), key2(goal)) < 0 || goal.rhs != goal.g))
+        {
+            if(iterations++ > maxIterations)
+            {
+                lastOutcome = PathingResult.ITERATIONS_EXCEEDED;
+                return null;
+            }
+
+            if((iterations & 63) == 0 && cancellation != null && cancellation.getAsBoolean())
+            {
+                lastOutcome = PathingResult.CANCELLED;
+                return null;
+            }
+
+            Node current = open.pollFirst();
+            current.inOpen = false;
+            lastExpansions++;
+
+            if(current.g > current.rhs)
+            {
+                current.g = current.rhs;
+                int mask = successors(current);
+                for(int i = 0; i < directions.length; i++)
+                {
+                    if((mask & (1 << i)) == 0)
+                        continue;
+
+                    int[] d = directions[i];
+                    Node successor = node(current.x + d[0], current.y + d[1], current.z + d[2]);
+                    double cost = current.g + PathTerrain.MOVE_COSTS[d[0] + 1][d[1] + 1][d[2] + 1];
+                    if(successor != root && cost < successor.rhs)
+                    {
+                        successor.rhs = cost;
+                        enqueue(successor);
+                    }
+                }
+            }
+            else
+            {
+                current.g = Double.POSITIVE_INFINITY;
+                updateVertex(current);
+                int mask = successors(current);
+                for(int i = 0; i < directions.length; i++)
+                {
+                    if((mask & (1 << i)) == 0)
+                        continue;
+
+                    int[] d = directions[i];
+                    Node successor = nodes.get(hash(current.x + d[0], current.y + d[1], current.z + d[2]));
+                    if(successor != null)
+                        updateVertex(successor);
+                }
+            }
+        }
+
+        if(goal.g == Double.POSITIVE_INFINITY)
+        {
+            lastOutcome = PathingResult.NO_PATH;
+            return null;
+        }
+
+        return extractPath();
+    }
+
+    /**
+     * Follows the cheapest predecessors from the goal back to the root.
+     */
+    private @Nullable List<Node> extractPath()
+    {
+        LinkedList<Node> path = new LinkedList<>();
+        Node current = goal;
+        path.addFirst(current);
+
+        while(current != root)
+        {
+            Node best = null;
+            double bestCost = current.g + 1e-6;
+            for(int i = 0; i < directions.length; i++)
+            {
+                int[] d = directions[i];
+                Node predecessor = nodes.get(hash(current.x - d[0], current.y - d[1], current.z - d[2]));
+                if(predecessor == null || predecessor.g == Double.POSITIVE_INFINITY || (successors(predecessor) & (1 << i)) == 0)
+                    continue;
+
+                double cost = predecessor.g + PathTerrain.MOVE_COSTS[d[0] + 1][d[1] + 1][d[2] + 1];
+                if(cost <= bestCost && (best == null || predecessor.g < best.g))
+                {
+                    best = predecessor;
+                    bestCost = cost;
+                }
+            }
+
+            if(best == null || path.size() > nodes.size())
+                return null;
+
+            path.addFirst(best);
+            current = best;
+        }
+
+        return path;
+    }
+
+    /**
+     * Recalculates the right-hand side value of a vertex from its predecessors and moves it in or out of the open list.
+     */
+    private void updateVertex(@NotNull Node node)
+    {
+        if(node != root)
+        {
+            double rhs = Double.POSITIVE_INFINITY;
+            for(int i = 0; i < directions.length; i++)
+            {
+                int[] d = directions[i];
+                Node predecessor = nodes.get(hash(node.x - d[0], node.y - d[1], node.z - d[2]));
+                if(predecessor == null || predecessor.g == Double.POSITIVE_INFINITY || (successors(predecessor) & (1 << i)) == 0)
+                    continue;
+
+                rhs = Math.min(rhs, predecessor.g + PathTerrain.MOVE_COSTS[d[0] + 1][d[1] + 1][d[2] + 1]);
+            }
+            node.rhs = rhs;
+        }
+
+        enqueue(node);
+    }
+
+    /**
+     * Puts a vertex into the open list with a fresh key if it is locally inconsistent, otherwise removes it.
+     */
+    private void enqueue(@NotNull Node node)
+    {
+        if(node.inOpen)
+        {
+            open.remove(node);
+            node.inOpen = false;
+        }
+
+        if(node.g != node.rhs)
+        {
+            open.add(node.withKey(heuristic(node)));
+            node.inOpen = true;
+            lastPeakOpenSetSize = Math.max(lastPeakOpenSetSize, open.size());
+        }
+    }
+
+    /**
+     * Applies the block changes reported since the last call. Every vertex whose outgoing or incoming edges may touch a changed block is re-evaluated.
+     */
+    private void applyPendingChanges()
+    {
+        long[] change;
+        Set<Node> affected = new HashSet<>();
+        while((change = pendingChanges.poll()) != null)
+        {
+            int bx = (int) change[0];
+            int by = (int) change[1];
+            int bz = (int) change[2];
+            int height = (int) Math.ceil(entityHeight) + 2;
+            int radius = (int) Math.ceil(entityWidth / 2) + 1;
+
+            for(int x = bx - radius; x <= bx + radius; x++)
+            {
+                for(int z = bz - radius; z <= bz + radius; z++)
+                {
+                    for(int y = by - height; y <= by + 1; y++)
+                    {
+                        Node node = nodes.get(hash(x, y, z));
+                        if(node == null)
+                            continue;
+
+                        node.successors = -1;
+                        affected.add(node);
+                    }
+                }
+            }
+        }
+
+        for(Node node : affected)
+        {
+            updateVertex(node);
+            for(int[] d : directions)
+            {
+                Node neighbor = nodes.get(hash(node.x + d[0], node.y + d[1], node.z + d[2]));
+                if(neighbor != null)
+                    updateVertex(neighbor);
+            }
+        }
+    }
+
+    /**
+     * Gets the bit mask of directions that can be walked from the given vertex. The mask is cached until a nearby block changes.
+     */
+    private int successors(@NotNull Node node)
+    {
+        if(node.successors >= 0)
+            return node.successors;
+
+        int mask = 0;
+        for(int i = 0; i < directions.length; i++)
+        {
+            int[] d = directions[i];
+            if(terrain.canWalk(node.x, node.y, node.z, node.x + d[0], node.y + d[1], node.z + d[2]))
+                mask |= 1 << i;
+        }
+
+        node.successors = mask;
+        return mask;
+    }
+
+    /**
+     * A consistent heuristic for the move costs of {@link PathTerrain#MOVE_COSTS}: every move changes each axis by at most one block and costs at least 1, and
+     * a move covering several axes costs 1.414.
+     */
+    private double heuristic(@NotNull Node node)
+    {
+        int dx = Math.abs(node.x - goal.x);
+        int dy = Math.abs(node.y - goal.y);
+        int dz = Math.abs(node.z - goal.z);
+        return Math.max(Math.max(dx, Math.max(dy, dz)), (dx + dy + dz) * DIAGONAL_HEURISTIC);
+    }
+
+    private double key1(@NotNull Node node)
+    {
+        return Math.min(node.g, node.rhs) + heuristic(node);
+    }
+
+    private double key2(@NotNull Node node)
+    {
+        return Math.min(node.g, node.rhs);
+    }
+
+    private @NotNull Node node(int x, int y, int z)
+    {
+        return nodes.computeIfAbsent(hash(x, y, z), id -> new Node(x, y, z, id));
+    }
+
+    private static long hash(int x, int y, int z)
+    {
+        return ((long) x & 0x3FFFFFF) | (((long) z & 0x3FFFFFF) << 26) | (((long) y & 0xFFF) << 52);
+    }
+
+    private static class Node implements Comparable<Node>
+    {
+        final int x, y, z;
+        final long id;
+
+        double g = Double.POSITIVE_INFINITY;
+        double rhs = Double.POSITIVE_INFINITY;
+        double k1;
+        double k2;
+        int successors = -1;
+        boolean inOpen;
+
+        Node(int x, int y, int z, long id)
+        {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.id = id;
+        }
+
+        @NotNull Node withKey(double heuristic)
+        {
+            k2 = Math.min(g, rhs);
+            k1 = k2 + heuristic;
+            inOpen = true;
+            return this;
+        }
+
+        int compareKey(double otherK1, double otherK2)
+        {
+            int compare = Double.compare(k1, otherK1);
+            return compare != 0 ? compare : Double.compare(k2, otherK2);
+        }
+
+        @Override
+        public int compareTo(@NotNull Node other)
+        {
+            int compare = compareKey(other.k1, other.k2);
+            return compare != 0 ? compare : Long.compare(id, other.id);
+        }
+    }
+}
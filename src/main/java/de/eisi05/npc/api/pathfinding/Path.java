@@ -10,45 +10,84 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.Serial;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.*;
 
 
 /**
  * Represents a path in the world, providing both {@link Location} and {@link Vector} representations
  * of the path's waypoints. The lists returned are unmodifiable to ensure immutability.
+ * <p>
+ * The nodes are stored as packed float coordinates relative to the first node, together with a single world reference. The {@link Location} and
+ * {@link Vector} lists are views that create their elements on access, so callers that only need the coordinates should use {@link #getX(int)},
+ * {@link #getY(int)} and {@link #getZ(int)}.
  */
 public class Path implements ConfigurationSerializable
 {
-    private final List<Vector> vectors;
-    private final List<Location> locations;
+    private final World world;
+    private final double originX;
+    private final double originY;
+    private final double originZ;
+    private final float[] coordinates;
     private final List<Location> waypoints;
 
     private String name;
+    private PathRequest request;
 
     /**
      * Constructs a Path from a list of Bukkit {@link Location} objects.
-     * Converts each location to a {@link Vector} for easy mathematical manipulation.
+     * Only the coordinates of the nodes are kept; their world is taken from the first node.
      *
      * @param nodes the ordered list of {@link Location} waypoints
      */
     public Path(@NotNull List<Location> nodes, @Nullable List<Location> waypoints)
     {
-        this.locations = Collections.unmodifiableList(nodes);
-        this.vectors = nodes.stream().map(Location::toVector).toList();
+        this.world = nodes.isEmpty() ? null : nodes.getFirst().getWorld();
+        this.originX = nodes.isEmpty() ? 0 : nodes.getFirst().getX();
+        this.originY = nodes.isEmpty() ? 0 : nodes.getFirst().getY();
+        this.originZ = nodes.isEmpty() ? 0 : nodes.getFirst().getZ();
+        this.coordinates = new float[nodes.size() * 3];
+        for(int i = 0; i < nodes.size(); i++)
+        {
+            Location node = nodes.get(i);
+            coordinates[i * 3] = (float) (node.getX() - originX);
+            coordinates[i * 3 + 1] = (float) (node.getY() - originY);
+            coordinates[i * 3 + 2] = (float) (node.getZ() - originZ);
+        }
         this.waypoints = waypoints == null ? null : Collections.unmodifiableList(waypoints);
     }
 
     /**
      * Constructs a Path from a list of {@link Vector} waypoints in the given world.
-     * Converts each vector to a {@link Location} for compatibility with Bukkit APIs.
      *
      * @param nodes the ordered list of {@link Vector} waypoints
      * @param world the Bukkit {@link World} where the locations reside
      */
     public Path(@NotNull List<Vector> nodes, @NotNull World world, @Nullable List<Location> waypoints)
     {
-        this.vectors = Collections.unmodifiableList(nodes);
-        this.locations = nodes.stream().map(vector -> new Location(world, vector.getX(), vector.getY(), vector.getZ())).toList();
+        this.world = world;
+        this.originX = nodes.isEmpty() ? 0 : nodes.getFirst().getX();
+        this.originY = nodes.isEmpty() ? 0 : nodes.getFirst().getY();
+        this.originZ = nodes.isEmpty() ? 0 : nodes.getFirst().getZ();
+        this.coordinates = new float[nodes.size() * 3];
+        for(int i = 0; i < nodes.size(); i++)
+        {
+            Vector node = nodes.get(i);
+            coordinates[i * 3] = (float) (node.getX() - originX);
+            coordinates[i * 3 + 1] = (float) (node.getY() - originY);
+            coordinates[i * 3 + 2] = (float) (node.getZ() - originZ);
+        }
+        this.waypoints = waypoints == null ? null : Collections.unmodifiableList(waypoints);
+    }
+
+    private Path(@Nullable World world, double originX, double originY, double originZ, float @NotNull [] coordinates, @Nullable List<Location> waypoints)
+    {
+        this.world = world;
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.coordinates = coordinates;
         this.waypoints = waypoints == null ? null : Collections.unmodifiableList(waypoints);
     }
 
@@ -63,20 +102,121 @@ public class Path implements ConfigurationSerializable
         return name;
     }
 
+    /**
+     * Sets the request this path was calculated for. Broken parts of the path are recalculated with the same settings while an NPC walks along it. The request
+     * is not serialized.
+     *
+     * @param request the request, or {@code null} if the path was not calculated from a request
+     * @return this path
+     */
+    public @NotNull Path setRequest(@Nullable PathRequest request)
+    {
+        this.request = request;
+        return this;
+    }
+
+    /**
+     * Gets the request this path was calculated for.
+     *
+     * @return the request, or {@code null} if the path was not calculated from a request or was loaded
+     */
+    public @Nullable PathRequest getRequest()
+    {
+        return request;
+    }
+
     @SuppressWarnings("unchecked")
     public static Path deserialize(Map<String, Object> map)
     {
-        return new Path((List<Location>) map.get("locations"), (List<Location>) map.get("waypoints"));
+        List<Location> waypoints = (List<Location>) map.get("waypoints");
+
+        // Paths saved before the packed format stored every node as a location
+        if(map.containsKey("locations"))
+            return new Path((List<Location>) map.get("locations"), waypoints);
+
+        List<Number> origin = (List<Number>) map.get("origin");
+        World world = map.get("world") == null ? null : Bukkit.getWorld((String) map.get("world"));
+        return new Path(world, origin.get(0).doubleValue(), origin.get(1).doubleValue(), origin.get(2).doubleValue(),
+                decode((String) map.get("nodes")), waypoints);
+    }
+
+    /**
+     * Gets the world of the nodes of this path.
+     *
+     * @return the world, or {@code null} if the path is empty or its world is not loaded
+     */
+    public @Nullable World getWorld()
+    {
+        return world;
+    }
+
+    /**
+     * Gets the number of nodes of this path.
+     *
+     * @return the number of nodes
+     */
+    public int size()
+    {
+        return coordinates.length / 3;
+    }
+
+    /**
+     * Gets the x coordinate of a node without creating a {@link Location}.
+     *
+     * @param index the index of the node
+     * @return the x coordinate
+     */
+    public double getX(int index)
+    {
+        return originX + coordinates[index * 3];
+    }
+
+    /**
+     * Gets the y coordinate of a node without creating a {@link Location}.
+     *
+     * @param index the index of the node
+     * @return the y coordinate
+     */
+    public double getY(int index)
+    {
+        return originY + coordinates[index * 3 + 1];
+    }
+
+    /**
+     * Gets the z coordinate of a node without creating a {@link Location}.
+     *
+     * @param index the index of the node
+     * @return the z coordinate
+     */
+    public double getZ(int index)
+    {
+        return originZ + coordinates[index * 3 + 2];
     }
 
     /**
      * Returns the path as an unmodifiable list of {@link Location} objects.
+     * <p>
+     * The list is a view that creates a new location on every access.
      *
      * @return an unmodifiable list of Bukkit locations representing the path
      */
     public List<Location> asLocations()
     {
-        return locations;
+        return new AbstractList<>()
+        {
+            @Override
+            public Location get(int index)
+            {
+                Objects.checkIndex(index, size());
+                return new Location(world, getX(index), getY(index), getZ(index));
+            }
+
+            @Override
+            public int size()
+            {
+                return Path.this.size();
+            }
+        };
     }
 
     /**
@@ -86,31 +226,75 @@ public class Path implements ConfigurationSerializable
      */
     public @NotNull Path reverse()
     {
-        return new Path(new ArrayList<>(locations).reversed(), new ArrayList<>(waypoints).reversed());
+        int size = size();
+        float[] reversed = new float[coordinates.length];
+        if(size == 0)
+            return new Path(world, originX, originY, originZ, reversed, waypoints == null ? null : new ArrayList<>(waypoints).reversed());
+
+        // Keep the first node as the origin so equal paths stay equal
+        float lastX = coordinates[(size - 1) * 3];
+        float lastY = coordinates[(size - 1) * 3 + 1];
+        float lastZ = coordinates[(size - 1) * 3 + 2];
+        for(int i = 0; i < size; i++)
+        {
+            int from = (size - 1 - i) * 3;
+            reversed[i * 3] = coordinates[from] - lastX;
+            reversed[i * 3 + 1] = coordinates[from + 1] - lastY;
+            reversed[i * 3 + 2] = coordinates[from + 2] - lastZ;
+        }
+
+        return new Path(world, originX + lastX, originY + lastY, originZ + lastZ, reversed,
+                waypoints == null ? null : new ArrayList<>(waypoints).reversed());
+    }
+
+    /**
+     * Returns a path with the same nodes as this path but different waypoints. The node storage is shared.
+     *
+     * @param waypoints the waypoints of the new path
+     * @return a new path with the given waypoints
+     */
+    public @NotNull Path withWaypoints(@Nullable List<Location> waypoints)
+    {
+        return new Path(world, originX, originY, originZ, coordinates, waypoints).setName(name).setRequest(request);
     }
 
     /**
      * Returns the path as an unmodifiable list of {@link Vector} objects.
+     * <p>
+     * The list is a view that creates a new vector on every access.
      *
      * @return an unmodifiable list of vectors representing the path
      */
     public List<Vector> asVectors()
     {
-        return vectors;
+        return new AbstractList<>()
+        {
+            @Override
+            public Vector get(int index)
+            {
+                Objects.checkIndex(index, size());
+                return new Vector(getX(index), getY(index), getZ(index));
+            }
+
+            @Override
+            public int size()
+            {
+                return Path.this.size();
+            }
+        };
     }
 
     @Override
     public String toString()
     {
-        if(locations.isEmpty())
+        if(size() == 0)
             return "Empty path";
 
-        Vector start = vectors.getFirst();
-        Vector end = vectors.getLast();
+        int last = size() - 1;
 
         return String.format("Start: [%.2f, %.2f, %.2f] -> End: [%.2f, %.2f, %.2f]",
-                start.getX(), start.getY(), start.getZ(),
-                end.getX(), end.getY(), end.getZ());
+                getX(0), getY(0), getZ(0),
+                getX(last), getY(last), getZ(last));
     }
 
     /**
@@ -132,19 +316,30 @@ public class Path implements ConfigurationSerializable
         if(!(obj instanceof Path other))
             return false;
 
-        return locations.equals(other.locations);
+        return Objects.equals(world, other.world) && Double.compare(originX, other.originX) == 0 && Double.compare(originY, other.originY) == 0 &&
+                Double.compare(originZ, other.originZ) == 0 && Arrays.equals(coordinates, other.coordinates);
     }
 
     @Override
     public int hashCode()
     {
-        return locations.hashCode();
+        int result = Objects.hashCode(world);
+        result = 31 * result + Double.hashCode(originX);
+        result = 31 * result + Double.hashCode(originY);
+        result = 31 * result + Double.hashCode(originZ);
+        return 31 * result + Arrays.hashCode(coordinates);
     }
 
     @Override
     public @NotNull Map<String, Object> serialize()
     {
-        return Map.of("locations", new ArrayList<>(locations), "waypoints", new ArrayList<>(waypoints));
+        Map<String, Object> map = new LinkedHashMap<>();
+        if(world != null)
+            map.put("world", world.getName());
+        map.put("origin", List.of(originX, originY, originZ));
+        map.put("nodes", encode(coordinates));
+        map.put("waypoints", waypoints == null ? new ArrayList<>() : new ArrayList<>(waypoints));
+        return map;
     }
 
     public SerializablePath toSerializablePath()
@@ -152,27 +347,63 @@ public class Path implements ConfigurationSerializable
         return new SerializablePath(this);
     }
 
+    /**
+     * Encodes packed coordinates as a Base64 string of big-endian floats.
+     */
+    private static @NotNull String encode(float @NotNull [] coordinates)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(coordinates.length * Float.BYTES);
+        buffer.asFloatBuffer().put(coordinates);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    private static float @NotNull [] decode(@NotNull String nodes)
+    {
+        FloatBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(nodes)).asFloatBuffer();
+        float[] coordinates = new float[buffer.remaining()];
+        buffer.get(coordinates);
+        return coordinates;
+    }
+
     public static class SerializablePath implements Serializable
     {
         @Serial
         private static final long serialVersionUID = 1L;
 
+        /**
+         * Only set for paths saved before the packed format, which stored every node as a location.
+         */
         private final List<SerializableLocation> locations;
         private final List<SerializableLocation> waypoints;
 
         private final String name;
 
+        private final UUID world;
+        private final double originX;
+        private final double originY;
+        private final double originZ;
+        private final float[] nodes;
+
         private SerializablePath(@NotNull Path path)
         {
-            locations = new ArrayList<>(path.locations.stream().map(SerializableLocation::new).toList());
+            locations = null;
             waypoints = path.waypoints == null ? null : new ArrayList<>(path.waypoints.stream().map(SerializableLocation::new).toList());
             name = path.getName();
+            world = path.world == null ? null : path.world.getUID();
+            originX = path.originX;
+            originY = path.originY;
+            originZ = path.originZ;
+            nodes = path.coordinates.clone();
         }
 
         public @NotNull Path toPath()
         {
-            return new Path(locations.stream().map(SerializableLocation::toLocation).toList(),
-                    waypoints == null ? null : waypoints.stream().map(SerializableLocation::toLocation).toList()).setName(name);
+            List<Location> waypointLocations = waypoints == null ? null : waypoints.stream().map(SerializableLocation::toLocation).toList();
+
+            if(nodes == null)
+                return new Path(locations.stream().map(SerializableLocation::toLocation).toList(), waypointLocations).setName(name);
+
+            return new Path(world == null ? null : Bukkit.getWorld(world), originX, originY, originZ, nodes.clone(), waypointLocations).setName(name);
         }
 
         public String getName()
@@ -0,0 +1,373 @@
+package de.eisi05.npc.api.pathfinding;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Describes a single path search that is submitted to the {@link PathfindingService}. Instances are immutable and created through the {@link Builder}.
+ */
+public class PathRequest
+{
+    private final List<Location> waypoints;
+    private final int maxIterations;
+    private final boolean allowDiagonal;
+    private final double entityHeight;
+    private final double entityWidth;
+    private final BiConsumer<Integer, Integer> progressListener;
+    private final UUID owner;
+    private final Double priority;
+    private final IncrementalPathfinder planner;
+    private final AStarPathfinder.SearchStrategy strategy;
+    private final String caller;
+
+    private PathRequest(@NotNull Builder builder)
+    {
+        this.waypoints = builder.waypoints;
+        this.maxIterations = builder.maxIterations;
+        this.allowDiagonal = builder.allowDiagonal;
+        this.entityHeight = builder.entityHeight;
+        this.entityWidth = builder.entityWidth;
+        this.progressListener = builder.progressListener;
+        this.owner = builder.owner;
+        this.priority = builder.priority;
+        this.planner = builder.planner;
+        this.strategy = builder.strategy;
+        this.caller = builder.caller;
+    }
+
+    /**
+     * Gets the ordered waypoints of this request.
+     *
+     * @return the waypoints, never empty
+     */
+    public @NotNull List<Location> getWaypoints()
+    {
+        return waypoints;
+    }
+
+    /**
+     * Gets the maximum number of iterations per segment.
+     *
+     * @return the maximum number of iterations
+     */
+    public int getMaxIterations()
+    {
+        return maxIterations;
+    }
+
+    /**
+     * Gets whether diagonal movement is allowed.
+     *
+     * @return true if diagonal movement is allowed
+     */
+    public boolean isAllowDiagonal()
+    {
+        return allowDiagonal;
+    }
+
+    /**
+     * Gets the height of the entity the path is calculated for.
+     *
+     * @return the entity height
+     */
+    public double getEntityHeight()
+    {
+        return entityHeight;
+    }
+
+    /**
+     * Gets the width of the entity the path is calculated for.
+     *
+     * @return the entity width
+     */
+    public double getEntityWidth()
+    {
+        return entityWidth;
+    }
+
+    /**
+     * Gets the progress listener with the signature (completedSegments, totalSegments).
+     *
+     * @return the progress listener, or {@code null}
+     */
+    public @Nullable BiConsumer<Integer, Integer> getProgressListener()
+    {
+        return progressListener;
+    }
+
+    /**
+     * Gets the owner of this request. A newer request with the same owner supersedes an older one that is still queued or running.
+     *
+     * @return the owner, or {@code null} if this request is never superseded
+     */
+    public @Nullable UUID getOwner()
+    {
+        return owner;
+    }
+
+    /**
+     * Gets the explicit priority of this request. Lower values are processed first.
+     *
+     * @return the priority, or {@code null} if it should be derived from the distance to the nearest player
+     */
+    public @Nullable Double getPriority()
+    {
+        return priority;
+    }
+
+    /**
+     * Gets the incremental pathfinder that should answer this request instead of a fresh A* search.
+     *
+     * @return the incremental pathfinder, or {@code null}
+     */
+    public @Nullable IncrementalPathfinder getPlanner()
+    {
+        return planner;
+    }
+
+    /**
+     * Gets the strategy the A* search expands nodes with.
+     *
+     * @return the search strategy
+     */
+    public @NotNull AStarPathfinder.SearchStrategy getStrategy()
+    {
+        return strategy;
+    }
+
+    /**
+     * Gets the tag under which the searches of this request are recorded in the {@link SearchStatistics}.
+     *
+     * @return the caller tag, or {@code null} if the request was not tagged
+     */
+    public @Nullable String getCaller()
+    {
+        return caller;
+    }
+
+    /**
+     * Creates the key under which identical requests are coalesced into a single search. Requests with a progress listener are never coalesced, since only the
+     * listener of the first request would be notified, and neither are requests answered by an {@link IncrementalPathfinder}, since it keeps state per owner.
+     *
+     * @return the coalescing key, or {@code null} if this request must run on its own
+     */
+    @Nullable Key key()
+    {
+        if(progressListener != null || planner != null)
+            return null;
+
+        World world = waypoints.getFirst().getWorld();
+        if(world == null)
+            return null;
+
+        long[] blocks = new long[waypoints.size() * 3];
+        for(int i = 0; i < waypoints.size(); i++)
+        {
+            Location location = waypoints.get(i);
+            blocks[i * 3] = location.getBlockX();
+            blocks[i * 3 + 1] = location.getBlockY();
+            blocks[i * 3 + 2] = location.getBlockZ();
+        }
+
+        return new Key(world.getUID(), blocks, maxIterations, allowDiagonal, entityHeight, entityWidth, strategy);
+    }
+
+    /**
+     * Identifies requests that would produce the same path.
+     */
+    record Key(UUID world, long[] blocks, int maxIterations, boolean allowDiagonal, double entityHeight, double entityWidth,
+               AStarPathfinder.SearchStrategy strategy)
+    {
+        @Override
+        public boolean equals(Object o)
+        {
+            if(!(o instanceof Key other))
+                return false;
+
+            return world.equals(other.world) && Arrays.equals(blocks, other.blocks) && maxIterations == other.maxIterations &&
+                    allowDiagonal == other.allowDiagonal && Double.compare(entityHeight, other.entityHeight) == 0 &&
+                    Double.compare(entityWidth, other.entityWidth) == 0 && strategy == other.strategy;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = world.hashCode();
+            result = 31 * result + Arrays.hashCode(blocks);
+            result = 31 * result + maxIterations;
+            result = 31 * result + Boolean.hashCode(allowDiagonal);
+            result = 31 * result + Double.hashCode(entityHeight);
+            result = 31 * result + Double.hashCode(entityWidth);
+            return 31 * result + strategy.hashCode();
+        }
+    }
+
+    /**
+     * Builder class for creating {@link PathRequest} instances with a fluent API.
+     */
+    public static class Builder
+    {
+        private final List<Location> waypoints;
+        private int maxIterations = 5000;
+        private boolean allowDiagonal = true;
+        private double entityHeight = 1.8;
+        private double entityWidth = 0.6;
+        private BiConsumer<Integer, Integer> progressListener;
+        private UUID owner;
+        private Double priority;
+        private IncrementalPathfinder planner;
+        private AStarPathfinder.SearchStrategy strategy = AStarPathfinder.SearchStrategy.A_STAR;
+        private String caller;
+
+        /**
+         * Creates a new Builder with the required waypoints.
+         *
+         * @param waypoints the ordered list of locations to traverse, at least 2
+         * @throws IllegalArgumentException if less than 2 waypoints are given
+         */
+        public Builder(@NotNull List<Location> waypoints)
+        {
+            if(waypoints.size() < 2)
+                throw new IllegalArgumentException("Waypoints list must contain at least 2 locations.");
+
+            this.waypoints = new ArrayList<>(waypoints.size());
+            for(Location waypoint : waypoints)
+                this.waypoints.add(waypoint.clone());
+        }
+
+        /**
+         * Sets the maximum iterations for pathfinding.
+         *
+         * @param maxIterations Maximum iterations per segment
+         * @return this builder for chaining
+         */
+        public @NotNull Builder maxIterations(int maxIterations)
+        {
+            this.maxIterations = maxIterations;
+            return this;
+        }
+
+        /**
+         * Sets whether diagonal movement is allowed.
+         *
+         * @param allowDiagonal Whether diagonal movement is allowed
+         * @return this builder for chaining
+         */
+        public @NotNull Builder allowDiagonal(boolean allowDiagonal)
+        {
+            this.allowDiagonal = allowDiagonal;
+            return this;
+        }
+
+        /**
+         * Sets the size of the entity the path is calculated for.
+         *
+         * @param entityHeight the height of the entity
+         * @param entityWidth  the width of the entity
+         * @return this builder for chaining
+         */
+        public @NotNull Builder entitySize(double entityHeight, double entityWidth)
+        {
+            this.entityHeight = entityHeight;
+            this.entityWidth = entityWidth;
+            return this;
+        }
+
+        /**
+         * Sets the progress listener.
+         *
+         * @param progressListener a progress listener with the signature (completedSegments, totalSegments)
+         * @return this builder for chaining
+         */
+        public @NotNull Builder progressListener(@Nullable BiConsumer<Integer, Integer> progressListener)
+        {
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        /**
+         * Sets the owner of the request, usually the UUID of the NPC that is going to walk the path. A newer request with the same owner cancels the older one.
+         *
+         * @param owner the owner, or {@code null} to never supersede
+         * @return this builder for chaining
+         */
+        public @NotNull Builder owner(@Nullable UUID owner)
+        {
+            this.owner = owner;
+            return this;
+        }
+
+        /**
+         * Sets an explicit priority. Lower values are processed first. By default, the priority is the squared distance between the first waypoint and the
+         * nearest player in the same world.
+         *
+         * @param priority the priority, or {@code null} to use the default
+         * @return this builder for chaining
+         */
+        public @NotNull Builder priority(@Nullable Double priority)
+        {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Sets an incremental pathfinder that answers the request by repairing its previous search tree. Only requests with exactly 2 waypoints can use an
+         * incremental pathfinder.
+         *
+         * @param planner the incremental pathfinder, or {@code null} to run a fresh A* search
+         * @return this builder for chaining
+         */
+        public @NotNull Builder planner(@Nullable IncrementalPathfinder planner)
+        {
+            this.planner = planner;
+            return this;
+        }
+
+        /**
+         * Sets the strategy the A* search expands nodes with. {@link AStarPathfinder.SearchStrategy#JUMP_POINT} expands far fewer nodes on open terrain.
+         * Ignored if an incremental pathfinder is set.
+         *
+         * @param strategy the search strategy
+         * @return this builder for chaining
+         */
+        public @NotNull Builder strategy(@NotNull AStarPathfinder.SearchStrategy strategy)
+        {
+            this.strategy = strategy;
+            return this;
+        }
+
+        /**
+         * Sets the tag under which the searches of this request are recorded in the {@link SearchStatistics}, usually the name of the requesting goal.
+         *
+         * @param caller the caller tag, or {@code null} to record the searches as {@link SearchStatistics#UNTAGGED}
+         * @return this builder for chaining
+         */
+        public @NotNull Builder caller(@Nullable String caller)
+        {
+            this.caller = caller;
+            return this;
+        }
+
+        /**
+         * Builds the PathRequest instance.
+         *
+         * @return a new PathRequest
+         * @throws IllegalArgumentException if an incremental pathfinder is used with more than 2 waypoints
+         */
+        public @NotNull PathRequest build()
+        {
+            if(planner != null && waypoints.size() != 2)
+                throw new IllegalArgumentException("Incremental pathfinding requires exactly 2 waypoints.");
+
+            return new PathRequest(this);
+        }
+    }
+}
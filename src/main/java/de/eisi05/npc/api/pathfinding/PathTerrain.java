@@ -0,0 +1,181 @@
+package de.eisi05.npc.api.pathfinding;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.Openable;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+
+/**
+ * Walkability model shared by the path searches. Decides whether an entity of a given size can move between two floor blocks of a world.
+ */
+final class PathTerrain
+{
+    static final double[][][] MOVE_COSTS = new double[3][3][3];
+
+    static
+    {
+        for(int x = -1; x <= 1; x++)
+        {
+            for(int y = -1; y <= 1; y++)
+            {
+                for(int z = -1; z <= 1; z++)
+                {
+                    if(x == 0 && y == 0 && z == 0)
+                        MOVE_COSTS[x + 1][y + 1][z + 1] = 0;
+                    else
+                        MOVE_COSTS[x + 1][y + 1][z + 1] = (Math.abs(x) + Math.abs(y) + Math.abs(z)) > 1 ? 1.414 : 1.0;
+                }
+            }
+        }
+    }
+
+    private final World world;
+    private final double entityHeight;
+    private final double entityWidth;
+
+    PathTerrain(@NotNull World world, double entityHeight, double entityWidth)
+    {
+        this.world = world;
+        this.entityHeight = entityHeight;
+        this.entityWidth = entityWidth;
+    }
+
+    @NotNull World getWorld()
+    {
+        return world;
+    }
+
+    /**
+     * Advanced physics check. Checks whether we can move from one floor block to another.
+     * <p>
+     * The {@code fy} and {@code ty} values are floor-block Y coordinates. Entity feet and headspace are checked at {@code ty + 1} and {@code ty + 2}.
+     */
+    boolean canWalk(int fx, int fy, int fz, int tx, int ty, int tz)
+    {
+        if(!canStandOn(tx, ty, tz))
+            return false;
+
+        double absoluteFeetY = feetYAt(tx, ty, tz);
+
+        if(fx != tx && fz != tz)
+        {
+            double currentFeetY = feetYAt(fx, fy, fz);
+            double checkY = Math.max(currentFeetY, absoluteFeetY);
+
+            if(!AStarPathfinder.isPositionValid(world, fx + 0.5, checkY, tz + 0.5, entityHeight, entityWidth))
+                return false;
+
+            if(!AStarPathfinder.isPositionValid(world, tx + 0.5, checkY, fz + 0.5, entityHeight, entityWidth))
+                return false;
+        }
+
+        if(fy != ty)
+        {
+            double currentFeetY = feetYAt(fx, fy, fz);
+            double highestFloorY = Math.max(currentFeetY, absoluteFeetY);
+
+            if(!AStarPathfinder.isPositionValid(world, tx + 0.5, highestFloorY, tz + 0.5, entityHeight, entityWidth) ||
+                    !AStarPathfinder.isPositionValid(world, fx + 0.5, highestFloorY, fz + 0.5, entityHeight, entityWidth))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether the entity can stand in the center of the given floor block.
+     */
+    boolean canStandOn(int x, int floorY, int z)
+    {
+        Block floor = world.getBlockAt(x, floorY, z);
+        if(!AStarPathfinder.isSafeFloor(floor))
+            return false;
+
+        return AStarPathfinder.isPositionValid(world, x + 0.5, feetYAt(x, floorY, z), z + 0.5, entityHeight, entityWidth);
+    }
+
+    /**
+     * Resolves the block Y coordinate of the floor beneath a feet-based location. This keeps path nodes aligned with partial collision blocks such as slabs and
+     * stairs.
+     *
+     * @param loc the feet-based location to inspect
+     * @return the Y coordinate of the floor block
+     */
+    int resolveFloorY(@NotNull Location loc)
+    {
+        World w = loc.getWorld();
+        if(w == null)
+            return loc.getBlockY() - 1;
+
+        int bx = loc.getBlockX();
+        int bz = loc.getBlockZ();
+        int startY = loc.getBlockY();
+
+        double lx = loc.getX() - bx;
+        double lz = loc.getZ() - bz;
+
+        for(int y = startY + 1; y >= startY - 6; y--)
+        {
+            Block block = w.getBlockAt(bx, y, bz);
+
+            if(block.getBlockData() instanceof Openable)
+                continue;
+
+            if(block.isLiquid())
+                continue;
+
+            if(!block.getType().isSolid() || block.isPassable())
+                continue;
+
+            Collection<BoundingBox> boxes = block.getCollisionShape().getBoundingBoxes();
+            if(boxes.isEmpty())
+                return y;
+
+            for(BoundingBox bb : boxes)
+            {
+                if(lx >= bb.getMinX() && lx <= bb.getMaxX() && lz >= bb.getMinZ() && lz <= bb.getMaxZ())
+                    return y;
+            }
+
+            return y;
+        }
+
+        return loc.getBlockY() - 1;
+    }
+
+    double feetYAt(int x, int floorY, int z)
+    {
+        Block floor = world.getBlockAt(x, floorY, z);
+        return floorY + topSurfaceAt(floor, 0.5, 0.5);
+    }
+
+    double topSurfaceAt(@NotNull Block block, double lx, double lz)
+    {
+        Collection<BoundingBox> boxes = block.getCollisionShape().getBoundingBoxes();
+        if(boxes.isEmpty())
+            return 1.0;
+
+        double bestTop = -1.0;
+
+        for(BoundingBox bb : boxes)
+        {
+            if(lx >= bb.getMinX() && lx <= bb.getMaxX() && lz >= bb.getMinZ() && lz <= bb.getMaxZ())
+                bestTop = Math.max(bestTop, bb.getMaxY());
+        }
+
+        if(bestTop < 0.0)
+        {
+            for(BoundingBox bb : boxes)
+                bestTop = Math.max(bestTop, bb.getMaxY());
+        }
+
+        if(bestTop <= 0.0)
+            return 1.0;
+
+        return bestTop;
+    }
+}
@@ -0,0 +1,454 @@
+package de.eisi05.npc.api.pathfinding;
+
+import de.eisi05.npc.api.NpcApi;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs asynchronous path searches on a bounded pool of worker threads.
+ * <p>
+ * Queued searches are ordered by priority, which defaults to the squared distance between the start of the path and the nearest player, so NPCs close to
+ * players are served first. A newer request from the same owner supersedes and cancels the older one, and identical concurrent requests are coalesced into a
+ * single search.
+ */
+public class PathfindingService
+{
+    private static final Object LOCK = new Object();
+    private static final Set<Job> jobs = ConcurrentHashMap.newKeySet();
+    private static final Map<PathRequest.Key, Job> jobsByKey = new ConcurrentHashMap<>();
+    private static final Map<UUID, Subscription> subscriptionsByOwner = new ConcurrentHashMap<>();
+    private static final AtomicLong sequence = new AtomicLong();
+
+    private static final LongAdder submitted = new LongAdder();
+    private static final LongAdder completed = new LongAdder();
+    private static final LongAdder failed = new LongAdder();
+    private static final LongAdder cancelled = new LongAdder();
+    private static final LongAdder coalesced = new LongAdder();
+    private static final LongAdder latencyNanos = new LongAdder();
+    private static final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    private static ThreadPoolExecutor executor;
+    private static ForkJoinPool segmentPool;
+
+    /**
+     * Starts the worker pool using {@link de.eisi05.npc.api.objects.NpcConfig#pathfindingThreads()} threads. Does nothing if the pool is already running.
+     */
+    public static void start()
+    {
+        synchronized(LOCK)
+        {
+            if(executor != null && !executor.isShutdown())
+                return;
+
+            int threads = Math.max(1, NpcApi.config.pathfindingThreads());
+            AtomicInteger threadId = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), runnable ->
+            {
+                Thread thread = new Thread(runnable, "NpcApi-Pathfinding-" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Stops the worker pools, cancels all queued and running searches and clears the {@link FlowField} cache.
+     */
+    public static void stop()
+    {
+        synchronized(LOCK)
+        {
+            if(segmentPool != null)
+            {
+                segmentPool.shutdownNow();
+                segmentPool = null;
+            }
+
+            if(executor == null)
+                return;
+
+            jobs.forEach(Job::cancel);
+            jobs.clear();
+            FlowField.clearCache();
+            jobsByKey.clear();
+            subscriptionsByOwner.clear();
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Gets the fork-join pool on which the segments of a path with several waypoints are calculated in parallel. The pool is created on first use and uses
+     * half of the available processors.
+     *
+     * @return the segment pool
+     */
+    static @NotNull ForkJoinPool segmentPool()
+    {
+        synchronized(LOCK)
+        {
+            if(segmentPool == null || segmentPool.isShutdown())
+            {
+                AtomicInteger threadId = new AtomicInteger();
+                segmentPool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), pool ->
+                {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("NpcApi-Segment-" + threadId.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, null, false);
+            }
+
+            return segmentPool;
+        }
+    }
+
+    /**
+     * Queues a path search.
+     * <p>
+     * If the request has an owner, any older request of the same owner is cancelled. If an identical search is already queued or running, the returned future
+     * is completed by that search instead of starting a new one. Cancelling the returned future cancels the search once no other caller is waiting for it.
+     *
+     * @param request the request to queue
+     * @return a {@link CompletableFuture} that completes with the calculated {@link Path}, or exceptionally if no path could be found
+     */
+    public static @NotNull CompletableFuture<Path> submit(@NotNull PathRequest request)
+    {
+        submitted.increment();
+
+        PathRequest.Key key = request.key();
+        double priority = priorityOf(request);
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        Job job;
+
+        synchronized(LOCK)
+        {
+            if(executor == null || executor.isShutdown())
+                start();
+
+            job = key == null ? null : jobsByKey.get(key);
+            if(job != null && !job.isCancelled())
+            {
+                job.subscribers++;
+                coalesced.increment();
+            }
+            else
+            {
+                job = new Job(request, key, priority);
+                jobs.add(job);
+                if(key != null)
+                    jobsByKey.put(key, job);
+                executor.execute(job);
+            }
+        }
+
+        Subscription subscription = new Subscription(job, future);
+        if(request.getOwner() != null)
+        {
+            Subscription previous = subscriptionsByOwner.put(request.getOwner(), subscription);
+            if(previous != null)
+                previous.future.cancel(true);
+        }
+
+        Job finalJob = job;
+        job.result.whenComplete((path, error) ->
+        {
+            if(error != null)
+                future.completeExceptionally(error);
+            else if(path == null || finalJob.request == request)
+                future.complete(path);
+            else
+                future.complete(path.withWaypoints(request.getWaypoints()).setRequest(request));
+        });
+
+        future.whenComplete((path, error) ->
+        {
+            if(future.isCancelled())
+                release(finalJob);
+            if(request.getOwner() != null)
+                subscriptionsByOwner.remove(request.getOwner(), subscription);
+        });
+
+        return future;
+    }
+
+    /**
+     * Queues a computation other than a path search, such as a {@link FlowField}, on the same worker pool. The computation is ordered by the given priority
+     * together with the queued path searches. Cancelling the returned future removes the computation from the queue if it has not started yet.
+     *
+     * @param priority the priority, lower values are processed first
+     * @param callable the computation to run
+     * @param <T>      the type of the result
+     * @return a {@link CompletableFuture} that completes with the result of the computation
+     */
+    static <T> @NotNull CompletableFuture<T> execute(double priority, @NotNull Callable<T> callable)
+    {
+        Computation<T> computation = new Computation<>(priority, callable);
+
+        synchronized(LOCK)
+        {
+            if(executor == null || executor.isShutdown())
+                start();
+
+            executor.execute(computation);
+        }
+
+        computation.result.whenComplete((result, error) ->
+        {
+            if(computation.result.isCancelled())
+            {
+                synchronized(LOCK)
+                {
+                    if(executor != null)
+                        executor.remove(computation);
+                }
+            }
+        });
+
+        return computation.result;
+    }
+
+    /**
+     * Cancels the running or queued search of the given owner, if any.
+     *
+     * @param owner the owner whose search should be cancelled
+     */
+    public static void cancel(@NotNull UUID owner)
+    {
+        Subscription subscription = subscriptionsByOwner.remove(owner);
+        if(subscription != null)
+            subscription.future.cancel(true);
+    }
+
+    /**
+     * Gets a snapshot of the current queue state and the latency of completed searches.
+     *
+     * @return the current statistics
+     */
+    public static @NotNull Statistics getStatistics()
+    {
+        ThreadPoolExecutor current = executor;
+        long finished = completed.sum() + failed.sum();
+        return new Statistics(current == null ? 0 : current.getQueue().size(), current == null ? 0 : current.getActiveCount(), submitted.sum(),
+                completed.sum(), failed.sum(), cancelled.sum(), coalesced.sum(),
+                finished == 0 ? 0 : latencyNanos.sum() / (double) finished / 1_000_000D, maxLatencyNanos.get() / 1_000_000D);
+    }
+
+    /**
+     * Resets the counters returned by {@link #getStatistics()}.
+     */
+    public static void resetStatistics()
+    {
+        submitted.reset();
+        completed.reset();
+        failed.reset();
+        cancelled.reset();
+        coalesced.reset();
+        latencyNanos.reset();
+        maxLatencyNanos.set(0);
+    }
+
+    /**
+     * Removes one waiting caller from a job and cancels the job once nobody is waiting for it anymore.
+     */
+    private static void release(@NotNull Job job)
+    {
+        synchronized(LOCK)
+        {
+            if(job.result.isDone() || --job.subscribers > 0)
+                return;
+
+            job.cancel();
+            jobs.remove(job);
+            if(job.key != null)
+                jobsByKey.remove(job.key, job);
+            if(executor != null)
+                executor.remove(job);
+        }
+    }
+
+    /**
+     * Calculates the priority of a request. Lower values are processed first.
+     */
+    private static double priorityOf(@NotNull PathRequest request)
+    {
+        if(request.getPriority() != null)
+            return request.getPriority();
+
+        return priorityOf(request.getWaypoints().getFirst());
+    }
+
+    /**
+     * Calculates the default priority of work located at the given location, which is the squared distance to the nearest player in the same world. Lower
+     * values are processed first.
+     */
+    static double priorityOf(@NotNull Location start)
+    {
+        World world = start.getWorld();
+
+        // Player locations may only be read safely on the main thread
+        if(world == null || !Bukkit.isPrimaryThread())
+            return Double.MAX_VALUE;
+
+        double nearest = Double.MAX_VALUE;
+        for(Player player : world.getPlayers())
+            nearest = Math.min(nearest, player.getLocation().distanceSquared(start));
+
+        return nearest;
+    }
+
+    /**
+     * A snapshot of the pathfinding service state.
+     *
+     * @param queueDepth           the number of searches waiting for a worker
+     * @param activeSearches       the number of searches currently running
+     * @param submitted            the number of submitted requests
+     * @param completed            the number of searches that finished with a result
+     * @param failed               the number of searches that finished with an error
+     * @param cancelled            the number of searches that were cancelled or superseded
+     * @param coalesced            the number of requests that joined an identical search
+     * @param averageLatencyMillis the average time from submission to completion in milliseconds
+     * @param maxLatencyMillis     the maximum time from submission to completion in milliseconds
+     */
+    public record Statistics(int queueDepth, int activeSearches, long submitted, long completed, long failed, long cancelled, long coalesced,
+                             double averageLatencyMillis, double maxLatencyMillis) {}
+
+    private record Subscription(@NotNull Job job, @NotNull CompletableFuture<Path> future) {}
+
+    /**
+     * Base class of everything queued on the worker pool, ordered by priority and then by submission order.
+     */
+    private static abstract class Task implements Runnable, Comparable<Task>
+    {
+        private final long sequence = PathfindingService.sequence.getAndIncrement();
+        private final double priority;
+
+        private Task(double priority)
+        {
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(@NotNull Task other)
+        {
+            int compare = Double.compare(priority, other.priority);
+            return compare != 0 ? compare : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final class Computation<T> extends Task
+    {
+        private final Callable<T> callable;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Computation(double priority, @NotNull Callable<T> callable)
+        {
+            super(priority);
+            this.callable = callable;
+        }
+
+        @Override
+        public void run()
+        {
+            if(result.isDone())
+                return;
+
+            try
+            {
+                result.complete(callable.call());
+            }
+            catch(Exception e)
+            {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Job extends Task
+    {
+        private final PathRequest request;
+        private final PathRequest.Key key;
+        private final long submittedAt = System.nanoTime();
+        private final CompletableFuture<Path> result = new CompletableFuture<>();
+
+        private volatile boolean cancelled;
+        private int subscribers = 1;
+
+        private Job(@NotNull PathRequest request, @Nullable PathRequest.Key key, double priority)
+        {
+            super(priority);
+            this.request = request;
+            this.key = key;
+        }
+
+        private boolean isCancelled()
+        {
+            return cancelled;
+        }
+
+        private void cancel()
+        {
+            if(cancelled)
+                return;
+
+            cancelled = true;
+            if(result.cancel(false))
+                PathfindingService.cancelled.increment();
+        }
+
+        @Override
+        public void run()
+        {
+            if(cancelled)
+                return;
+
+            try
+            {
+                Path path = PathfindingUtils.findPath(request, () -> cancelled, true);
+                if(result.complete(path))
+                    record(completed);
+            }
+            catch(CancellationException e)
+            {
+                cancel();
+            }
+            catch(PathfindingUtils.PathfindingException e)
+            {
+                if(result.completeExceptionally(new RuntimeException(e)))
+                    record(failed);
+            }
+            catch(Exception e)
+            {
+                if(result.completeExceptionally(e))
+                    record(failed);
+            }
+            finally
+            {
+                jobs.remove(this);
+                if(key != null)
+                    jobsByKey.remove(key, this);
+            }
+        }
+
+        private void record(@NotNull LongAdder counter)
+        {
+            long latency = System.nanoTime() - submittedAt;
+            counter.increment();
+            latencyNanos.add(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+    }
+}
@@ -1,90 +1,84 @@
 package de.eisi05.npc.api.pathfinding;
 
 import de.eisi05.npc.api.NpcApi;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.Openable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
 
 /**
  * Utility class for calculating paths between locations using A* pathfinding. Provides synchronous and asynchronous methods.
  */
 public class PathfindingUtils
 {
+    private static final double SMOOTHING_STEP = 0.2;
+
     /**
      * Asynchronously calculates a path through a list of waypoints.
      * <p>
-     * Each segment between consecutive waypoints is calculated in parallel using {@link CompletableFuture}. The returned future completes with a {@link Path}
-     * containing the full path, or completes exceptionally if an {@link PathfindingException} occurs.
+     * The search is queued on the bounded {@link PathfindingService}. The returned future completes with a {@link Path} containing the full path, or completes
+     * exceptionally if an {@link PathfindingException} occurs.
      *
      * @param waypoints             the ordered list of locations to traverse
      * @param maxIterations         the maximum number of iterations the A* algorithm will attempt per segment
      * @param allowDiagonalMovement whether diagonal movement is allowed
-     * @param progressListener      a progress listener with the signature (segmentIndex, totalSegments)
+     * @param progressListener      a progress listener with the signature (completedSegments, totalSegments)
      * @return a {@link CompletableFuture} that completes with the calculated {@link Path}
      */
     public static @NotNull CompletableFuture<Path> findPathAsync(@NotNull List<Location> waypoints, int maxIterations, boolean allowDiagonalMovement,
                                                                  @Nullable BiConsumer<Integer, Integer> progressListener)
     {
-        return CompletableFuture.supplyAsync(() ->
-        {
-            try
-            {
-                return findPath(waypoints, maxIterations, allowDiagonalMovement, progressListener);
-            }
-            catch(PathfindingException e)
-            {
-                throw new RuntimeException(e);
-            }
-        }, runnable -> Bukkit.getScheduler().runTaskAsynchronously(NpcApi.plugin, runnable));
+        return findPathAsync(waypoints, maxIterations, allowDiagonalMovement, 1.8, 0.6, progressListener);
     }
 
     /**
      * Asynchronously calculates a path through a list of waypoints.
      * <p>
-     * Each segment between consecutive waypoints is calculated in parallel using {@link CompletableFuture}. The returned future completes with a {@link Path}
-     * containing the full path, or completes exceptionally if an {@link PathfindingException} occurs.
+     * The search is queued on the bounded {@link PathfindingService}. The returned future completes with a {@link Path} containing the full path, or completes
+     * exceptionally if an {@link PathfindingException} occurs.
      *
      * @param waypoints             the ordered list of locations to traverse
      * @param maxIterations         the maximum number of iterations the A* algorithm will attempt per segment
      * @param allowDiagonalMovement whether diagonal movement is allowed
      * @param entityHeight          the height of the entity traversing the path
      * @param entityWidth           the width of the entity traversing the path
-     * @param progressListener      a progress listener with the signature (segmentIndex, totalSegments)
+     * @param progressListener      a progress listener with the signature (completedSegments, totalSegments)
      * @return a {@link CompletableFuture} that completes with the calculated {@link Path}
      */
     public static @NotNull CompletableFuture<Path> findPathAsync(@NotNull List<Location> waypoints, int maxIterations, boolean allowDiagonalMovement,
                                                                  double entityHeight, double entityWidth,
                                                                  @Nullable BiConsumer<Integer, Integer> progressListener)
     {
-        return CompletableFuture.supplyAsync(() ->
-        {
-            try
-            {
-                return findPath(waypoints, maxIterations, allowDiagonalMovement, entityHeight, entityWidth, progressListener);
-            }
-            catch(PathfindingException e)
-            {
-                throw new RuntimeException(e);
-            }
-        }, runnable -> Bukkit.getScheduler().runTaskAsynchronously(NpcApi.plugin, runnable));
+        return PathfindingService.submit(new PathRequest.Builder(waypoints)
+                .maxIterations(maxIterations)
+                .allowDiagonal(allowDiagonalMovement)
+                .entitySize(entityHeight, entityWidth)
+                .progressListener(progressListener)
+                .build());
     }
 
     /**
      * Synchronously calculates a path through a list of waypoints.
      * <p>
-     * Each segment between consecutive waypoints is calculated in parallel internally using {@link CompletableFuture}, but this method blocks until all
-     * segments are calculated and combined into a single {@link Path}.
+     * The segments between consecutive waypoints are calculated one after another on the calling thread and combined into a single {@link Path}, so the
+     * progress listener is called on the calling thread as well. If one segment fails, the remaining segments are not calculated.
      *
      * @param waypoints             the ordered list of locations to traverse
      * @param maxIterations         the maximum number of iterations the A* algorithm will attempt per segment
      * @param allowDiagonalMovement whether diagonal movement is allowed
-     * @param progressListener      a progress listener with the signature (segmentIndex, totalSegments)
+     * @param progressListener      a progress listener with the signature (completedSegments, totalSegments)
      * @return the calculated {@link Path} containing all intermediate locations
      * @throws PathfindingException if any segment's start or end location is invalid/unwalkable
      */
@@ -97,15 +91,15 @@ public class PathfindingUtils
     /**
      * Synchronously calculates a path through a list of waypoints.
      * <p>
-     * Each segment between consecutive waypoints is calculated in parallel internally using {@link CompletableFuture}, but this method blocks until all
-     * segments are calculated and combined into a single {@link Path}.
+     * The segments between consecutive waypoints are calculated one after another on the calling thread and combined into a single {@link Path}, so the
+     * progress listener is called on the calling thread as well. If one segment fails, the remaining segments are not calculated.
      *
      * @param waypoints             the ordered list of locations to traverse
      * @param maxIterations         the maximum number of iterations the A* algorithm will attempt per segment
      * @param allowDiagonalMovement whether diagonal movement is allowed
      * @param entityHeight          the height of the entity traversing the path
      * @param entityWidth           the width of the entity traversing the path
-     * @param progressListener      a progress listener with the signature (segmentIndex, totalSegments)
+     * @param progressListener      a progress listener with the signature (completedSegments, totalSegments)
      * @return the calculated {@link Path} containing all intermediate locations
      * @throws PathfindingException if any segment's start or end location is invalid/unwalkable
      */
@@ -113,32 +107,286 @@ public class PathfindingUtils
                                          double entityHeight, double entityWidth, @Nullable BiConsumer<Integer, Integer> progressListener)
             throws PathfindingException
     {
-        if(waypoints.size() < 2)
-            throw new IllegalArgumentException("Waypoints list must contain at least 2 locations.");
+        return findPath(new PathRequest.Builder(waypoints)
+                .maxIterations(maxIterations)
+                .allowDiagonal(allowDiagonalMovement)
+                .entitySize(entityHeight, entityWidth)
+                .progressListener(progressListener)
+                .build(), null, false);
+    }
 
-        List<Location> fullPathPoints = new ArrayList<>();
+    /**
+     * Synchronously calculates the path described by a {@link PathRequest}, polling the given condition to abandon the search early. Every search is
+     * recorded in the {@link SearchStatistics}.
+     * <p>
+     * The segments between the waypoints are calculated on the {@link PathfindingService#segmentPool() segment pool} only if {@code parallel} is set, which
+     * is meant for searches that already run inside a {@link PathfindingService} job. Otherwise they are calculated one after another on the calling thread.
+     *
+     * @param request      the request to calculate
+     * @param cancellation a condition that cancels the search once it returns {@code true}, or {@code null}
+     * @param parallel     whether the segments may be calculated in parallel
+     * @return the calculated {@link Path}
+     * @throws PathfindingException  if no path could be found
+     * @throws CancellationException if the search was cancelled
+     */
+    static @NotNull Path findPath(@NotNull PathRequest request, @Nullable BooleanSupplier cancellation, boolean parallel) throws PathfindingException
+    {
+        if(request.getPlanner() != null)
+            return findIncrementalPath(request, cancellation);
+
+        List<Location> waypoints = request.getWaypoints();
+        BiConsumer<Integer, Integer> progressListener = request.getProgressListener();
+        int segments = waypoints.size() - 1;
+        List<List<Location>> results = new ArrayList<>(segments);
 
-        AStarPathfinder aStar = new AStarPathfinder(maxIterations, allowDiagonalMovement, entityHeight, entityWidth);
-        for(int i = 0; i < waypoints.size() - 1; i++)
+        if(segments == 1 || !parallel)
         {
-            Location start = waypoints.get(i);
-            Location end = waypoints.get(i + 1);
+            for(int i = 0; i < segments; i++)
+            {
+                results.add(findSegment(request, i, cancellation));
+                if(progressListener != null)
+                    progressListener.accept(i + 1, segments);
+            }
+        }
+        else
+        {
+            // A failing segment makes every other segment give up early
+            AtomicBoolean failed = new AtomicBoolean();
+            BooleanSupplier abort = () -> failed.get() || (cancellation != null && cancellation.getAsBoolean());
+            AtomicInteger completed = new AtomicInteger();
+
+            List<CompletableFuture<List<Location>>> futures = new ArrayList<>(segments);
+            for(int i = 0; i < segments; i++)
+            {
+                int index = i;
+                futures.add(CompletableFuture.supplyAsync(() ->
+                {
+                    try
+                    {
+                        List<Location> segment = findSegment(request, index, abort);
 
-            List<Location> segment = aStar.getPath(start, end);
+                        if(progressListener != null)
+                        {
+                            synchronized(progressListener)
+                            {
+                                progressListener.accept(completed.incrementAndGet(), segments);
+                            }
+                        }
+                        return segment;
+                    }
+                    catch(PathfindingException e)
+                    {
+                        failed.set(true);
+                        throw new CompletionException(e);
+                    }
+                    catch(RuntimeException e)
+                    {
+                        failed.set(true);
+                        throw e;
+                    }
+                }, PathfindingService.segmentPool()));
+            }
 
-            if(segment == null)
-                throw new PathfindingException("Could not find path between waypoint " + i + " and " + (i + 1));
+            Throwable error = null;
+            for(CompletableFuture<List<Location>> future : futures)
+            {
+                try
+                {
+                    results.add(future.join());
+                }
+                catch(CompletionException e)
+                {
+                    if(error == null && !(e.getCause() instanceof CancellationException))
+                        error = e.getCause();
+                }
+            }
 
+            if(error instanceof PathfindingException e)
+                throw e;
+            if(error instanceof RuntimeException e)
+                throw e;
+            if(error != null)
+                throw new CompletionException(error);
+        }
+
+        if(cancellation != null && cancellation.getAsBoolean())
+            throw new CancellationException("Pathfinding was cancelled");
+
+        List<Location> fullPathPoints = new ArrayList<>();
+        for(List<Location> segment : results)
+        {
             if(!fullPathPoints.isEmpty() && !segment.isEmpty())
                 segment.removeFirst();
 
-            fullPathPoints.addAll(segment.stream().map(Location::clone).toList());
+            fullPathPoints.addAll(segment);
+        }
+
+        return new Path(fullPathPoints, waypoints).setRequest(request);
+    }
+
+    /**
+     * Answers a request with its incremental pathfinder.
+     */
+    private static @NotNull Path findIncrementalPath(@NotNull PathRequest request, @Nullable BooleanSupplier cancellation) throws PathfindingException
+    {
+        IncrementalPathfinder planner = request.getPlanner();
+        long startTime = System.nanoTime();
+        List<Location> nodes;
+        try
+        {
+            nodes = planner.getPath(request.getWaypoints().get(0), request.getWaypoints().get(1), cancellation);
+        }
+        finally
+        {
+            SearchStatistics.record(request.getCaller(), planner.getLastOutcome(), planner.getLastExpansions(), planner.getLastPeakOpenSetSize(),
+                    System.nanoTime() - startTime);
+        }
+
+        if(cancellation != null && cancellation.getAsBoolean())
+            throw new CancellationException("Pathfinding was cancelled");
+
+        if(nodes == null)
+            throw new PathfindingException("Could not find path between waypoint 0 and 1");
+
+        if(NpcApi.config.smoothPaths())
+            nodes = smoothPath(nodes, request.getEntityHeight(), request.getEntityWidth());
+
+        if(request.getProgressListener() != null)
+            request.getProgressListener().accept(1, 1);
+
+        return new Path(nodes, request.getWaypoints()).setRequest(request);
+    }
+
+    /**
+     * Calculates the segment between the waypoint at the given index and the next one and records the search in the {@link SearchStatistics}.
+     */
+    private static @NotNull List<Location> findSegment(@NotNull PathRequest request, int index, @Nullable BooleanSupplier cancellation)
+            throws PathfindingException
+    {
+        AStarPathfinder aStar = new AStarPathfinder(request.getMaxIterations(), request.isAllowDiagonal(), request.getEntityHeight(),
+                request.getEntityWidth())
+                .strategy(request.getStrategy())
+                .cancelWhen(cancellation);
+
+        long startTime = System.nanoTime();
+        List<Location> segment;
+        try
+        {
+            segment = aStar.getPath(request.getWaypoints().get(index), request.getWaypoints().get(index + 1));
+        }
+        finally
+        {
+            SearchStatistics.record(request.getCaller(), aStar.getOutcome(), aStar.getExpandedNodes(), aStar.getPeakOpenSetSize(),
+                    System.nanoTime() - startTime);
+        }
+
+        if(cancellation != null && cancellation.getAsBoolean())
+            throw new CancellationException("Pathfinding was cancelled");
+
+        if(segment == null)
+            throw new PathfindingException("Could not find path between waypoint " + index + " and " + (index + 1));
+
+        if(NpcApi.config.smoothPaths())
+            segment = smoothPath(segment, request.getEntityHeight(), request.getEntityWidth());
+
+        return segment;
+    }
+
+    /**
+     * Reduces a path to its turning points.
+     * <p>
+     * Starting at the first node, every node is connected to the furthest following node that can be reached in a straight line. A straight line is only used
+     * if all skipped nodes are on the same level and the entity's bounding box fits along the whole line with a safe floor underneath. Doors and other
+     * openable blocks are never crossed diagonally, so the nodes in front of and behind them are kept. The first and last node are always kept.
+     *
+     * @param path         the nodes of the path, one node per block
+     * @param entityHeight the height of the entity traversing the path
+     * @param entityWidth  the width of the entity traversing the path
+     * @return a new list containing the remaining nodes
+     */
+    public static @NotNull List<Location> smoothPath(@NotNull List<Location> path, double entityHeight, double entityWidth)
+    {
+        if(path.size() < 3 || path.getFirst().getWorld() == null)
+            return new ArrayList<>(path);
+
+        World world = path.getFirst().getWorld();
+        PathTerrain terrain = new PathTerrain(world, entityHeight, entityWidth);
+
+        List<Location> smoothed = new ArrayList<>();
+        smoothed.add(path.getFirst());
+
+        int anchor = 0;
+        while(anchor < path.size() - 1)
+        {
+            Location from = path.get(anchor);
+            int next = anchor + 1;
+
+            for(int i = anchor + 2; i < path.size(); i++)
+            {
+                Location to = path.get(i);
+                if(Math.abs(to.getY() - from.getY()) > 1e-6 || !hasClearance(terrain, from, to, entityHeight, entityWidth))
+                    break;
+
+                next = i;
+            }
 
-            if(progressListener != null)
-                progressListener.accept(i + 1, waypoints.size() - 1);
+            smoothed.add(path.get(next));
+            anchor = next;
+        }
+
+        return smoothed;
+    }
+
+    /**
+     * Checks whether an entity can walk on a straight line between two nodes on the same level by sampling the line in small steps.
+     */
+    private static boolean hasClearance(@NotNull PathTerrain terrain, @NotNull Location from, @NotNull Location to, double entityHeight, double entityWidth)
+    {
+        World world = terrain.getWorld();
+        double y = from.getY();
+        double dx = to.getX() - from.getX();
+        double dz = to.getZ() - from.getZ();
+        int steps = (int) Math.ceil(Math.sqrt(dx * dx + dz * dz) / SMOOTHING_STEP);
+
+        for(int step = 1; step < steps; step++)
+        {
+            double t = step / (double) steps;
+            double x = from.getX() + dx * t;
+            double z = from.getZ() + dz * t;
+
+            if(containsOpenable(world, x, y, z, entityHeight, entityWidth) || !AStarPathfinder.isPositionValid(world, x, y, z, entityHeight, entityWidth))
+                return false;
+
+            int blockX = (int) Math.floor(x);
+            int blockZ = (int) Math.floor(z);
+            int floorY = (int) Math.floor(y - 1e-3);
+            Block floor = world.getBlockAt(blockX, floorY, blockZ);
+            if(!AStarPathfinder.isSafeFloor(floor) || Math.abs(floorY + terrain.topSurfaceAt(floor, x - blockX, z - blockZ) - y) > 1e-3)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether the bounding box of an entity at the given position touches a door, trapdoor or fence gate.
+     */
+    private static boolean containsOpenable(@NotNull World world, double x, double y, double z, double entityHeight, double entityWidth)
+    {
+        double radius = entityWidth / 2.0;
+        for(int bx = (int) Math.floor(x - radius); bx <= (int) Math.floor(x + radius); bx++)
+        {
+            for(int by = (int) Math.floor(y); by <= (int) Math.floor(y + entityHeight); by++)
+            {
+                for(int bz = (int) Math.floor(z - radius); bz <= (int) Math.floor(z + radius); bz++)
+                {
+                    if(world.getBlockAt(bx, by, bz).getBlockData() instanceof Openable)
+                        return true;
+                }
+            }
         }
 
-        return new Path(fullPathPoints, waypoints);
+        return false;
     }
 
     public static class PathfindingException extends Exception
@@ -11,14 +11,24 @@ public enum PathingResult
     SUCCESS(0),
 
     /**
-     * No valid path could be found.
+     * No valid path could be found, since every reachable node was expanded without reaching the end.
      */
     NO_PATH(-1),
 
     /**
      * Pathfinding stopped because the maximum iteration limit was exceeded.
      */
-    ITERATIONS_EXCEEDED(-2);
+    ITERATIONS_EXCEEDED(-2),
+
+    /**
+     * The start or end is not on a valid floor, so no search was run.
+     */
+    INVALID_FLOOR(-3),
+
+    /**
+     * The search was cancelled before it finished.
+     */
+    CANCELLED(-4);
 
     private final int ec;
 
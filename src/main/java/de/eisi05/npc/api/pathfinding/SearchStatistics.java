@@ -0,0 +1,238 @@
+package de.eisi05.npc.api.pathfinding;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects statistics about every path search, grouped by the caller that requested it.
+ * <p>
+ * For each search, the number of expanded nodes, the peak size of the open set, the wall time and the {@link PathingResult} are recorded. The values are
+ * aggregated into {@link Histogram}s with power-of-two buckets, so recording a search never allocates and takes constant memory per caller.
+ */
+public class SearchStatistics
+{
+    /**
+     * The caller tag used for requests that were not tagged.
+     */
+    public static final String UNTAGGED = "untagged";
+
+    private static final Map<String, CallerStatistics> callers = new ConcurrentHashMap<>();
+
+    /**
+     * Records a finished search.
+     *
+     * @param caller          the caller tag of the request, or {@code null} if it was not tagged
+     * @param result          why the search ended
+     * @param expandedNodes   the number of expanded nodes
+     * @param peakOpenSetSize the largest number of nodes the open set held at once
+     * @param wallTimeNanos   the time the search took in nanoseconds
+     */
+    public static void record(@Nullable String caller, @NotNull PathingResult result, int expandedNodes, int peakOpenSetSize, long wallTimeNanos)
+    {
+        callers.computeIfAbsent(caller == null ? UNTAGGED : caller, tag -> new CallerStatistics())
+                .record(result, expandedNodes, peakOpenSetSize, wallTimeNanos);
+    }
+
+    /**
+     * Gets the tags of all callers that have searches recorded.
+     *
+     * @return an unmodifiable set of caller tags
+     */
+    public static @NotNull Set<String> getCallers()
+    {
+        return Set.copyOf(callers.keySet());
+    }
+
+    /**
+     * Gets the statistics of all searches requested by the given caller.
+     *
+     * @param caller the caller tag
+     * @return a snapshot of the statistics, or {@code null} if no search of this caller was recorded
+     */
+    public static @Nullable Snapshot getStatistics(@NotNull String caller)
+    {
+        CallerStatistics statistics = callers.get(caller);
+        return statistics == null ? null : statistics.snapshot();
+    }
+
+    /**
+     * Gets the statistics of all searches combined.
+     *
+     * @return a snapshot of the statistics
+     */
+    public static @NotNull Snapshot getTotal()
+    {
+        CallerStatistics total = new CallerStatistics();
+        for(CallerStatistics statistics : callers.values())
+            total.add(statistics);
+        return total.snapshot();
+    }
+
+    /**
+     * Discards all recorded searches.
+     */
+    public static void reset()
+    {
+        callers.clear();
+    }
+
+    /**
+     * A snapshot of the searches of one caller.
+     *
+     * @param searches        the number of recorded searches
+     * @param results         the number of searches per result
+     * @param expandedNodes   the distribution of the number of expanded nodes
+     * @param peakOpenSetSize the distribution of the peak open set size
+     * @param wallTimeMicros  the distribution of the wall time in microseconds
+     */
+    public record Snapshot(long searches, @NotNull Map<PathingResult, Long> results, @NotNull Histogram expandedNodes, @NotNull Histogram peakOpenSetSize,
+                           @NotNull Histogram wallTimeMicros)
+    {
+        /**
+         * Gets the number of searches that ended with the given result.
+         *
+         * @param result the result
+         * @return the number of searches
+         */
+        public long count(@NotNull PathingResult result)
+        {
+            return results.getOrDefault(result, 0L);
+        }
+    }
+
+    /**
+     * An immutable histogram with power-of-two buckets. Bucket 0 counts the value 0 and bucket {@code i} counts the values from {@code 2^(i-1)} to
+     * {@code 2^i - 1}.
+     *
+     * @param count   the number of recorded values
+     * @param sum     the sum of all recorded values
+     * @param max     the largest recorded value
+     * @param buckets the number of values per bucket
+     */
+    public record Histogram(long count, long sum, long max, long @NotNull [] buckets)
+    {
+        /**
+         * Gets the average of all recorded values.
+         *
+         * @return the average, or 0 if no value was recorded
+         */
+        public double mean()
+        {
+            return count == 0 ? 0 : sum / (double) count;
+        }
+
+        /**
+         * Estimates a percentile of the recorded values. The result is the upper bound of the bucket that contains the percentile, capped at the largest
+         * recorded value, so it is at most twice the exact percentile.
+         *
+         * @param percentile the percentile between 0 and 100
+         * @return the estimated percentile, or 0 if no value was recorded
+         */
+        public long percentile(double percentile)
+        {
+            if(count == 0)
+                return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(Math.clamp(percentile, 0, 100) / 100D * count));
+            long seen = 0;
+            for(int i = 0; i < buckets.length; i++)
+            {
+                seen += buckets[i];
+                if(seen >= rank)
+                    return i == 0 ? 0 : Math.min(max, i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+            return max;
+        }
+    }
+
+    /**
+     * Thread safe counters of one caller.
+     */
+    private static final class CallerStatistics
+    {
+        private final LongAdder searches = new LongAdder();
+        private final LongAdder[] results = new LongAdder[PathingResult.values().length];
+        private final Recorder expandedNodes = new Recorder();
+        private final Recorder peakOpenSetSize = new Recorder();
+        private final Recorder wallTimeMicros = new Recorder();
+
+        private CallerStatistics()
+        {
+            for(int i = 0; i < results.length; i++)
+                results[i] = new LongAdder();
+        }
+
+        private void record(@NotNull PathingResult result, int expanded, int peakOpen, long wallTimeNanos)
+        {
+            searches.increment();
+            results[result.ordinal()].increment();
+            expandedNodes.record(expanded);
+            peakOpenSetSize.record(peakOpen);
+            wallTimeMicros.record(wallTimeNanos / 1000);
+        }
+
+        private void add(@NotNull CallerStatistics other)
+        {
+            searches.add(other.searches.sum());
+            for(int i = 0; i < results.length; i++)
+                results[i].add(other.results[i].sum());
+            expandedNodes.add(other.expandedNodes);
+            peakOpenSetSize.add(other.peakOpenSetSize);
+            wallTimeMicros.add(other.wallTimeMicros);
+        }
+
+        private @NotNull Snapshot snapshot()
+        {
+            Map<PathingResult, Long> counts = new EnumMap<>(PathingResult.class);
+            for(PathingResult result : PathingResult.values())
+                counts.put(result, results[result.ordinal()].sum());
+
+            return new Snapshot(searches.sum(), counts, expandedNodes.snapshot(), peakOpenSetSize.snapshot(), wallTimeMicros.snapshot());
+        }
+    }
+
+    /**
+     * Thread safe counterpart of {@link Histogram} that values are recorded into.
+     */
+    private static final class Recorder
+    {
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        private void record(long value)
+        {
+            value = Math.max(0, value);
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        private void add(@NotNull Recorder other)
+        {
+            for(int i = 0; i < buckets.length(); i++)
+                buckets.addAndGet(i, other.buckets.get(i));
+            count.add(other.count.sum());
+            sum.add(other.sum.sum());
+            max.accumulateAndGet(other.max.get(), Math::max);
+        }
+
+        private @NotNull Histogram snapshot()
+        {
+            long[] values = new long[buckets.length()];
+            for(int i = 0; i < values.length; i++)
+                values[i] = buckets.get(i);
+            return new Histogram(count.sum(), sum.sum(), max.get(), values);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package de.eisi05.npc.api.scheduler;
+
+import de.eisi05.npc.api.NpcApi;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps the chunks ahead of a walking NPC loaded.
+ * <p>
+ * A plugin chunk ticket is added to the chunk the NPC is in and to the next {@link de.eisi05.npc.api.objects.NpcConfig#loadChunksAhead()} chunks along its
+ * path, and removed again once the NPC has passed them. Chunks that are not loaded yet are loaded asynchronously on servers that provide
+ * {@code World#getChunkAtAsync}. On other servers, at most one chunk is loaded synchronously per tick across all walking NPCs.
+ * <p>
+ * Plugin chunk tickets are not counted by the server, so NPCs that share a chunk share one ticket. It is added when the first NPC needs the chunk and
+ * removed once the last NPC has passed it.
+ */
+final class ChunkLookahead
+{
+    private static final Method GET_CHUNK_AT_ASYNC = findAsyncLoader();
+    private static final long SYNC_LOAD_INTERVAL_NANOS = 50_000_000L;
+    private static final double SAMPLE_STEP = 4.0;
+    private static final Map<UUID, Map<Long, Integer>> references = new HashMap<>();
+    private static long lastSyncLoad;
+
+    private final World world;
+    private final Set<Long> ticketed = new HashSet<>();
+    private final Set<Long> pending = new HashSet<>();
+    private final Set<Long> wanted = new HashSet<>();
+    private int lastChunkX = Integer.MIN_VALUE;
+    private int lastChunkZ = Integer.MIN_VALUE;
+    private int lastIndex = -1;
+    private boolean released;
+
+    ChunkLookahead(@NotNull World world)
+    {
+        this.world = world;
+    }
+
+    /**
+     * Moves the window of loaded chunks to the current position. Does nothing if neither the chunk of the position nor the index of the next node changed
+     * since the last call.
+     *
+     * @param posX   the x coordinate of the NPC
+     * @param posZ   the z coordinate of the NPC
+     * @param pointX the x coordinates of the path nodes
+     * @param pointZ the z coordinates of the path nodes
+     * @param index  the index of the next node
+     * @param count  the number of nodes
+     */
+    void update(double posX, double posZ, double @NotNull [] pointX, double @NotNull [] pointZ, int index, int count)
+    {
+        int chunkX = Location.locToBlock(posX) >> 4;
+        int chunkZ = Location.locToBlock(posZ) >> 4;
+        if(chunkX == lastChunkX && chunkZ == lastChunkZ && index == lastIndex)
+            return;
+
+        lastChunkX = chunkX;
+        lastChunkZ = chunkZ;
+        lastIndex = index;
+
+        int limit = NpcApi.config.loadChunksAhead() + 1;
+        wanted.clear();
+        wanted.add(key(chunkX, chunkZ));
+
+        double fromX = posX;
+        double fromZ = posZ;
+        for(int i = index; i < count && wanted.size() < limit; i++)
+        {
+            addSegment(fromX, fromZ, pointX[i], pointZ[i], limit);
+            fromX = pointX[i];
+            fromZ = pointZ[i];
+        }
+
+        for(long key : wanted)
+            request(key);
+
+        ticketed.removeIf(key ->
+        {
+            if(wanted.contains(key))
+                return false;
+
+            releaseTicket(key);
+            return true;
+        });
+    }
+
+    /**
+     * Requests the given chunk to be loaded and kept loaded until the NPC has passed it.
+     *
+     * @param chunkX the x coordinate of the chunk
+     * @param chunkZ the z coordinate of the chunk
+     */
+    void request(int chunkX, int chunkZ)
+    {
+        long key = key(chunkX, chunkZ);
+        wanted.add(key);
+        request(key);
+    }
+
+    /**
+     * Removes all chunk tickets of this NPC.
+     */
+    void release()
+    {
+        released = true;
+        for(long key : ticketed)
+            releaseTicket(key);
+        ticketed.clear();
+        wanted.clear();
+    }
+
+    private void addSegment(double fromX, double fromZ, double toX, double toZ, int limit)
+    {
+        double dx = toX - fromX;
+        double dz = toZ - fromZ;
+        int steps = (int) Math.ceil(Math.sqrt(dx * dx + dz * dz) / SAMPLE_STEP);
+
+        for(int i = 1; i <= steps && wanted.size() < limit; i++)
+        {
+            double t = i / (double) steps;
+            wanted.add(key(Location.locToBlock(fromX + dx * t) >> 4, Location.locToBlock(fromZ + dz * t) >> 4));
+        }
+    }
+
+    private void request(long key)
+    {
+        if(released || ticketed.contains(key) || pending.contains(key))
+            return;
+
+        int chunkX = chunkX(key);
+        int chunkZ = chunkZ(key);
+        if(world.isChunkLoaded(chunkX, chunkZ))
+        {
+            addTicket(key);
+            return;
+        }
+
+        CompletableFuture<?> future = loadAsync(chunkX, chunkZ);
+        if(future != null)
+        {
+            pending.add(key);
+            future.whenComplete((chunk, error) -> Bukkit.getScheduler().runTask(NpcApi.plugin, () ->
+            {
+                pending.remove(key);
+                if(!released && wanted.contains(key) && world.isChunkLoaded(chunkX, chunkZ))
+                    addTicket(key);
+            }));
+            return;
+        }
+
+        // Without asynchronous loading, the ticket loads the chunk right away, so spread those loads over several ticks
+        long now = System.nanoTime();
+        if(now - lastSyncLoad < SYNC_LOAD_INTERVAL_NANOS)
+            return;
+
+        lastSyncLoad = now;
+        addTicket(key);
+    }
+
+    private void addTicket(long key)
+    {
+        if(!ticketed.add(key))
+            return;
+
+        if(references.computeIfAbsent(world.getUID(), uuid -> new HashMap<>()).merge(key, 1, Integer::sum) == 1)
+            world.addPluginChunkTicket(chunkX(key), chunkZ(key), NpcApi.plugin);
+    }
+
+    private void releaseTicket(long key)
+    {
+        Map<Long, Integer> counts = references.get(world.getUID());
+        if(counts == null)
+            return;
+
+        Integer count = counts.get(key);
+        if(count == null)
+            return;
+
+        if(count > 1)
+        {
+            counts.put(key, count - 1);
+            return;
+        }
+
+        counts.remove(key);
+        if(counts.isEmpty())
+            references.remove(world.getUID());
+        world.removePluginChunkTicket(chunkX(key), chunkZ(key), NpcApi.plugin);
+    }
+
+    private @Nullable CompletableFuture<?> loadAsync(int chunkX, int chunkZ)
+    {
+        if(GET_CHUNK_AT_ASYNC == null)
+            return null;
+
+        try
+        {
+            return (CompletableFuture<?>) GET_CHUNK_AT_ASYNC.invoke(world, chunkX, chunkZ);
+        }
+        catch(ReflectiveOperationException | ClassCastException e)
+        {
+            return null;
+        }
+    }
+
+    private static @Nullable Method findAsyncLoader()
+    {
+        try
+        {
+            return World.class.getMethod("getChunkAtAsync", int.class, int.class);
+        }
+        catch(NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+
+    private static long key(int chunkX, int chunkZ)
+    {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private static int chunkX(long key)
+    {
+        return (int) (key >> 32);
+    }
+
+    private static int chunkZ(long key)
+    {
+        return (int) key;
+    }
+}
@@ -0,0 +1,482 @@
+package de.eisi05.npc.api.scheduler;
+
+import de.eisi05.npc.api.pathfinding.Path;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.Openable;
+import org.bukkit.util.BoundingBox;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The collision shapes of all blocks along a path, read once when a {@link PathTask} is built.
+ * <p>
+ * The blocks in a corridor around every segment of the path are stored in flat arrays, so the walking step can look up floor heights, collisions and doors
+ * without querying the world. Blocks outside the corridor or in unloaded chunks are not stored, and the walking step queries the world for them as before.
+ * Block changes reported through {@link #blockChanged(World, int, int, int)} mark the affected entry as stale, and it is read again the next time it is
+ * looked up. As not every change fires an event, for example blocks set by plugins, every lookup also compares the stored type of the block with the
+ * type in the world, which is much cheaper than reading the collision shape, and reads the block again if it differs.
+ */
+public final class PathProfile
+{
+    static final int UNKNOWN = -1;
+    static final int INVALID = 0;
+    static final int VALID = 1;
+
+    private static final Set<PathProfile> active = ConcurrentHashMap.newKeySet();
+
+    private static final byte UNUSED = -1;
+    private static final byte EMPTY = 0;
+    private static final byte CUBE = 1;
+    private static final byte SHAPED = 2;
+    private static final byte OPENABLE = 3;
+    private static final byte LIQUID = 4;
+    private static final byte STALE = 5;
+
+    private static final double SAMPLE_STEP = 0.5;
+    private static final int GROUND_DEPTH = 5;
+    private static final int HEADROOM = 2;
+
+    private final World world;
+    private final double entityHeight;
+    private final double entityWidth;
+    private final double margin;
+
+    private long[] keys;
+    private byte[] kinds;
+    private Material[] types;
+    private int[] boxStart;
+    private byte[] boxCount;
+    private byte[] boxCapacity;
+    private int size;
+    private float[] boxes = new float[48];
+    private int boxesUsed;
+
+    /**
+     * Reads the blocks along the path.
+     *
+     * @param world        the world of the path
+     * @param path         the path that is walked
+     * @param start        the location the entity starts walking from
+     * @param entityHeight the height of the entity
+     * @param entityWidth  the width of the entity
+     * @param reach        the furthest distance the entity moves in one step
+     */
+    PathProfile(@NotNull World world, @NotNull Path path, @NotNull Location start, double entityHeight, double entityWidth, double reach)
+    {
+        this.world = world;
+        this.entityHeight = entityHeight;
+        this.entityWidth = entityWidth;
+
+        int capacity = Integer.highestOneBit(Math.clamp(path.size() * 64L, 256, 1 << 16)) << 1;
+        this.keys = new long[capacity];
+        this.kinds = new byte[capacity];
+        this.types = new Material[capacity];
+        this.boxStart = new int[capacity];
+        this.boxCount = new byte[capacity];
+        this.boxCapacity = new byte[capacity];
+        Arrays.fill(kinds, UNUSED);
+
+        this.margin = entityWidth / 2.0 + Math.clamp(reach, 0.0, 1.0);
+        double previousX = start.getX();
+        double previousY = start.getY();
+        double previousZ = start.getZ();
+        for(int i = 0; i < path.size(); i++)
+        {
+            addSegment(previousX, previousY, previousZ, path.getX(i), path.getY(i), path.getZ(i), margin);
+            previousX = path.getX(i);
+            previousY = path.getY(i);
+            previousZ = path.getZ(i);
+        }
+
+        if(!path.getWaypoints().isEmpty())
+        {
+            Location last = path.getWaypoints().getLast();
+            addSegment(previousX, previousY, previousZ, last.getX(), last.getY(), last.getZ(), margin);
+        }
+    }
+
+    /**
+     * Reads the blocks along a part of the route that replaced a broken one after the profile was created. The blocks of the replaced part are kept.
+     *
+     * @param start the location the new part starts from
+     * @param nodes the nodes of the new part
+     */
+    void extend(@NotNull Location start, @NotNull List<Location> nodes)
+    {
+        double previousX = start.getX();
+        double previousY = start.getY();
+        double previousZ = start.getZ();
+        for(Location node : nodes)
+        {
+            addSegment(previousX, previousY, previousZ, node.getX(), node.getY(), node.getZ(), margin);
+            previousX = node.getX();
+            previousY = node.getY();
+            previousZ = node.getZ();
+        }
+    }
+
+    /**
+     * Marks the block at the given position as changed in every profile that contains it.
+     *
+     * @param world the world of the block
+     * @param x     the x coordinate of the block
+     * @param y     the y coordinate of the block
+     * @param z     the z coordinate of the block
+     */
+    public static void blockChanged(@NotNull World world, int x, int y, int z)
+    {
+        for(PathProfile profile : active)
+        {
+            if(!profile.world.equals(world))
+                continue;
+
+            int slot = profile.find(pack(x, y, z));
+            if(slot >= 0)
+                profile.kinds[slot] = STALE;
+        }
+    }
+
+    /**
+     * Starts receiving block changes.
+     */
+    void register()
+    {
+        active.add(this);
+    }
+
+    /**
+     * Stops receiving block changes.
+     */
+    void release()
+    {
+        active.remove(this);
+    }
+
+    /**
+     * Calculates the feet Y-coordinate of the ground at a position in the same way as the walking step does by querying the world.
+     *
+     * @return the Y-coordinate where the entity's feet should be, or {@link Double#NaN} if a block that is needed is not stored
+     */
+    double groundY(double x, double y, double z)
+    {
+        int bx = Location.locToBlock(x);
+        int bz = Location.locToBlock(z);
+        int startY = Location.locToBlock(y);
+
+        for(int by = startY; by >= startY - 4; by--)
+        {
+            int slot = lookup(bx, by, bz);
+            if(slot < 0)
+                return Double.NaN;
+
+            byte kind = kinds[slot];
+            if(kind == CUBE)
+                return by + 1.0;
+            if(kind != SHAPED)
+                continue;
+
+            double lx = x - bx;
+            double lz = z - bz;
+            double bestTop = -1.0;
+            int from = boxStart[slot];
+            int to = from + boxCount[slot] * 6;
+
+            for(int i = from; i < to; i += 6)
+            {
+                if(lx >= boxes[i] && lx <= boxes[i + 3] && lz >= boxes[i + 2] && lz <= boxes[i + 5])
+                    bestTop = Math.max(bestTop, boxes[i + 4]);
+            }
+
+            if(bestTop < 0.0)
+            {
+                for(int i = from; i < to; i += 6)
+                    bestTop = Math.max(bestTop, boxes[i + 4]);
+            }
+
+            return by + bestTop;
+        }
+
+        return Double.NaN;
+    }
+
+    /**
+     * Checks if the entity fits at a position in the same way as {@link de.eisi05.npc.api.pathfinding.AStarPathfinder#isPositionValid}.
+     *
+     * @return {@link #VALID} or {@link #INVALID}, or {@link #UNKNOWN} if a block that is needed is not stored
+     */
+    int isPositionValid(double tx, double ty, double tz)
+    {
+        double radius = entityWidth / 2.0;
+        double minX = tx - radius;
+        double maxX = tx + radius;
+        double maxY = ty + entityHeight;
+        double minZ = tz - radius;
+        double maxZ = tz + radius;
+
+        int minBlockX = (int) Math.floor(minX);
+        int maxBlockX = (int) Math.floor(maxX);
+        int minBlockY = (int) Math.floor(ty);
+        int maxBlockY = (int) Math.floor(maxY);
+        if(maxY > maxBlockY && maxBlockY == minBlockY)
+            maxBlockY++;
+        int minBlockZ = (int) Math.floor(minZ);
+        int maxBlockZ = (int) Math.floor(maxZ);
+
+        int result = VALID;
+        for(int x = minBlockX; x <= maxBlockX; x++)
+        {
+            for(int y = minBlockY; y <= maxBlockY; y++)
+            {
+                for(int z = minBlockZ; z <= maxBlockZ; z++)
+                {
+                    int slot = lookup(x, y, z);
+                    if(slot < 0)
+                    {
+                        result = UNKNOWN;
+                        continue;
+                    }
+
+                    byte kind = kinds[slot];
+                    if(kind == CUBE)
+                    {
+                        if(overlaps(minX, ty, minZ, maxX, maxY, maxZ, x, y, z, x + 1, y + 1, z + 1))
+                            return INVALID;
+                    }
+                    else if(kind == SHAPED)
+                    {
+                        int from = boxStart[slot];
+                        int to = from + boxCount[slot] * 6;
+                        for(int i = from; i < to; i += 6)
+                        {
+                            if(overlaps(minX, ty, minZ, maxX, maxY, maxZ, x + boxes[i], y + boxes[i + 1], z + boxes[i + 2], x + boxes[i + 3],
+                                    y + boxes[i + 4], z + boxes[i + 5]))
+                                return INVALID;
+                        }
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks if the block at the given position may be a door or another openable block.
+     *
+     * @return {@code false} only if the block is stored and known not to be openable
+     */
+    boolean mayBeOpenable(int x, int y, int z)
+    {
+        int slot = lookup(x, y, z);
+        return slot < 0 || kinds[slot] == OPENABLE;
+    }
+
+    private static boolean overlaps(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, double otherMinX, double otherMinY,
+                                    double otherMinZ, double otherMaxX, double otherMaxY, double otherMaxZ)
+    {
+        return minX < otherMaxX && maxX > otherMinX && minY < otherMaxY && maxY > otherMinY && minZ < otherMaxZ && maxZ > otherMinZ;
+    }
+
+    /**
+     * Adds the blocks the entity may touch while walking in a straight line between two points.
+     */
+    private void addSegment(double ax, double ay, double az, double bx, double by, double bz, double margin)
+    {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double dz = bz - az;
+        int steps = (int) Math.ceil(Math.sqrt(dx * dx + dy * dy + dz * dz) / SAMPLE_STEP);
+
+        for(int i = 0; i <= steps; i++)
+        {
+            double t = steps == 0 ? 0 : i / (double) steps;
+            double x = ax + dx * t;
+            double y = ay + dy * t;
+            double z = az + dz * t;
+
+            int minY = Location.locToBlock(y) - GROUND_DEPTH;
+            int maxY = Location.locToBlock(y + entityHeight) + HEADROOM;
+            for(int blockX = Location.locToBlock(x - margin); blockX <= Location.locToBlock(x + margin); blockX++)
+            {
+                for(int blockZ = Location.locToBlock(z - margin); blockZ <= Location.locToBlock(z + margin); blockZ++)
+                {
+                    if(!world.isChunkLoaded(blockX >> 4, blockZ >> 4))
+                        continue;
+
+                    for(int blockY = minY; blockY <= maxY; blockY++)
+                    {
+                        if(find(pack(blockX, blockY, blockZ)) < 0)
+                            insert(blockX, blockY, blockZ);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the slot of a block and reads it again if it changed.
+     *
+     * @return the slot, or -1 if the block is not stored or can not be read
+     */
+    private int lookup(int x, int y, int z)
+    {
+        int slot = find(pack(x, y, z));
+        if(slot < 0)
+            return slot;
+
+        if(!world.isChunkLoaded(x >> 4, z >> 4))
+            return -1;
+
+        if(kinds[slot] == STALE || types[slot] != world.getType(x, y, z))
+            read(slot, x, y, z);
+        return slot;
+    }
+
+    private int find(long key)
+    {
+        int mask = keys.length - 1;
+        for(int slot = mix(key) & mask; ; slot = (slot + 1) & mask)
+        {
+            if(kinds[slot] == UNUSED)
+                return -1;
+            if(keys[slot] == key)
+                return slot;
+        }
+    }
+
+    private void insert(int x, int y, int z)
+    {
+        if((size + 1) * 2 > keys.length)
+            grow();
+
+        long key = pack(x, y, z);
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while(kinds[slot] != UNUSED)
+            slot = (slot + 1) & mask;
+
+        keys[slot] = key;
+        size++;
+        read(slot, x, y, z);
+    }
+
+    /**
+     * Reads the block at the given position from the world into a slot. A slot that is read again reuses its range of boxes if the new shape fits.
+     */
+    private void read(int slot, int x, int y, int z)
+    {
+        Block block = world.getBlockAt(x, y, z);
+        types[slot] = block.getType();
+        if(block.getBlockData() instanceof Openable)
+        {
+            kinds[slot] = OPENABLE;
+            return;
+        }
+
+        if(block.isLiquid())
+        {
+            kinds[slot] = LIQUID;
+            return;
+        }
+
+        Collection<BoundingBox> shape = block.getCollisionShape().getBoundingBoxes();
+        if(shape.isEmpty())
+        {
+            kinds[slot] = EMPTY;
+            return;
+        }
+
+        if(shape.size() == 1)
+        {
+            BoundingBox box = shape.iterator().next();
+            if(box.getMinX() == 0 && box.getMinY() == 0 && box.getMinZ() == 0 && box.getMaxX() == 1 && box.getMaxY() == 1 && box.getMaxZ() == 1)
+            {
+                kinds[slot] = CUBE;
+                return;
+            }
+        }
+
+        int count = Math.min(shape.size(), Byte.MAX_VALUE);
+        if(count > boxCapacity[slot])
+        {
+            if(boxesUsed + count * 6 > boxes.length)
+                boxes = Arrays.copyOf(boxes, Math.max(boxes.length * 2, boxesUsed + count * 6));
+
+            boxStart[slot] = boxesUsed;
+            boxCapacity[slot] = (byte) count;
+            boxesUsed += count * 6;
+        }
+
+        kinds[slot] = SHAPED;
+        boxCount[slot] = (byte) count;
+        int index = boxStart[slot];
+        int written = 0;
+        for(BoundingBox box : shape)
+        {
+            if(written++ == count)
+                break;
+
+            boxes[index++] = (float) box.getMinX();
+            boxes[index++] = (float) box.getMinY();
+            boxes[index++] = (float) box.getMinZ();
+            boxes[index++] = (float) box.getMaxX();
+            boxes[index++] = (float) box.getMaxY();
+            boxes[index++] = (float) box.getMaxZ();
+        }
+    }
+
+    private void grow()
+    {
+        long[] oldKeys = keys;
+        byte[] oldKinds = kinds;
+        Material[] oldTypes = types;
+        int[] oldBoxStart = boxStart;
+        byte[] oldBoxCount = boxCount;
+        byte[] oldBoxCapacity = boxCapacity;
+
+        keys = new long[oldKeys.length * 2];
+        kinds = new byte[oldKeys.length * 2];
+        types = new Material[oldKeys.length * 2];
+        boxStart = new int[oldKeys.length * 2];
+        boxCount = new byte[oldKeys.length * 2];
+        boxCapacity = new byte[oldKeys.length * 2];
+        Arrays.fill(kinds, UNUSED);
+
+        int mask = keys.length - 1;
+        for(int i = 0; i < oldKeys.length; i++)
+        {
+            if(oldKinds[i] == UNUSED)
+                continue;
+
+            int slot = mix(oldKeys[i]) & mask;
+            while(kinds[slot] != UNUSED)
+                slot = (slot + 1) & mask;
+
+            keys[slot] = oldKeys[i];
+            kinds[slot] = oldKinds[i];
+            types[slot] = oldTypes[i];
+            boxStart[slot] = oldBoxStart[i];
+            boxCount[slot] = oldBoxCount[i];
+            boxCapacity[slot] = oldBoxCapacity[i];
+        }
+    }
+
+    private static long pack(int x, int y, int z)
+    {
+        return ((long) x & 0x3FFFFFF) << 38 | ((long) z & 0x3FFFFFF) << 12 | (y & 0xFFF);
+    }
+
+    private static int mix(long key)
+    {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+}
@@ -0,0 +1,86 @@
+package de.eisi05.npc.api.scheduler;
+
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Maps block positions to the walking {@link PathTask}s whose route passes through them.
+ * <p>
+ * A task registers the floor blocks it walks on and the blocks its body moves through. When one of them changes, only the tasks passing through it are
+ * notified, and they repair the affected part of their route on their next tick. Must only be used on the main thread.
+ */
+public final class PathRouteIndex
+{
+    private static final Map<UUID, Map<Long, List<PathTask>>> routes = new HashMap<>();
+
+    private PathRouteIndex() {}
+
+    /**
+     * Notifies all walking tasks whose route passes through the given block.
+     *
+     * @param world the world of the block
+     * @param x     the x coordinate of the block
+     * @param y     the y coordinate of the block
+     * @param z     the z coordinate of the block
+     */
+    public static void blockChanged(@NotNull World world, int x, int y, int z)
+    {
+        Map<Long, List<PathTask>> blocks = routes.get(world.getUID());
+        if(blocks == null)
+            return;
+
+        long key = pack(x, y, z);
+        List<PathTask> tasks = blocks.get(key);
+        if(tasks == null)
+            return;
+
+        for(PathTask task : List.copyOf(tasks))
+            task.routeBlockChanged(key);
+    }
+
+    static void register(@NotNull PathTask task, @NotNull World world, @NotNull Collection<Long> keys)
+    {
+        Map<Long, List<PathTask>> blocks = routes.computeIfAbsent(world.getUID(), uuid -> new HashMap<>());
+        for(long key : keys)
+            blocks.computeIfAbsent(key, k -> new ArrayList<>(1)).add(task);
+    }
+
+    static void unregister(@NotNull PathTask task, @NotNull World world, @NotNull Collection<Long> keys)
+    {
+        Map<Long, List<PathTask>> blocks = routes.get(world.getUID());
+        if(blocks == null)
+            return;
+
+        for(long key : keys)
+        {
+            List<PathTask> tasks = blocks.get(key);
+            if(tasks != null && tasks.remove(task) && tasks.isEmpty())
+                blocks.remove(key);
+        }
+
+        if(blocks.isEmpty())
+            routes.remove(world.getUID());
+    }
+
+    static long pack(int x, int y, int z)
+    {
+        return ((long) x & 0x3FFFFFF) << 38 | ((long) z & 0x3FFFFFF) << 12 | (y & 0xFFF);
+    }
+
+    static int unpackX(long key)
+    {
+        return (int) (key >> 38);
+    }
+
+    static int unpackY(long key)
+    {
+        return (int) (key << 52 >> 52);
+    }
+
+    static int unpackZ(long key)
+    {
+        return (int) (key << 26 >> 38);
+    }
+}
@@ -4,9 +4,11 @@ import de.eisi05.npc.api.NpcApi;
 import de.eisi05.npc.api.enums.WalkingResult;
 import de.eisi05.npc.api.events.NpcStopWalkingEvent;
 import de.eisi05.npc.api.objects.NPC;
+import de.eisi05.npc.api.objects.NpcConfig;
 import de.eisi05.npc.api.objects.NpcOption;
 import de.eisi05.npc.api.pathfinding.AStarPathfinder;
 import de.eisi05.npc.api.pathfinding.Path;
+import de.eisi05.npc.api.pathfinding.PathRequest;
 import de.eisi05.npc.api.wrapper.objects.WrappedEntity;
 import de.eisi05.npc.api.wrapper.packets.MoveEntityPacket;
 import de.eisi05.npc.api.wrapper.packets.RotateHeadPacket;
@@ -15,7 +17,6 @@ import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
 import org.bukkit.block.data.Openable;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
@@ -25,6 +26,9 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Consumer;
 
 /**
@@ -37,12 +41,13 @@ public class PathTask extends BukkitRunnable
     private static final double jumpVelocity = 0.5;
     private static final double terminalVelocity = -0.5;
     private static final double stepHeight = 0.55;
+    private static final int REPAIR_ITERATIONS = 1000;
+    private static final double ROUTE_SAMPLE_STEP = 0.5;
 
     private final NPC npc;
     private final double entityHeight;
     private final double entityWidth;
     private final Path path;
-    private final List<Location> pathPoints;
     private final Set<UUID> viewerIds = new HashSet<>();
     private final boolean autoManageWalkingViewers;
     private final WrappedEntity<?> serverEntity;
@@ -52,17 +57,61 @@ public class PathTask extends BukkitRunnable
     private final double speed;
     private final boolean updateRealLocation;
 
-    private final Set<Block> openedDoors = new HashSet<>();
-    private final Vector previousMoveDir;
+    private final List<Block> openedDoors = new ArrayList<>();
+    private final PathProfile profile;
+    private final ChunkLookahead chunkLookahead;
+
+    // The blocks the route passes through, mapped to the index of their segment shifted left by one, with the lowest bit set for blocks the body moves
+    // through and cleared for floor blocks. Changes reported by the PathRouteIndex are queued until the next tick
+    private final Map<Long, Integer> routeBlocks = new HashMap<>();
+    private final Set<Long> changedRouteBlocks = new HashSet<>();
+
+    // The search replacing the broken nodes from repairFrom to repairTo, the NPC waits before repairFrom until it is done
+    private CompletableFuture<Path> repair;
+    private Location repairStart;
+    private int repairFrom;
+    private int repairTo;
+
+    // Scratch vectors handed to the packet wrappers, which copy them right away
+    private final Vector positionBuffer = new Vector();
+    private final Vector movementBuffer = new Vector();
+
+    // The nodes of the path as parallel coordinate arrays, the last waypoint may be appended once the path runs out
+    private double[] pointX;
+    private double[] pointY;
+    private double[] pointZ;
+    private int pointCount;
 
     private boolean finished = false;
     private int index = 0;
-    private Vector currentPos;
+    private double posX;
+    private double posY;
+    private double posZ;
+    private double moveX;
+    private double moveY;
+    private double moveZ;
+    private double previousDirX;
+    private double previousDirZ;
     private float previousPitch;
     private float previousYaw;
     private double verticalVelocity = 0.0;
     private int viewerRefreshTicks = 0;
-    private boolean isWaitingForChunkLoad = false;
+    private Player[] viewers = new Player[0];
+    private boolean viewersChanged = true;
+
+    // Per viewer update state, parallel to the viewers array
+    private int[] viewerLastUpdate = new int[0];
+    private int[] viewerLastHead = new int[0];
+    private Player[] headRecipients = new Player[0];
+    private Player[] moveRecipients = new Player[0];
+    private final Location viewerLocation = new Location(null, 0, 0, 0);
+    private int movementTick;
+
+    // The result of the last physics step
+    private double stepYChange;
+    private boolean stepGrounded;
+    private boolean stepSkipHorizontal;
+    private double stepSlowdown;
 
     /**
      * Private constructor used by the Builder pattern.
@@ -76,7 +125,18 @@ public class PathTask extends BukkitRunnable
         this.entityHeight = npc.entity.getBoundingBox().getYSize() * scale;
         this.entityWidth = npc.entity.getBoundingBox().getXSize() * scale;
         this.path = builder.path;
-        this.pathPoints = new ArrayList<>(builder.path.asLocations());
+
+        this.pointCount = path.size();
+        this.pointX = new double[pointCount + 1];
+        this.pointY = new double[pointCount + 1];
+        this.pointZ = new double[pointCount + 1];
+        for(int i = 0; i < pointCount; i++)
+        {
+            pointX[i] = path.getX(i);
+            pointY[i] = path.getY(i);
+            pointZ[i] = path.getZ(i);
+        }
+
         if(builder.viewers != null)
         {
             for(Player viewer : builder.viewers)
@@ -92,15 +152,31 @@ public class PathTask extends BukkitRunnable
         this.speed = builder.speed;
         this.updateRealLocation = builder.updateRealLocation;
 
-        this.currentPos = npc.getLocation().toVector();
-        this.previousPitch = npc.getLocation().getPitch();
-        this.previousYaw = npc.getLocation().getYaw();
-        this.previousMoveDir = npc.getLocation().getDirection();
+        Location location = npc.getLocation();
+        this.posX = location.getX();
+        this.posY = location.getY();
+        this.posZ = location.getZ();
+        this.previousPitch = location.getPitch();
+        this.previousYaw = location.getYaw();
+        Vector direction = location.getDirection();
+        this.previousDirX = direction.getX();
+        this.previousDirZ = direction.getZ();
         this.serverEntity = npc.entity;
+
+        this.profile = path.getWorld() == null ? null : new PathProfile(path.getWorld(), path, location, entityHeight, entityWidth, speed);
+        if(profile != null)
+            profile.register();
+
+        this.chunkLookahead = path.getWorld() != null && NpcApi.config.loadChunksOnPath() ? new ChunkLookahead(path.getWorld()) : null;
+
+        if(path.getWorld() != null)
+            registerRoute(path.getWorld());
     }
 
     /**
      * The main execution method called by the Bukkit scheduler. Handles the NPC's movement along the path, including physics and door interactions.
+     * <p>
+     * The movement state is kept in primitive fields and updated in place, so a tick of steady walking does not allocate besides the packets themselves.
      */
     @Override
     public void run()
@@ -108,162 +184,191 @@ public class PathTask extends BukkitRunnable
         World world = npc.getLocation().getWorld();
         if(world == null) return;
 
-        int currentChunkX = currentPos.getBlockX() >> 4;
-        int currentChunkZ = currentPos.getBlockZ() >> 4;
+        if(chunkLookahead != null)
+            chunkLookahead.update(posX, posZ, pointX, pointZ, index, pointCount);
+
+        int currentChunkX = Location.locToBlock(posX) >> 4;
+        int currentChunkZ = Location.locToBlock(posZ) >> 4;
 
         if (!world.isChunkLoaded(currentChunkX, currentChunkZ))
         {
-            handleUnloadedChunk(world, currentChunkX, currentChunkZ);
+            handleUnloadedChunk(currentChunkX, currentChunkZ);
+            return;
+        }
+
+        if(repair != null && repair.isDone() && !finishRepair(world))
+        {
+            cancel();
             return;
         }
 
-        if (index < pathPoints.size())
+        if(repair == null && !changedRouteBlocks.isEmpty())
+            repairRoute(world);
+
+        if(repair != null && index >= repairFrom)
+            return;
+
+        if (index < pointCount)
         {
-            Location next = pathPoints.get(index);
-            int nextChunkX = next.getBlockX() >> 4;
-            int nextChunkZ = next.getBlockZ() >> 4;
+            int nextChunkX = Location.locToBlock(pointX[index]) >> 4;
+            int nextChunkZ = Location.locToBlock(pointZ[index]) >> 4;
 
             if (!world.isChunkLoaded(nextChunkX, nextChunkZ))
             {
-                handleUnloadedChunk(world, nextChunkX, nextChunkZ);
+                handleUnloadedChunk(nextChunkX, nextChunkZ);
                 return;
             }
         }
 
-        isWaitingForChunkLoad = false;
-
         if(autoManageWalkingViewers && viewerRefreshTicks++ >= 10)
         {
             viewerRefreshTicks = 0;
             npc.refreshWalkingViewers();
         }
 
-        if(index >= pathPoints.size())
+        if(index >= pointCount)
         {
             if(finishPath())
                 return;
         }
 
-        Vector target = pathPoints.get(index).toVector();
-        Vector toTarget = target.clone().subtract(currentPos);
+        double targetX = pointX[index];
+        double targetY = pointY[index];
+        double targetZ = pointZ[index];
+        double toX = targetX - posX;
+        double toY = targetY - posY;
+        double toZ = targetZ - posZ;
 
-        if(hasReachedWaypoint(toTarget))
+        if(hasReachedWaypoint(toX, toY, toZ))
         {
             index++;
             return;
         }
 
-        int chunkX = currentPos.getBlockX() >> 4;
-        int chunkZ = currentPos.getBlockZ() >> 4;
+        int chunkX = Location.locToBlock(posX) >> 4;
+        int chunkZ = Location.locToBlock(posZ) >> 4;
         boolean isChunkLoaded = world.isChunkLoaded(chunkX, chunkZ);
 
         if(isChunkLoaded)
         {
-            processDoors();
+            processDoors(world);
             cleanupDoors();
 
-            Vector movement = calculateHorizontalMovement(toTarget, target);
+            calculateHorizontalMovement(toX, toZ, targetX, targetY, targetZ);
 
-            if(movement.lengthSquared() < 1e-6 && index < pathPoints.size() && currentPos.equals(target))
+            if(moveX * moveX + moveZ * moveZ < 1e-6 && index < pointCount && Math.abs(posX - targetX) < 1e-6 && Math.abs(posY - targetY) < 1e-6 &&
+                    Math.abs(posZ - targetZ) < 1e-6)
                 return;
 
-            PhysicsResult physics = applyPhysics(movement, toTarget);
+            applyPhysics(world, toY);
 
-            if(physics.skipHorizontal)
+            if(stepSkipHorizontal)
             {
-                movement.setX(0);
-                movement.setZ(0);
+                moveX = 0;
+                moveZ = 0;
+            }
+            else if(stepSlowdown < 1.0)
+            {
+                moveX *= stepSlowdown;
+                moveZ *= stepSlowdown;
             }
-            else if(physics.horizontalSlowdown < 1.0)
-                movement.multiply(physics.horizontalSlowdown);
 
-            movement.setY(physics.yChange);
+            moveY = stepYChange;
 
-            currentPos.add(movement);
+            posX += moveX;
+            posY += moveY;
+            posZ += moveZ;
 
-            float yaw, pitch;
             if(withRotation)
-            {
-                float[] rotation = calculateSmoothRotation();
-                yaw = rotation[0];
-                pitch = rotation[1];
-            }
+                calculateSmoothRotation();
             else
             {
-                yaw = npc.getLocation().getYaw();
-                pitch = npc.getLocation().getPitch();
+                previousYaw = npc.getLocation().getYaw();
+                previousPitch = npc.getLocation().getPitch();
             }
 
-            sendMovePackets(movement, yaw, pitch, physics.isGrounded);
+            sendMovePackets(world, stepGrounded);
         }
         else
         {
-            double distanceToTarget = toTarget.length();
+            double distanceToTarget = Math.sqrt(toX * toX + toY * toY + toZ * toZ);
             double moveDist = Math.min(speed, distanceToTarget);
 
             if(distanceToTarget > 1e-6)
             {
-                Vector movement = toTarget.normalize().multiply(moveDist);
-                currentPos.add(movement);
+                double factor = moveDist / distanceToTarget;
+                posX += toX * factor;
+                posY += toY * factor;
+                posZ += toZ * factor;
             }
             else
-                currentPos = target.clone();
-
-            if(withRotation)
             {
-                float[] rotation = calculateSmoothRotation();
-                previousYaw = rotation[0];
-                previousPitch = rotation[1];
+                posX = targetX;
+                posY = targetY;
+                posZ = targetZ;
             }
 
+            if(withRotation)
+                calculateSmoothRotation();
+
             if(updateRealLocation)
-                npc.setLocation(currentPos.toLocation(world));
+                npc.setLocation(new Location(world, posX, posY, posZ));
         }
     }
 
     /**
-     * Handles the logic when an NPC encounters an unloaded chunk.
+     * Handles the logic when an NPC encounters an unloaded chunk. The NPC waits until the chunk is loaded, which is requested from the chunk look-ahead if
+     * chunks are loaded on the path.
      */
-    private void handleUnloadedChunk(World world, int chunkX, int chunkZ)
+    private void handleUnloadedChunk(int chunkX, int chunkZ)
     {
-        if (NpcApi.config.loadChunksOnPath() && !isWaitingForChunkLoad)
-        {
-            isWaitingForChunkLoad = true;
-            world.getChunkAt(chunkX, chunkZ);
-            isWaitingForChunkLoad = false;
-        }
+        if(chunkLookahead != null)
+            chunkLookahead.request(chunkX, chunkZ);
     }
 
     /**
      * Processes door interactions along the NPC's path. Opens doors that are in the NPC's path and within interaction range.
+     *
+     * @param world The world the NPC walks in
      */
-    private void processDoors()
+    private void processDoors(@NotNull World world)
     {
-        World world = npc.getLocation().getWorld();
-        if(world == null)
-            return;
+        int blockX = Location.locToBlock(posX);
+        int blockY = Location.locToBlock(posY);
+        int blockZ = Location.locToBlock(posZ);
+        checkAndOpenDoor(world, blockX, blockY, blockZ);
+        checkAndOpenDoor(world, blockX, blockY + 1, blockZ);
 
-        checkAndOpenDoor(currentPos.toLocation(world).getBlock());
-        checkAndOpenDoor(currentPos.toLocation(world).getBlock().getRelative(BlockFace.UP));
-
-        if(index < pathPoints.size())
+        if(index < pointCount)
         {
-            Location next = pathPoints.get(index);
-            if(currentPos.distanceSquared(next.toVector()) < 4.0)
+            double dx = pointX[index] - posX;
+            double dy = pointY[index] - posY;
+            double dz = pointZ[index] - posZ;
+            if(dx * dx + dy * dy + dz * dz < 4.0)
             {
-                checkAndOpenDoor(next.getBlock());
-                checkAndOpenDoor(next.getBlock().getRelative(BlockFace.UP));
+                int nextX = Location.locToBlock(pointX[index]);
+                int nextY = Location.locToBlock(pointY[index]);
+                int nextZ = Location.locToBlock(pointZ[index]);
+                checkAndOpenDoor(world, nextX, nextY, nextZ);
+                checkAndOpenDoor(world, nextX, nextY + 1, nextZ);
             }
         }
     }
 
     /**
-     * Checks if a block is a door and opens it if it's closed.
+     * Checks if a block is a door and opens it if it's closed. Blocks the path profile knows not to be openable are skipped without querying the world.
      *
-     * @param block The block to check for door interaction
+     * @param world The world the NPC walks in
+     * @param x     The x coordinate of the block
+     * @param y     The y coordinate of the block
+     * @param z     The z coordinate of the block
      */
-    private void checkAndOpenDoor(@NotNull Block block)
+    private void checkAndOpenDoor(@NotNull World world, int x, int y, int z)
     {
+        if(profile != null && !profile.mayBeOpenable(x, y, z))
+            return;
+
+        Block block = world.getBlockAt(x, y, z);
         if(block.getBlockData() instanceof Openable openable)
         {
             if(!openable.isOpen())
@@ -272,7 +377,8 @@ public class PathTask extends BukkitRunnable
                 block.setBlockData(openable);
                 block.getWorld().playSound(block.getLocation(), org.bukkit.Sound.BLOCK_WOODEN_DOOR_OPEN, 1f, 1f);
 
-                openedDoors.add(block);
+                if(!openedDoors.contains(block))
+                    openedDoors.add(block);
             }
         }
     }
@@ -282,20 +388,16 @@ public class PathTask extends BukkitRunnable
      */
     private void cleanupDoors()
     {
-        if(openedDoors.isEmpty())
-            return;
-
-        Iterator<Block> iterator = openedDoors.iterator();
-        while(iterator.hasNext())
+        for(int i = openedDoors.size() - 1; i >= 0; i--)
         {
-            Block door = iterator.next();
+            Block door = openedDoors.get(i);
             if(!(door.getBlockData() instanceof Openable openable))
             {
-                iterator.remove();
+                openedDoors.remove(i);
                 continue;
             }
 
-            double distSq = Math.pow(door.getX() + 0.5 - currentPos.getX(), 2) + Math.pow(door.getZ() + 0.5 - currentPos.getZ(), 2);
+            double distSq = Math.pow(door.getX() + 0.5 - posX, 2) + Math.pow(door.getZ() + 0.5 - posZ, 2);
 
             if(distSq > 1.69)
             {
@@ -305,7 +407,7 @@ public class PathTask extends BukkitRunnable
                     door.setBlockData(openable);
                     door.getWorld().playSound(door.getLocation(), org.bukkit.Sound.BLOCK_WOODEN_DOOR_CLOSE, 1f, 1f);
                 }
-                iterator.remove();
+                openedDoors.remove(i);
             }
         }
     }
@@ -327,6 +429,208 @@ public class PathTask extends BukkitRunnable
         openedDoors.clear();
     }
 
+    /**
+     * Stops the path profile and the route from receiving block changes and removes the chunk tickets once the task is done.
+     */
+    private void releaseResources()
+    {
+        if(repair != null)
+        {
+            repair.cancel(false);
+            repair = null;
+        }
+        if(profile != null)
+            profile.release();
+        if(chunkLookahead != null)
+            chunkLookahead.release();
+        if(path.getWorld() != null)
+            PathRouteIndex.unregister(this, path.getWorld(), routeBlocks.keySet());
+        routeBlocks.clear();
+        changedRouteBlocks.clear();
+    }
+
+    /**
+     * Queues a change of a block on the route. Called by the {@link PathRouteIndex}, the route is checked on the next tick once the change was applied.
+     *
+     * @param key the packed position of the block
+     */
+    void routeBlockChanged(long key)
+    {
+        if(!finished)
+            changedRouteBlocks.add(key);
+    }
+
+    /**
+     * Registers the blocks of the remaining route in the {@link PathRouteIndex}. Every segment is sampled and the floor block below and the blocks the body
+     * moves through are recorded, as long as they are currently solid or passable respectively. Blocks in unloaded chunks are skipped.
+     *
+     * @param world The world the NPC walks in
+     */
+    private void registerRoute(@NotNull World world)
+    {
+        PathRouteIndex.unregister(this, world, routeBlocks.keySet());
+        routeBlocks.clear();
+
+        for(int segment = index; segment < pointCount; segment++)
+        {
+            double fromX = segment == 0 ? pointX[0] : pointX[segment - 1];
+            double fromY = segment == 0 ? pointY[0] : pointY[segment - 1];
+            double fromZ = segment == 0 ? pointZ[0] : pointZ[segment - 1];
+            double dx = pointX[segment] - fromX;
+            double dy = pointY[segment] - fromY;
+            double dz = pointZ[segment] - fromZ;
+            int steps = Math.max(1, (int) Math.ceil(Math.sqrt(dx * dx + dz * dz) / ROUTE_SAMPLE_STEP));
+
+            for(int i = 0; i <= steps; i++)
+            {
+                double t = i / (double) steps;
+                double x = fromX + dx * t;
+                double y = fromY + dy * t;
+                double z = fromZ + dz * t;
+                int bx = Location.locToBlock(x);
+                int bz = Location.locToBlock(z);
+                if(!world.isChunkLoaded(bx >> 4, bz >> 4))
+                    continue;
+
+                int floorY = Location.locToBlock(y - 0.01);
+                if(isRouteBlockSolid(world, bx, floorY, bz))
+                    routeBlocks.putIfAbsent(PathRouteIndex.pack(bx, floorY, bz), segment << 1);
+
+                for(int by = Location.locToBlock(y); by <= Location.locToBlock(y + entityHeight - 0.01); by++)
+                {
+                    if(!isRouteBlockSolid(world, bx, by, bz))
+                        routeBlocks.putIfAbsent(PathRouteIndex.pack(bx, by, bz), segment << 1 | 1);
+                }
+            }
+        }
+
+        PathRouteIndex.register(this, world, routeBlocks.keySet());
+    }
+
+    /**
+     * Checks whether a block on the route has a collision shape. Openable blocks count as passable, since the NPC opens them on its way.
+     */
+    private boolean isRouteBlockSolid(@NotNull World world, int x, int y, int z)
+    {
+        Block block = world.getBlockAt(x, y, z);
+        return !(block.getBlockData() instanceof Openable) && !block.getCollisionShape().getBoundingBoxes().isEmpty();
+    }
+
+    /**
+     * Checks the queued block changes and starts repairing the part of the route they broke. A floor block is broken once it has no collision shape anymore
+     * and a body block once it has one. Changes on segments that were already walked are ignored.
+     * <p>
+     * The broken segments are replaced by a short search from the node before them, or from the current position if the NPC walks on one of them, to the
+     * node after them. The search runs on the {@link TimeSlicedPathScheduler} with the settings of the request the path was calculated for, and the NPC waits
+     * in front of the broken segments until it is done. The rest of the route is kept.
+     *
+     * @param world The world the NPC walks in
+     */
+    private void repairRoute(@NotNull World world)
+    {
+        int first = Integer.MAX_VALUE;
+        int last = -1;
+        for(long key : changedRouteBlocks)
+        {
+            Integer info = routeBlocks.get(key);
+            if(info == null || info >> 1 < index)
+                continue;
+
+            boolean solid = isRouteBlockSolid(world, PathRouteIndex.unpackX(key), PathRouteIndex.unpackY(key), PathRouteIndex.unpackZ(key));
+            if(solid == ((info & 1) == 0))
+                continue;
+
+            first = Math.min(first, info >> 1);
+            last = Math.max(last, info >> 1);
+        }
+        changedRouteBlocks.clear();
+
+        if(last < 0)
+            return;
+
+        boolean fromCurrent = first == index;
+        repairStart = fromCurrent ? new Location(world, posX, posY, posZ) : new Location(world, pointX[first - 1], pointY[first - 1], pointZ[first - 1]);
+        repairFrom = fromCurrent ? index : first;
+        repairTo = Math.min(last + 1, pointCount - 1);
+        Location target = new Location(world, pointX[repairTo], pointY[repairTo], pointZ[repairTo]);
+
+        PathRequest original = path.getRequest();
+        PathRequest.Builder request = new PathRequest.Builder(List.of(repairStart, target))
+                .maxIterations(REPAIR_ITERATIONS)
+                .caller(getClass().getSimpleName());
+        if(original != null)
+            request.allowDiagonal(original.isAllowDiagonal()).entitySize(original.getEntityHeight(), original.getEntityWidth()).strategy(original.getStrategy());
+        else
+            request.entitySize(entityHeight, entityWidth);
+
+        repair = TimeSlicedPathScheduler.submit(request.build());
+    }
+
+    /**
+     * Splices the result of a finished repair into the route and reads the blocks along it into the path profile.
+     *
+     * @param world The world the NPC walks in
+     * @return false if no path around the broken segments was found, true otherwise
+     */
+    private boolean finishRepair(@NotNull World world)
+    {
+        Path result;
+        try
+        {
+            result = repair.join();
+        }
+        catch(CompletionException | CancellationException e)
+        {
+            result = null;
+        }
+        repair = null;
+
+        if(result == null || result.size() < 2)
+            return false;
+
+        List<Location> nodes = result.asLocations();
+        spliceRoute(repairFrom, repairTo, nodes);
+        if(profile != null)
+            profile.extend(repairStart, nodes);
+        registerRoute(world);
+        return true;
+    }
+
+    /**
+     * Replaces the nodes from {@code from} to {@code to} with the given nodes, leaving out the first one, which is either the current position or the node
+     * before {@code from}.
+     */
+    private void spliceRoute(int from, int to, @NotNull List<Location> nodes)
+    {
+        int inserted = nodes.size() - 1;
+        int tail = pointCount - to - 1;
+        int count = from + inserted + tail;
+
+        double[] newX = new double[count + 1];
+        double[] newY = new double[count + 1];
+        double[] newZ = new double[count + 1];
+        System.arraycopy(pointX, 0, newX, 0, from);
+        System.arraycopy(pointY, 0, newY, 0, from);
+        System.arraycopy(pointZ, 0, newZ, 0, from);
+
+        for(int i = 0; i < inserted; i++)
+        {
+            Location node = nodes.get(i + 1);
+            newX[from + i] = node.getX();
+            newY[from + i] = node.getY();
+            newZ[from + i] = node.getZ();
+        }
+
+        System.arraycopy(pointX, to + 1, newX, from + inserted, tail);
+        System.arraycopy(pointY, to + 1, newY, from + inserted, tail);
+        System.arraycopy(pointZ, to + 1, newZ, from + inserted, tail);
+
+        pointX = newX;
+        pointY = newY;
+        pointZ = newZ;
+        pointCount = count;
+    }
+
     /**
      * Handles the completion of the path. Performs final cleanup and calls the completion callback.
      *
@@ -338,17 +642,23 @@ public class PathTask extends BukkitRunnable
 
         if(last != null)
         {
-            if(currentPos.distanceSquared(last.toVector()) > 0.04)
+            double dx = last.getX() - posX;
+            double dy = last.getY() - posY;
+            double dz = last.getZ() - posZ;
+            if(dx * dx + dy * dy + dz * dz > 0.04)
             {
-                pathPoints.add(last);
+                appendPoint(last.getX(), last.getY(), last.getZ());
                 return false;
             }
 
             smoothEndRotation(last);
         }
+        else
+            sendPositionToAllViewers();
 
         finished = true;
         forceCloseAllDoors();
+        releaseResources();
 
         if(callback != null)
             callback.accept(WalkingResult.SUCCESS);
@@ -358,7 +668,9 @@ public class PathTask extends BukkitRunnable
 
         if(event.changeRealLocation())
         {
-            Location loc = path.getWaypoints().isEmpty() ? pathPoints.getLast() : path.getWaypoints().getLast();
+            Location loc = path.getWaypoints().isEmpty() ?
+                    new Location(path.getWorld(), pointX[pointCount - 1], pointY[pointCount - 1], pointZ[pointCount - 1]) :
+                    path.getWaypoints().getLast();
             npc.changeRealLocation(loc, getViewers());
         }
 
@@ -367,6 +679,25 @@ public class PathTask extends BukkitRunnable
         return true;
     }
 
+    /**
+     * Appends a node to the end of the path, growing the coordinate arrays if needed.
+     */
+    private void appendPoint(double x, double y, double z)
+    {
+        if(pointCount == pointX.length)
+        {
+            int capacity = pointCount + 4;
+            pointX = Arrays.copyOf(pointX, capacity);
+            pointY = Arrays.copyOf(pointY, capacity);
+            pointZ = Arrays.copyOf(pointZ, capacity);
+        }
+
+        pointX[pointCount] = x;
+        pointY[pointCount] = y;
+        pointZ[pointCount] = z;
+        pointCount++;
+    }
+
     /**
      * Smoothly rotates the NPC to face the final direction when reaching the end of the path.
      *
@@ -391,108 +722,104 @@ public class PathTask extends BukkitRunnable
     /**
      * Checks if the NPC has reached the current waypoint.
      *
-     * @param toTarget The vector to the target waypoint
+     * @param toX The x distance to the target waypoint
+     * @param toY The y distance to the target waypoint
+     * @param toZ The z distance to the target waypoint
      * @return true if the waypoint has been reached, false otherwise
      */
-    private boolean hasReachedWaypoint(@NotNull Vector toTarget)
+    private boolean hasReachedWaypoint(double toX, double toY, double toZ)
     {
-        double horizontalDistSq = (toTarget.getX() * toTarget.getX()) + (toTarget.getZ() * toTarget.getZ());
-        double verticalDiff = Math.abs(toTarget.getY());
+        double horizontalDistSq = (toX * toX) + (toZ * toZ);
+        double verticalDiff = Math.abs(toY);
         return horizontalDistSq <= 0.04 && verticalDiff < 0.5;
     }
 
     /**
-     * Calculates the horizontal movement vector for the NPC.
+     * Calculates the horizontal movement of the NPC into {@link #moveX} and {@link #moveZ}. If the target waypoint is within reach, the NPC is placed on it
+     * instead and the movement is zero.
      *
-     * @param toTarget    The vector to the target waypoint
-     * @param targetPoint The absolute target point
-     * @return A vector representing the horizontal movement
+     * @param toX     The x distance to the target waypoint
+     * @param toZ     The z distance to the target waypoint
+     * @param targetX The absolute x coordinate of the target waypoint
+     * @param targetY The absolute y coordinate of the target waypoint
+     * @param targetZ The absolute z coordinate of the target waypoint
      */
-    private @NotNull Vector calculateHorizontalMovement(@NotNull Vector toTarget, @NotNull Vector targetPoint)
+    private void calculateHorizontalMovement(double toX, double toZ, double targetX, double targetY, double targetZ)
     {
-        Vector horizontal = new Vector(toTarget.getX(), 0, toTarget.getZ());
-        double distSq = horizontal.lengthSquared();
+        moveX = 0;
+        moveY = 0;
+        moveZ = 0;
+
+        double distSq = toX * toX + toZ * toZ;
         if(distSq < 1e-6)
-            return new Vector(0, 0, 0);
+            return;
 
         double dist = Math.sqrt(distSq);
         double moveDistance = Math.min(speed, dist);
-        Vector moveStep = horizontal.clone().normalize().multiply(moveDistance);
 
         if(Math.abs(moveDistance - dist) < 1e-6)
         {
-            this.currentPos = targetPoint.clone();
+            posX = targetX;
+            posY = targetY;
+            posZ = targetZ;
             index++;
-            return new Vector(0, 0, 0);
+            return;
         }
 
-        return moveStep;
+        moveX = toX / dist * moveDistance;
+        moveZ = toZ / dist * moveDistance;
     }
 
     /**
-     * Applies physics (gravity, jumping, collision) to the NPC's movement.
+     * Applies physics (gravity, jumping, collision) to the NPC's movement and stores the outcome in the step fields.
      *
-     * @param movement The current movement vector
-     * @param toTarget The vector to the target waypoint
-     * @return A PhysicsResult containing the vertical movement and ground state
+     * @param world The world the NPC walks in
+     * @param toY   The y distance to the target waypoint
      */
-    private @NotNull PhysicsResult applyPhysics(Vector movement, Vector toTarget)
+    private void applyPhysics(@NotNull World world, double toY)
     {
-        World world = npc.getLocation().getWorld();
-        if(world == null)
-            return new PhysicsResult(0, false, false, 1.0);
-
-        double groundY = getGroundY(world, currentPos);
-        boolean onGround = currentPos.getY() <= groundY + 1e-5;
+        double groundY = getGroundY(world, posX, posY, posZ);
+        boolean onGround = posY <= groundY + 1e-5;
         double yChange = 0;
+        double nextX = posX + moveX;
+        double nextZ = posZ + moveZ;
 
         if(onGround)
         {
-            if(toTarget.getY() < 0 && Math.abs(toTarget.getY()) <= stepHeight)
+            if(toY < 0 && Math.abs(toY) <= stepHeight)
             {
-                Vector testPos = currentPos.clone().add(movement);
-                testPos.setY(currentPos.getY() + toTarget.getY());
-                if(isPositionValid(world, testPos))
+                if(isPositionValid(world, nextX, posY + toY, nextZ))
                 {
-                    yChange = toTarget.getY();
                     verticalVelocity = 0;
-                    double slowdown = 0.5;
-                    return new PhysicsResult(yChange, true, false, slowdown);
+                    setStep(toY, true, false, 0.5);
+                    return;
                 }
             }
 
-            if(toTarget.getY() > 0 && toTarget.getY() <= stepHeight && movement.lengthSquared() > 1e-6)
+            if(toY > 0 && toY <= stepHeight && moveX * moveX + moveZ * moveZ > 1e-6)
             {
-                Vector testPos = currentPos.clone().add(movement);
-                testPos.setY(currentPos.getY() + Math.min(toTarget.getY(), stepHeight));
-                if(!isPositionValid(world, testPos))
-                {
-                    yChange = Math.min(toTarget.getY(), stepHeight);
-                    verticalVelocity = 0;
-                    return new PhysicsResult(yChange, true, true, 1.0);
-                }
-                yChange = Math.min(toTarget.getY(), stepHeight);
+                yChange = Math.min(toY, stepHeight);
                 verticalVelocity = 0;
-                return new PhysicsResult(yChange, true, false, 1.0);
+                setStep(yChange, true, !isPositionValid(world, nextX, posY + yChange, nextZ), 1.0);
+                return;
             }
-            else if(toTarget.getY() > 0.5)
+            else if(toY > 0.5)
             {
-                Vector testPos = currentPos.clone().add(movement);
-                testPos.setY(currentPos.getY() + jumpVelocity);
-                if(!isPositionValid(world, testPos))
+                verticalVelocity = jumpVelocity;
+                if(!isPositionValid(world, nextX, posY + jumpVelocity, nextZ))
                 {
-                    verticalVelocity = jumpVelocity;
-                    return new PhysicsResult(jumpVelocity, false, true, 1.0);
+                    setStep(jumpVelocity, false, true, 1.0);
+                    return;
                 }
-                verticalVelocity = jumpVelocity;
                 onGround = false;
             }
             else
             {
                 verticalVelocity = 0;
-                if(Math.abs(currentPos.getY() - groundY) > 1e-6)
-                    currentPos.setY(groundY);
-                return new PhysicsResult(0, true, false, 1.0);
+                if(Math.abs(posY - groundY) > 1e-6)
+                    posY = groundY;
+                setStep(0, true, false, 1.0);
+                return;
             }
         }
 
@@ -503,53 +830,79 @@ public class PathTask extends BukkitRunnable
                 verticalVelocity = terminalVelocity;
             yChange = verticalVelocity;
 
-            Vector testPos = currentPos.clone().add(movement);
-            testPos.setY(currentPos.getY() + yChange);
-            if(!isPositionValid(world, testPos) && currentPos.getY() + yChange <= groundY + 0.1)
+            if(!isPositionValid(world, nextX, posY + yChange, nextZ) && posY + yChange <= groundY + 0.1)
             {
-                yChange = groundY - currentPos.getY();
+                yChange = groundY - posY;
                 verticalVelocity = 0;
                 onGround = true;
             }
-            else if(currentPos.getY() + yChange <= groundY)
+            else if(posY + yChange <= groundY)
             {
-                yChange = groundY - currentPos.getY();
+                yChange = groundY - posY;
                 verticalVelocity = 0;
                 onGround = true;
             }
         }
 
-        return new PhysicsResult(yChange, onGround, false, 1.0);
+        setStep(yChange, onGround, false, 1.0);
     }
 
     /**
-     * Checks if a position is valid (not inside a solid block).
+     * Stores the outcome of a physics step.
+     *
+     * @param yChange            The vertical movement to apply
+     * @param grounded           Whether the NPC is on the ground
+     * @param skipHorizontal     Whether to skip horizontal movement this tick
+     * @param horizontalSlowdown Factor to slow down horizontal movement (1.0 = normal, <1.0 = slower)
+     */
+    private void setStep(double yChange, boolean grounded, boolean skipHorizontal, double horizontalSlowdown)
+    {
+        stepYChange = yChange;
+        stepGrounded = grounded;
+        stepSkipHorizontal = skipHorizontal;
+        stepSlowdown = horizontalSlowdown;
+    }
+
+    /**
+     * Checks if a position is valid (not inside a solid block), reading the path profile if it contains the needed blocks.
      *
      * @param world The world to check in
-     * @param pos   The position to check
+     * @param x     The x coordinate of the position
+     * @param y     The y coordinate of the position
+     * @param z     The z coordinate of the position
      * @return true if the position is valid, false otherwise
      */
-    private boolean isPositionValid(@NotNull World world, @NotNull Vector pos)
+    private boolean isPositionValid(@NotNull World world, double x, double y, double z)
     {
-        return AStarPathfinder.isPositionValid(world, pos.getX(), pos.getY(), pos.getZ(), entityHeight, entityWidth);
+        int known = profile == null ? PathProfile.UNKNOWN : profile.isPositionValid(x, y, z);
+        if(known != PathProfile.UNKNOWN)
+            return known == PathProfile.VALID;
+
+        return AStarPathfinder.isPositionValid(world, x, y, z, entityHeight, entityWidth);
     }
 
     /**
-     * Calculates the feet Y-coordinate of the ground at a given position.
+     * Calculates the feet Y-coordinate of the ground at a given position, reading the path profile if it contains the needed blocks.
      *
      * @param world The world to check in
-     * @param pos   The position to check
+     * @param x     The x coordinate of the position
+     * @param y     The y coordinate of the position
+     * @param z     The z coordinate of the position
      * @return The Y-coordinate where the NPC's feet should be
      */
-    private double getGroundY(@NotNull World world, @NotNull Vector pos)
+    private double getGroundY(@NotNull World world, double x, double y, double z)
     {
-        int bx = pos.getBlockX();
-        int bz = pos.getBlockZ();
-        int startY = pos.getBlockY();
+        double groundY = profile == null ? Double.NaN : profile.groundY(x, y, z);
+        if(!Double.isNaN(groundY))
+            return groundY;
+
+        int bx = Location.locToBlock(x);
+        int bz = Location.locToBlock(z);
+        int startY = Location.locToBlock(y);
 
-        for(int y = startY; y >= startY - 4; y--)
+        for(int by = startY; by >= startY - 4; by--)
         {
-            Block block = world.getBlockAt(bx, y, bz);
+            Block block = world.getBlockAt(bx, by, bz);
 
             if(block.getBlockData() instanceof Openable || block.isLiquid())
                 continue;
@@ -558,8 +911,8 @@ public class PathTask extends BukkitRunnable
             if(boxes.isEmpty())
                 continue;
 
-            double lx = pos.getX() - bx;
-            double lz = pos.getZ() - bz;
+            double lx = x - bx;
+            double lz = z - bz;
 
             double bestTop = -1.0;
 
@@ -575,48 +928,53 @@ public class PathTask extends BukkitRunnable
                     bestTop = Math.max(bestTop, bb.getMaxY());
             }
 
-            return y + bestTop;
+            return by + bestTop;
         }
 
         return world.getHighestBlockYAt(bx, bz);
     }
 
     /**
-     * Calculates smooth rotation for the NPC's head and body.
-     *
-     * @return An array containing [yaw, pitch] for the NPC's rotation
+     * Calculates smooth rotation for the NPC's head and body and stores it in {@link #previousYaw} and {@link #previousPitch}.
      */
-    private float @NotNull [] calculateSmoothRotation()
+    private void calculateSmoothRotation()
     {
-        Vector lookDir;
-        if(index + 1 < pathPoints.size())
+        double lookX;
+        double lookZ;
+        if(index + 1 < pointCount)
         {
-            Vector p1 = pathPoints.get(index).toVector();
-            Vector p2 = pathPoints.get(index + 1).toVector();
-            lookDir = p1.add(p2).multiply(0.5).subtract(currentPos);
+            lookX = (pointX[index] + pointX[index + 1]) * 0.5 - posX;
+            lookZ = (pointZ[index] + pointZ[index + 1]) * 0.5 - posZ;
         }
         else
-            lookDir = pathPoints.get(Math.min(index, pathPoints.size() - 1)).toVector().subtract(currentPos);
+        {
+            int last = Math.min(index, pointCount - 1);
+            lookX = pointX[last] - posX;
+            lookZ = pointZ[last] - posZ;
+        }
 
-        Vector horizontalLook = new Vector(lookDir.getX(), 0, lookDir.getZ());
-        if(horizontalLook.lengthSquared() < 1e-6)
-            horizontalLook.copy(previousMoveDir.clone());
+        if(lookX * lookX + lookZ * lookZ < 1e-6)
+        {
+            lookX = previousDirX;
+            lookZ = previousDirZ;
+        }
 
-        float targetYaw = (float) (Math.toDegrees(Math.atan2(horizontalLook.getZ(), horizontalLook.getX())) - 90);
+        float targetYaw = (float) (Math.toDegrees(Math.atan2(lookZ, lookX)) - 90);
         targetYaw = normalizeAngle(targetYaw);
 
         float diff = normalizeAngle(targetYaw - previousYaw);
         diff = Math.clamp(diff, -15f, 15f);
 
-        float yaw = previousYaw + diff;
-        previousYaw = yaw;
-        previousMoveDir.copy(horizontalLook);
-
-        Vector targetVec = pathPoints.get(Math.min(index + 1, pathPoints.size() - 1)).toVector().subtract(currentPos);
-        double hLen = Math.sqrt(targetVec.getX() * targetVec.getX() + targetVec.getZ() * targetVec.getZ());
-        float pitch = (float) (-Math.toDegrees(Math.atan2(targetVec.getY(), hLen))) / 1.5f;
+        previousYaw = previousYaw + diff;
+        previousDirX = lookX;
+        previousDirZ = lookZ;
 
-        return new float[]{yaw, pitch};
+        int target = Math.min(index + 1, pointCount - 1);
+        double targetX = pointX[target] - posX;
+        double targetY = pointY[target] - posY;
+        double targetZ = pointZ[target] - posZ;
+        double hLen = Math.sqrt(targetX * targetX + targetZ * targetZ);
+        previousPitch = (float) (-Math.toDegrees(Math.atan2(targetY, hLen))) / 1.5f;
     }
 
     /**
@@ -652,7 +1010,7 @@ public class PathTask extends BukkitRunnable
     public @NotNull Location getCurrentLocation()
     {
         World world = npc.getLocation().getWorld();
-        return currentPos.toLocation(world);
+        return new Location(world, posX, posY, posZ);
     }
 
     /**
@@ -669,6 +1027,7 @@ public class PathTask extends BukkitRunnable
         if(!viewerIds.add(player.getUniqueId()))
             return false;
 
+        viewersChanged = true;
         sendCurrentPosition(player);
         return true;
     }
@@ -691,20 +1050,47 @@ public class PathTask extends BukkitRunnable
      */
     public void removeViewer(@NotNull Player player)
     {
-        viewerIds.remove(player.getUniqueId());
+        if(viewerIds.remove(player.getUniqueId()))
+            viewersChanged = true;
     }
 
     /**
-     * Gets all online viewers currently attached to this path task.
+     * Gets all online viewers currently attached to this path task. The array is cached and only rebuilt once the viewers change or one of them goes
+     * offline.
      *
      * @return online viewers
      */
     private Player @NotNull [] getViewers()
     {
-        return viewerIds.stream()
-                .map(Bukkit::getPlayer)
-                .filter(Objects::nonNull)
-                .toArray(Player[]::new);
+        if(!viewersChanged)
+        {
+            for(Player viewer : viewers)
+            {
+                if(!viewer.isOnline())
+                {
+                    viewersChanged = true;
+                    break;
+                }
+            }
+        }
+
+        if(viewersChanged)
+        {
+            viewersChanged = false;
+            viewers = viewerIds.stream()
+                    .map(Bukkit::getPlayer)
+                    .filter(Objects::nonNull)
+                    .toArray(Player[]::new);
+
+            viewerLastUpdate = new int[viewers.length];
+            viewerLastHead = new int[viewers.length];
+            Arrays.fill(viewerLastUpdate, Integer.MIN_VALUE / 2);
+            Arrays.fill(viewerLastHead, Integer.MIN_VALUE);
+            headRecipients = new Player[viewers.length];
+            moveRecipients = new Player[viewers.length];
+        }
+
+        return viewers;
     }
 
     /**
@@ -720,7 +1106,7 @@ public class PathTask extends BukkitRunnable
 
         RotateHeadPacket head = new RotateHeadPacket(serverEntity, (byte) (previousYaw * 256 / 360));
 
-        Vector currentVec = new Vector(currentPos.getX(), currentPos.getY(), currentPos.getZ());
+        Vector currentVec = new Vector(posX, posY, posZ);
 
         TeleportEntityPacket teleport = new TeleportEntityPacket(serverEntity,
                 new TeleportEntityPacket.PositionMoveRotation(currentVec, new Vector(0, 0, 0), previousYaw, previousPitch), Set.of(), true);
@@ -729,29 +1115,109 @@ public class PathTask extends BukkitRunnable
     }
 
     /**
-     * Sends movement and rotation packets to update the NPC's position for viewers.
+     * Sends the NPC's current position and rotation to every viewer, regardless of their update interval. Used when the walk ends, as viewers farther away
+     * may not have received the last moves.
+     */
+    private void sendPositionToAllViewers()
+    {
+        if(serverEntity == null)
+            return;
+
+        RotateHeadPacket head = new RotateHeadPacket(serverEntity, (byte) (previousYaw * 256 / 360));
+        TeleportEntityPacket teleport = new TeleportEntityPacket(serverEntity,
+                new TeleportEntityPacket.PositionMoveRotation(new Vector(posX, posY, posZ), new Vector(0, 0, 0), previousYaw, previousPitch), Set.of(),
+                true);
+
+        npc.sendNpcMovePackets(teleport, head, getViewers());
+    }
+
+    /**
+     * Sends movement and rotation packets to update the NPC's position for viewers, using the current position, movement and rotation.
+     * <p>
+     * Viewers close to the NPC receive every update, viewers farther away only every few ticks as configured in {@link NpcConfig}, and the client
+     * interpolates in between. The head rotation is only sent to a viewer if its quantized angle changed since the last update of that viewer.
      *
-     * @param movement The movement vector
-     * @param yaw      The yaw rotation
-     * @param pitch    The pitch rotation
+     * @param world    The world the NPC walks in
      * @param onGround Whether the NPC is on the ground
      */
-    private void sendMovePackets(Vector movement, float yaw, float pitch, boolean onGround)
+    private void sendMovePackets(@NotNull World world, boolean onGround)
     {
+        if(updateRealLocation)
+            npc.setLocation(new Location(world, posX, posY, posZ));
+
         if(serverEntity == null)
             return;
 
-        previousYaw = yaw;
-        previousPitch = pitch;
+        movementTick++;
+        Player[] viewers = getViewers();
+        int headByte = (byte) (previousYaw * 256 / 360);
+        boolean sendHead = false;
+        boolean sendMove = false;
 
-        RotateHeadPacket head = new RotateHeadPacket(serverEntity, (byte) (yaw * 256 / 360));
-        TeleportEntityPacket teleport = new TeleportEntityPacket(serverEntity, new TeleportEntityPacket.PositionMoveRotation(currentPos, movement, yaw, pitch),
-                Set.of(), onGround);
+        for(int i = 0; i < viewers.length; i++)
+        {
+            headRecipients[i] = null;
+            moveRecipients[i] = null;
 
-        npc.sendNpcMovePackets(teleport, head, getViewers());
+            if(movementTick - viewerLastUpdate[i] < updateInterval(viewers[i], world))
+                continue;
 
-        if(updateRealLocation)
-            npc.setLocation(currentPos.toLocation(npc.getLocation().getWorld()));
+            viewerLastUpdate[i] = movementTick;
+            if(viewerLastHead[i] != headByte)
+            {
+                viewerLastHead[i] = headByte;
+                headRecipients[i] = viewers[i];
+                sendHead = true;
+            }
+            else
+            {
+                moveRecipients[i] = viewers[i];
+                sendMove = true;
+            }
+        }
+
+        if(!sendHead && !sendMove)
+            return;
+
+        positionBuffer.setX(posX).setY(posY).setZ(posZ);
+        movementBuffer.setX(moveX).setY(moveY).setZ(moveZ);
+
+        TeleportEntityPacket teleport = new TeleportEntityPacket(serverEntity,
+                new TeleportEntityPacket.PositionMoveRotation(positionBuffer, movementBuffer, previousYaw, previousPitch), Set.of(), onGround);
+
+        if(sendHead)
+            npc.sendNpcMovePackets(teleport, new RotateHeadPacket(serverEntity, (byte) headByte), headRecipients);
+        if(sendMove)
+            npc.sendNpcMovePackets(teleport, null, moveRecipients);
+    }
+
+    /**
+     * Gets the number of ticks between two movement updates for a viewer, based on the distance between the viewer and the NPC.
+     *
+     * @param viewer The viewer
+     * @param world  The world the NPC walks in
+     * @return The number of ticks
+     */
+    private int updateInterval(@NotNull Player viewer, @NotNull World world)
+    {
+        viewer.getLocation(viewerLocation);
+        if(!world.equals(viewerLocation.getWorld()))
+            return NpcApi.config.walkingFarRateInterval();
+
+        double dx = viewerLocation.getX() - posX;
+        double dy = viewerLocation.getY() - posY;
+        double dz = viewerLocation.getZ() - posZ;
+        double distanceSq = dx * dx + dy * dy + dz * dz;
+
+        double fullRate = NpcApi.config.walkingFullRateDistance();
+        if(distanceSq <= fullRate * fullRate)
+            return 1;
+
+        double reducedRate = NpcApi.config.walkingReducedRateDistance();
+        if(distanceSq <= reducedRate * reducedRate)
+            return NpcApi.config.walkingReducedRateInterval();
+
+        return NpcApi.config.walkingFarRateInterval();
     }
 
     /**
@@ -769,7 +1235,9 @@ public class PathTask extends BukkitRunnable
         }
 
         finished = true;
+        sendPositionToAllViewers();
         forceCloseAllDoors();
+        releaseResources();
         super.cancel();
 
         if(callback != null)
@@ -780,9 +1248,8 @@ public class PathTask extends BukkitRunnable
 
         if(event.changeRealLocation())
         {
-            World world = path.getWaypoints().isEmpty() ? pathPoints.getLast().getWorld() :
-                    path.getWaypoints().getLast().getWorld();
-            Location loc = new Location(world, currentPos.getX(), currentPos.getY(), currentPos.getZ());
+            World world = path.getWaypoints().isEmpty() ? path.getWorld() : path.getWaypoints().getLast().getWorld();
+            Location loc = new Location(world, posX, posY, posZ);
             npc.changeRealLocation(loc, getViewers());
         }
         npc.clearWalkingTask(this);
@@ -798,16 +1265,6 @@ public class PathTask extends BukkitRunnable
         return finished;
     }
 
-    /**
-     * A record representing the result of physics calculations.
-     *
-     * @param yChange            The vertical movement to apply
-     * @param isGrounded         Whether the NPC is on the ground
-     * @param skipHorizontal     Whether to skip horizontal movement this tick
-     * @param horizontalSlowdown Factor to slow down horizontal movement (1.0 = normal, <1.0 = slower)
-     */
-    private record PhysicsResult(double yChange, boolean isGrounded, boolean skipHorizontal, double horizontalSlowdown) {}
-
     // --- Builder Class ---
 
     /**
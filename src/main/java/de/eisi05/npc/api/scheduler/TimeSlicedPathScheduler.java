@@ -0,0 +1,220 @@
+package de.eisi05.npc.api.scheduler;
+
+import de.eisi05.npc.api.NpcApi;
+import de.eisi05.npc.api.pathfinding.AStarPathfinder;
+import de.eisi05.npc.api.pathfinding.Path;
+import de.eisi05.npc.api.pathfinding.PathRequest;
+import de.eisi05.npc.api.pathfinding.PathfindingUtils;
+import de.eisi05.npc.api.pathfinding.SearchStatistics;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs path searches on the main thread, spread over several ticks.
+ * <p>
+ * Every tick, a global budget of expanded nodes and nanoseconds is split evenly between all searches in progress, and budget left over by a search that
+ * finishes early is passed on to the searches after it. The searches take turns in being served first. This avoids reading the world off the main thread
+ * without freezing the tick on long searches.
+ */
+public class TimeSlicedPathScheduler
+{
+    private static final int MIN_NODES_PER_SEARCH = 16;
+    private static final List<Search> searches = new ArrayList<>();
+    private static BukkitTask task;
+    private static int rotation;
+
+    /**
+     * Queues a path search. Must be called on the main thread. The incremental pathfinder of the request is ignored.
+     *
+     * @param request the request to calculate
+     * @return a {@link CompletableFuture} that completes on the main thread with the calculated {@link Path}, or exceptionally if no path could be found.
+     *         Cancelling the future stops the search.
+     */
+    public static @NotNull CompletableFuture<Path> submit(@NotNull PathRequest request)
+    {
+        Search search = new Search(request);
+        searches.add(search);
+
+        if(task == null)
+            task = Bukkit.getScheduler().runTaskTimer(NpcApi.plugin, TimeSlicedPathScheduler::tick, 1, 1);
+
+        return search.future;
+    }
+
+    /**
+     * Cancels all searches in progress and stops the scheduler.
+     */
+    public static void stop()
+    {
+        if(task != null)
+        {
+            task.cancel();
+            task = null;
+        }
+
+        new ArrayList<>(searches).forEach(search -> search.future.cancel(false));
+        searches.clear();
+    }
+
+    /**
+     * Gets the number of searches in progress.
+     *
+     * @return the number of searches
+     */
+    public static int getActiveSearches()
+    {
+        return searches.size();
+    }
+
+    private static void tick()
+    {
+        searches.removeIf(search -> search.future.isDone());
+        if(searches.isEmpty())
+        {
+            task.cancel();
+            task = null;
+            return;
+        }
+
+        long tickStart = System.nanoTime();
+        long tickDeadline = tickStart + NpcApi.config.timeSlicedNanosPerTick();
+        int nodesLeft = NpcApi.config.timeSlicedNodesPerTick();
+
+        rotation = (rotation + 1) % searches.size();
+        List<Search> order = new ArrayList<>(searches.size());
+        order.addAll(searches.subList(rotation, searches.size()));
+        order.addAll(searches.subList(0, rotation));
+
+        Iterator<Search> iterator = order.iterator();
+        for(int remaining = order.size(); iterator.hasNext() && nodesLeft > 0; remaining--)
+        {
+            long now = System.nanoTime();
+            if(now >= tickDeadline)
+                break;
+
+            Search search = iterator.next();
+            int nodes = Math.max(MIN_NODES_PER_SEARCH, nodesLeft / remaining);
+            long deadline = now + (tickDeadline - now) / remaining;
+
+            nodesLeft -= search.step(nodes, deadline);
+        }
+
+        searches.removeIf(search -> search.future.isDone());
+    }
+
+    private static final class Search
+    {
+        private final PathRequest request;
+        private final CompletableFuture<Path> future = new CompletableFuture<>();
+        private final List<Location> nodes = new ArrayList<>();
+        private final AStarPathfinder pathfinder;
+        private int segment = -1;
+        private long segmentStart;
+
+        private Search(@NotNull PathRequest request)
+        {
+            this.request = request;
+            this.pathfinder = new AStarPathfinder(request.getMaxIterations(), request.isAllowDiagonal(), request.getEntityHeight(), request.getEntityWidth())
+                    .strategy(request.getStrategy())
+                    .cancelWhen(future::isDone);
+        }
+
+        /**
+         * Expands up to the given number of nodes of the current segment and starts the next segment once it is found.
+         *
+         * @return the number of expanded nodes
+         */
+        private int step(int nodeBudget, long deadlineNanos)
+        {
+            try
+            {
+                if(segment < 0 && !nextSegment())
+                    return 0;
+
+                int before = pathfinder.getExpandedNodes();
+                AStarPathfinder.SearchState state = pathfinder.step(nodeBudget, deadlineNanos);
+                int expanded = pathfinder.getExpandedNodes() - before;
+
+                if(state != AStarPathfinder.SearchState.RUNNING)
+                    record();
+
+                if(state == AStarPathfinder.SearchState.FAILED)
+                    fail(new PathfindingUtils.PathfindingException("Could not find path between waypoint " + segment + " and " + (segment + 1)));
+                else if(state == AStarPathfinder.SearchState.FOUND)
+                    completeSegment(pathfinder.getResult());
+
+                return expanded;
+            }
+            catch(PathfindingUtils.PathfindingException e)
+            {
+                fail(e);
+                return 0;
+            }
+        }
+
+        private void completeSegment(@NotNull List<Location> result) throws PathfindingUtils.PathfindingException
+        {
+            if(NpcApi.config.smoothPaths())
+                result = PathfindingUtils.smoothPath(result, request.getEntityHeight(), request.getEntityWidth());
+
+            if(!nodes.isEmpty() && !result.isEmpty())
+                result = result.subList(1, result.size());
+            nodes.addAll(result);
+
+            int segments = request.getWaypoints().size() - 1;
+            if(request.getProgressListener() != null)
+                request.getProgressListener().accept(segment + 1, segments);
+
+            if(segment + 1 >= segments)
+                future.complete(new Path(nodes, request.getWaypoints()).setRequest(request));
+            else
+                nextSegment();
+        }
+
+        private boolean nextSegment() throws PathfindingUtils.PathfindingException
+        {
+            segment++;
+            segmentStart = System.nanoTime();
+            List<Location> waypoints = request.getWaypoints();
+            boolean started;
+            try
+            {
+                started = pathfinder.begin(waypoints.get(segment), waypoints.get(segment + 1));
+            }
+            catch(PathfindingUtils.PathfindingException e)
+            {
+                record();
+                throw e;
+            }
+
+            if(!started)
+            {
+                record();
+                fail(new PathfindingUtils.PathfindingException("Could not find path between waypoint " + segment + " and " + (segment + 1)));
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Records the current segment in the {@link SearchStatistics}. The wall time spans all ticks the segment was stepped in.
+         */
+        private void record()
+        {
+            SearchStatistics.record(request.getCaller(), pathfinder.getOutcome(), pathfinder.getExpandedNodes(), pathfinder.getPeakOpenSetSize(),
+                    System.nanoTime() - segmentStart);
+        }
+
+        private void fail(@NotNull PathfindingUtils.PathfindingException e)
+        {
+            future.completeExceptionally(new RuntimeException(e));
+        }
+    }
+}
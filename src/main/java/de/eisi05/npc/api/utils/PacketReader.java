@@ -18,6 +18,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiConsumer;
 
 /**
@@ -28,7 +29,7 @@ import java.util.function.BiConsumer;
 public class PacketReader
 {
     private static final Map<UUID, Channel> channels = new HashMap<>();
-    private static final List<BiConsumer<Player, Object>> readers = new ArrayList<>();
+    private static final List<BiConsumer<Player, Object>> readers = new CopyOnWriteArrayList<>();
     private static final Map<UUID, Integer> cancelUseUntilTick = new ConcurrentHashMap<>();
 
     /**
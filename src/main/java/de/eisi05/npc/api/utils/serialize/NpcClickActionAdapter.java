@@ -3,7 +3,9 @@ package de.eisi05.npc.api.utils.serialize;
 import com.google.gson.*;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
+import de.eisi05.npc.api.events.NpcInteractEvent;
 import de.eisi05.npc.api.interfaces.NpcClickAction;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
 import java.util.Base64;
@@ -11,6 +13,18 @@ import java.util.Map;
 
 public class NpcClickActionAdapter extends TypeAdapter<NpcClickAction>
 {
+    /**
+     * Converts a click action to JSON right away. The returned action is written as that JSON, so it can be written on another thread while the original
+     * action keeps changing. It can not be called.
+     *
+     * @param action the click action
+     * @return a click action holding the JSON of the given action
+     */
+    public static @NotNull NpcClickAction snapshot(@NotNull NpcClickAction action)
+    {
+        return new Snapshot(new NpcClickActionAdapter().toJsonTree(action));
+    }
+
     @Override
     public void write(JsonWriter out, NpcClickAction value) throws IOException
     {
@@ -20,6 +34,12 @@ public class NpcClickActionAdapter extends TypeAdapter<NpcClickAction>
             return;
         }
 
+        if(value instanceof Snapshot snapshot)
+        {
+            ObjectSaver.CLEAN_GSON.toJson(snapshot.json(), out);
+            return;
+        }
+
         Class<?> clazz = value.getClass();
         out.beginObject();
 
@@ -110,4 +130,13 @@ public class NpcClickActionAdapter extends TypeAdapter<NpcClickAction>
 
         throw new JsonParseException("Invalid NpcClickAction JSON object structure. Must contain either 'className' or 'bytes'.");
     }
-}
\ No newline at end of file
+
+    private record Snapshot(@NotNull JsonElement json) implements NpcClickAction
+    {
+        @Override
+        public void call(@NotNull NpcInteractEvent event)
+        {
+            throw new UnsupportedOperationException("A click action snapshot can not be called");
+        }
+    }
+}
@@ -0,0 +1,574 @@
+package de.eisi05.npc.api.utils.serialize;
+
+import com.google.gson.stream.JsonWriter;
+import de.eisi05.npc.api.objects.NPC;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Stores serialized NPCs in a single append-only data file, with an index file for random access by UUID.
+ * <p>
+ * Every save appends a record holding the compact JSON of the NPC and a CRC32 checksum, every deletion appends a tombstone. The index maps each UUID to its
+ * latest record and is written next to the data file when the store is flushed, closed or compacted. Records appended after the last index write are
+ * recovered by scanning the tail of the data file on the next start, and a record torn by a crash fails its checksum and is cut off, so the previous state of
+ * that NPC survives. Once more than half of the data file is outdated records, {@link #compact()} rewrites it with only the latest records.
+ * <p>
+ * Reads can run in parallel on any thread, writes are serialized.
+ */
+public final class NpcStore implements Closeable
+{
+    private static final int DATA_MAGIC = 0x4E504353; // "NPCS"
+    private static final int INDEX_MAGIC = 0x4E504349; // "NPCI"
+    private static final int VERSION = 1;
+    private static final int DATA_HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES * 2 + 1;
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES * 3 + Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 64 << 20;
+    private static final long MIN_COMPACTION_GARBAGE = 1 << 20;
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_DELETE = 2;
+
+    private final File dataFile;
+    private final File indexFile;
+    private final Map<UUID, Entry> index = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel channel;
+    // A random id written to the data file and the index, so an index belonging to another version of the data file is never used
+    private long generation;
+    private long size;
+    private long liveBytes;
+    private boolean indexDirty;
+
+    /**
+     * Opens the store in a folder, creating it if it does not exist.
+     *
+     * @param folder The folder holding the data and index file
+     * @throws IOException If an I/O error occurs or the data file is not an NPC store
+     */
+    public NpcStore(@NotNull File folder) throws IOException
+    {
+        folder.mkdirs();
+        this.dataFile = new File(folder, "npcs.dat");
+        this.indexFile = new File(folder, "npcs.idx");
+        this.channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+        if(channel.size() < DATA_HEADER_SIZE)
+        {
+            channel.truncate(0);
+            this.generation = ThreadLocalRandom.current().nextLong();
+            writeFully(channel, dataHeader(generation), 0);
+            channel.force(true);
+            this.size = DATA_HEADER_SIZE;
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        if(header.getInt() != DATA_MAGIC)
+            throw new IOException("Not an NPC store: " + dataFile);
+        int version = header.getInt();
+        if(version != VERSION)
+            throw new IOException("Unsupported NPC store version " + version + ": " + dataFile);
+        this.generation = header.getLong();
+
+        scan(readIndex());
+    }
+
+    /**
+     * Saves an NPC, replacing its previous record.
+     *
+     * @param npc The serialized NPC
+     * @throws IOException If an I/O error occurs
+     */
+    public void put(@NotNull NPC.SerializedNPC npc) throws IOException
+    {
+        StringWriter json = new StringWriter();
+        ObjectSaver.GSON.toJson(npc, NPC.SerializedNPC.class, new JsonWriter(json));
+        byte[] payload = json.toString().getBytes(StandardCharsets.UTF_8);
+        if(payload.length > MAX_RECORD_SIZE)
+            throw new IOException("NPC " + npc.getId() + " is too large to be stored");
+
+        append(npc.getId(), TYPE_PUT, payload);
+    }
+
+    /**
+     * Removes an NPC.
+     *
+     * @param uuid The UUID of the NPC
+     * @return true if the NPC was stored, false otherwise
+     * @throws IOException If an I/O error occurs
+     */
+    public boolean remove(@NotNull UUID uuid) throws IOException
+    {
+        if(!index.containsKey(uuid))
+            return false;
+
+        append(uuid, TYPE_DELETE, new byte[0]);
+        return true;
+    }
+
+    /**
+     * Reads an NPC. Only the record of this NPC is read from the data file.
+     *
+     * @param uuid The UUID of the NPC
+     * @return The serialized NPC, or null if it is not stored
+     * @throws IOException If an I/O error occurs or the record is corrupted
+     */
+    public @Nullable NPC.SerializedNPC get(@NotNull UUID uuid) throws IOException
+    {
+        byte[] payload;
+        lock.readLock().lock();
+        try
+        {
+            Entry entry = index.get(uuid);
+            if(entry == null)
+                return null;
+
+            Record record = readRecord(channel, entry.offset(), size);
+            if(record == null || !record.uuid().equals(uuid))
+                throw new IOException("Corrupted record of NPC " + uuid + " in " + dataFile);
+            payload = record.payload();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+
+        try(Reader reader = new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8))
+        {
+            return ObjectSaver.GSON.fromJson(reader, NPC.SerializedNPC.class);
+        }
+    }
+
+    /**
+     * Checks whether an NPC is stored.
+     *
+     * @param uuid The UUID of the NPC
+     * @return true if the NPC is stored, false otherwise
+     */
+    public boolean contains(@NotNull UUID uuid)
+    {
+        return index.containsKey(uuid);
+    }
+
+    /**
+     * Gets the UUIDs of all stored NPCs, in the order they are stored in the data file.
+     *
+     * @return A new list of the UUIDs
+     */
+    public @NotNull List<UUID> keys()
+    {
+        List<Map.Entry<UUID, Entry>> entries = new ArrayList<>(index.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().offset()));
+        return entries.stream().map(Map.Entry::getKey).toList();
+    }
+
+    /**
+     * Gets the number of stored NPCs.
+     *
+     * @return The number of NPCs
+     */
+    public int size()
+    {
+        return index.size();
+    }
+
+    /**
+     * Imports the NPCs of the legacy layout with one {@code <uuid>.npc.json} or {@code <uuid>.npc} file per NPC. Imported files are moved to the
+     * {@code backup} folder once their records are forced to the disk, so they are not imported again and a crash cannot lose them. Files that cannot be
+     * read or written to the store stay where they are.
+     *
+     * @param folder   The folder holding the legacy files
+     * @param failures Receives the name of each file that could not be imported or moved and the exception that occurred
+     * @return The number of imported NPCs
+     * @throws IOException If an I/O error occurs while forcing the imported records to the disk
+     */
+    public int importLegacy(@NotNull File folder, @NotNull Map<String, Exception> failures) throws IOException
+    {
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(".npc") || name.endsWith(".npc.json"));
+        if(files == null || files.length == 0)
+            return 0;
+
+        List<File> imported = new ArrayList<>();
+        for(File file : files)
+        {
+            try
+            {
+                ObjectSaver saver = new ObjectSaver(file);
+                NPC.SerializedNPC serializedNPC = saver.isJson() ? saver.read(NPC.SerializedNPC.class) : saver.read();
+                if(serializedNPC == null)
+                    throw new IOException("Empty NPC file");
+
+                put(serializedNPC);
+                imported.add(file);
+            }
+            catch(Exception e)
+            {
+                failures.put(file.getName(), e);
+            }
+        }
+
+        if(imported.isEmpty())
+            return 0;
+
+        flush();
+
+        File backupFolder = new File(folder, "backup");
+        backupFolder.mkdirs();
+        for(File file : imported)
+        {
+            try
+            {
+                Files.move(file.toPath(), new File(backupFolder, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch(IOException e)
+            {
+                // The NPC is already stored, the file is only imported again on the next start
+                failures.put(file.getName(), e);
+            }
+        }
+
+        return imported.size();
+    }
+
+    /**
+     * Forces the appended records to the disk and writes the index.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void flush() throws IOException
+    {
+        lock.writeLock().lock();
+        try
+        {
+            channel.force(false);
+            if(indexDirty)
+                writeIndex();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether more than half of the data file is outdated records.
+     *
+     * @return true if the store should be compacted, false otherwise
+     */
+    public boolean needsCompaction()
+    {
+        long garbage = size - DATA_HEADER_SIZE - liveBytes;
+        return garbage >= MIN_COMPACTION_GARBAGE && garbage > liveBytes;
+    }
+
+    /**
+     * Rewrites the data file with only the latest record of each stored NPC. The new file replaces the old one atomically.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void compact() throws IOException
+    {
+        lock.writeLock().lock();
+        try
+        {
+            File tempFile = new File(dataFile.getParentFile(), dataFile.getName() + ".tmp");
+            long newGeneration = ThreadLocalRandom.current().nextLong();
+            Map<UUID, Entry> newIndex = new HashMap<>();
+            long position = DATA_HEADER_SIZE;
+
+            try(FileChannel out = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                writeFully(out, dataHeader(newGeneration), 0);
+                for(UUID uuid : keys())
+                {
+                    Entry entry = index.get(uuid);
+                    long copied = 0;
+                    while(copied < entry.length())
+                        copied += channel.transferTo(entry.offset() + copied, entry.length() - copied, out.position(position + copied));
+
+                    newIndex.put(uuid, new Entry(position, entry.length()));
+                    position += entry.length();
+                }
+                out.force(true);
+            }
+
+            // The data file has to be closed to be replaced on every platform, but it is always opened again, so a failed move leaves the old file in use
+            channel.close();
+            try
+            {
+                move(tempFile, dataFile);
+            }
+            catch(IOException e)
+            {
+                Files.deleteIfExists(tempFile.toPath());
+                throw e;
+            }
+            finally
+            {
+                channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+
+            index.clear();
+            index.putAll(newIndex);
+            generation = newGeneration;
+            size = position;
+            liveBytes = position - DATA_HEADER_SIZE;
+            writeIndex();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compacts the store if needed, writes the index and closes the data file.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException
+    {
+        lock.writeLock().lock();
+        try
+        {
+            if(!channel.isOpen())
+                return;
+
+            if(needsCompaction())
+                compact();
+            else
+                flush();
+            channel.close();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(@NotNull UUID uuid, byte type, byte @NotNull [] payload) throws IOException
+    {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length);
+        record.putInt(0);
+        record.putLong(uuid.getMostSignificantBits());
+        record.putLong(uuid.getLeastSignificantBits());
+        record.put(type);
+        record.put(payload);
+        record.putInt(Integer.BYTES, checksum(record.array()));
+        record.flip();
+
+        lock.writeLock().lock();
+        try
+        {
+            writeFully(channel, record, size);
+            apply(uuid, type, size, record.capacity());
+            size += record.capacity();
+            indexDirty = true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(@NotNull UUID uuid, byte type, long offset, int length)
+    {
+        Entry previous = type == TYPE_PUT ? index.put(uuid, new Entry(offset, length)) : index.remove(uuid);
+        if(previous != null)
+            liveBytes -= previous.length();
+        if(type == TYPE_PUT)
+            liveBytes += length;
+    }
+
+    /**
+     * Reads the index if it belongs to the data file.
+     *
+     * @return The position in the data file up to which the index is up to date
+     */
+    private long readIndex()
+    {
+        if(!indexFile.isFile())
+            return DATA_HEADER_SIZE;
+
+        try
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+            if(buffer.remaining() < Integer.BYTES * 3 + Long.BYTES * 2 + Integer.BYTES || buffer.getInt() != INDEX_MAGIC || buffer.getInt() != VERSION ||
+                    buffer.getLong() != generation)
+                return DATA_HEADER_SIZE;
+
+            long covered = buffer.getLong();
+            int count = buffer.getInt();
+            int end = buffer.position() + count * INDEX_ENTRY_SIZE;
+            if(count < 0 || end + Integer.BYTES != buffer.capacity() || covered > channel.size() ||
+                    checksum(Arrays.copyOf(buffer.array(), end)) != buffer.getInt(end))
+                return DATA_HEADER_SIZE;
+
+            for(int i = 0; i < count; i++)
+            {
+                UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+                Entry entry = new Entry(buffer.getLong(), buffer.getInt());
+                index.put(uuid, entry);
+                liveBytes += entry.length();
+            }
+            return covered;
+        }
+        catch(IOException e)
+        {
+            index.clear();
+            liveBytes = 0;
+            return DATA_HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Applies the records from a position to the end of the data file and cuts off a torn or corrupted tail.
+     */
+    private void scan(long position) throws IOException
+    {
+        long fileSize = channel.size();
+        long start = position;
+        Record record;
+        while((record = readRecord(channel, position, fileSize)) != null)
+        {
+            apply(record.uuid(), record.type(), position, RECORD_HEADER_SIZE + record.payload().length);
+            position += RECORD_HEADER_SIZE + record.payload().length;
+        }
+
+        if(position < fileSize)
+        {
+            channel.truncate(position);
+            channel.force(true);
+        }
+
+        size = position;
+        indexDirty = position != start;
+    }
+
+    private void writeIndex() throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * 3 + Long.BYTES * 2 + index.size() * INDEX_ENTRY_SIZE + Integer.BYTES);
+        buffer.putInt(INDEX_MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(generation);
+        buffer.putLong(size);
+        buffer.putInt(index.size());
+        index.forEach((uuid, entry) ->
+        {
+            buffer.putLong(uuid.getMostSignificantBits());
+            buffer.putLong(uuid.getLeastSignificantBits());
+            buffer.putLong(entry.offset());
+            buffer.putInt(entry.length());
+        });
+        buffer.putInt(checksum(Arrays.copyOf(buffer.array(), buffer.position())));
+
+        File tempFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try(FileChannel out = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            writeFully(out, buffer.flip(), 0);
+            out.force(true);
+        }
+        move(tempFile, indexFile);
+        indexDirty = false;
+    }
+
+    /**
+     * Reads and verifies the record at a position.
+     *
+     * @return The record, or null if there is no complete and valid record at the position
+     */
+    private static @Nullable Record readRecord(@NotNull FileChannel channel, long position, long end) throws IOException
+    {
+        if(position + RECORD_HEADER_SIZE > end)
+            return null;
+
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(channel, header, position);
+        header.flip();
+        int length = header.getInt();
+        if(length < 0 || length > MAX_RECORD_SIZE || position + RECORD_HEADER_SIZE + length > end)
+            return null;
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.put(header.rewind());
+        readFully(channel, record, position + RECORD_HEADER_SIZE);
+
+        int expected = record.getInt(Integer.BYTES);
+        record.putInt(Integer.BYTES, 0);
+        if(checksum(record.array()) != expected)
+            return null;
+
+        byte type = record.get(RECORD_HEADER_SIZE - 1);
+        if(type != TYPE_PUT && type != TYPE_DELETE)
+            return null;
+
+        UUID uuid = new UUID(record.getLong(Integer.BYTES * 2), record.getLong(Integer.BYTES * 2 + Long.BYTES));
+        return new Record(uuid, type, Arrays.copyOfRange(record.array(), RECORD_HEADER_SIZE, record.capacity()));
+    }
+
+    private static @NotNull ByteBuffer dataHeader(long generation)
+    {
+        return ByteBuffer.allocate(DATA_HEADER_SIZE).putInt(DATA_MAGIC).putInt(VERSION).putLong(generation).flip();
+    }
+
+    private static int checksum(byte @NotNull [] bytes)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position) throws IOException
+    {
+        while(buffer.hasRemaining())
+        {
+            int read = channel.read(buffer, position);
+            if(read < 0)
+                throw new EOFException();
+            position += read;
+        }
+    }
+
+    private static void writeFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position) throws IOException
+    {
+        while(buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    private static void move(@NotNull File source, @NotNull File target) throws IOException
+    {
+        try
+        {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(AtomicMoveNotSupportedException e)
+        {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private record Entry(long offset, int length) {}
+
+    private record Record(@NotNull UUID uuid, byte type, byte @NotNull [] payload) {}
+}
@@ -17,4 +17,15 @@ public class MoveEntityPacket
             super(Rot.class, entityId, yRot, xRot, onGround);
         }
     }
+
+    @Mapping(range = @Mapping.Range(from = Versions.V26_1, to = Versions.V26_2), path = "net.minecraft.network.protocol.game.ClientboundMoveEntityPacket$PosRot")
+    @Mapping(range = @Mapping.Range(from = Versions.V1_20_6, to = Versions.V1_21_11), path = "net.minecraft.network.protocol.game" +
+            ".PacketPlayOutEntity$PacketPlayOutRelEntityMoveLook")
+    public static class PosRot extends PacketWrapper
+    {
+        public PosRot(int entityId, short xa, short ya, short za, byte yRot, byte xRot, boolean onGround)
+        {
+            super(PosRot.class, entityId, xa, ya, za, yRot, xRot, onGround);
+        }
+    }
 }